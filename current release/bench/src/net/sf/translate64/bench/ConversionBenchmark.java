@@ -0,0 +1,207 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ConversionBenchmark.java</b>: measures the file conversion
+ * pipeline.
+ */
+
+// package definition
+package net.sf.translate64.bench;
+
+// needed imports
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.translate64.util.FileSink;
+import net.sf.translate64.util.TranslateUtils;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the file conversion pipeline: reading a file into memory,
+ * converting it to the clipboard string the way version 1.0 did and the
+ * way it is done now, sequentially and in parallel, and streaming it to a
+ * target file. The input file is written once per trial, so after the
+ * first iteration it is read from the page cache and the numbers measure
+ * the conversion rather than the disk.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+    /**
+     * Size of the input file, in bytes, from 1 KB to 1 GB.
+     */
+    @Param({"1024", "65536", "1048576", "16777216", "268435456", "1073741824"})
+    public int size;
+    
+    // the input file
+    private File input;
+    
+    // the target file
+    private File target;
+    
+    /**
+     * Creates the input file.
+     * @throws IOException An IO error writing the file.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        
+        // create the files
+        input = File.createTempFile("translate64-bench", ".bin");
+        target = FileSink.getTarget(input);
+        
+        // the same bytes for every run
+        Random random = new Random(42);
+        byte[] block = new byte[1024 * 1024];
+        
+        // write them
+        FileOutputStream ostream = new FileOutputStream(input);
+        try {
+            for (int written = 0; written < size; written = written + block.length) {
+                random.nextBytes(block);
+                ostream.write(block, 0, Math.min(block.length, size - written));
+            }
+        }
+        finally {
+            ostream.close();
+        }
+    }
+    
+    /**
+     * Deletes the files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        
+        // delete them
+        input.delete();
+        target.delete();
+    }
+    
+    /**
+     * Reads the whole file into memory.
+     * @return The contents.
+     * @throws IOException An IO error reading the file.
+     */
+    @Benchmark
+    public byte[] getBytesFromFile() throws IOException {
+        
+        // read it
+        return TranslateUtils.getBytesFromFile(input);
+    }
+    
+    /**
+     * Converts the file the way version 1.0 did, reading it into memory
+     * and encoding it with commons-codec 1.5.
+     * @return The string.
+     * @throws IOException An IO error reading the file.
+     */
+    @Benchmark
+    public String convertFileBaseline() throws IOException {
+        
+        // read and encode it
+        return Base64.encodeBase64String(TranslateUtils.getBytesFromFile(input));
+    }
+    
+    /**
+     * Converts the file to a string in a single thread.
+     * @return The string.
+     * @throws IOException An IO error reading the file.
+     */
+    @Benchmark
+    public String convertFile() throws IOException {
+        
+        // convert it
+        return TranslateUtils.convertFile(input, false);
+    }
+    
+    /**
+     * Converts the file to a string, in parallel when it is large enough.
+     * @return The string.
+     * @throws IOException An IO error reading the file.
+     */
+    @Benchmark
+    public String convertFileParallel() throws IOException {
+        
+        // convert it
+        return TranslateUtils.convertFile(input, true);
+    }
+    
+    /**
+     * Streams the conversion to a target file.
+     * @return The number of bytes read.
+     * @throws IOException An IO error with one of the files.
+     */
+    @Benchmark
+    public long convertFileToSink() throws IOException {
+        
+        // convert it
+        return FileSink.convertFile(input, target, null);
+    }
+}
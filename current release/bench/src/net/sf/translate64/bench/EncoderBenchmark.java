@@ -0,0 +1,229 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>EncoderBenchmark.java</b>: measures the Base64 encoders on in-
+ * memory inputs.
+ */
+
+// package definition
+package net.sf.translate64.bench;
+
+// needed imports
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.sf.translate64.codec.Engines;
+import net.sf.translate64.util.Base64Encoder;
+import org.apache.commons.codec.binary.Base64;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the Base64 encoders on in-memory inputs: commons-codec 1.5,
+ * which the application used up to version 1.0, the
+ * <code>java.util.Base64</code> encoder of the JDK and the in-house
+ * {@link Base64Encoder}. Each encoder is measured producing a byte array
+ * and producing the string that ends up in the clipboard. Inputs are
+ * random and generated from a fixed seed, so every run sees the same
+ * bytes. The largest inputs need a large heap, which is set for every
+ * fork.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class EncoderBenchmark {
+
+    /**
+     * Size of the input, in bytes, from 1 KB to 1 GB.
+     */
+    @Param({"1024", "65536", "1048576", "16777216", "268435456", "1073741824"})
+    public int size;
+    
+    // the input
+    private byte[] input;
+    
+    // a reused output, for the in-house encoder
+    private byte[] output;
+    
+    /**
+     * Creates the input.
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+        
+        // the same bytes for every run
+        input = new byte[size];
+        new Random(42).nextBytes(input);
+        
+        // and room for the output
+        output = new byte[Base64Encoder.getEncodedLength(size)];
+    }
+    
+    /**
+     * Releases the input, so the next trial has the whole heap.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        
+        // release them
+        input = null;
+        output = null;
+    }
+    
+    /**
+     * Encodes with commons-codec 1.5.
+     * @return The output.
+     */
+    @Benchmark
+    public byte[] commonsCodec() {
+        
+        // encode it
+        return Base64.encodeBase64(input);
+    }
+    
+    /**
+     * Encodes with the JDK encoder.
+     * @return The output.
+     */
+    @Benchmark
+    public byte[] javaUtil() {
+        
+        // encode it
+        return java.util.Base64.getEncoder().encode(input);
+    }
+    
+    /**
+     * Encodes with the in-house encoder into a new array.
+     * @return The output.
+     */
+    @Benchmark
+    public byte[] inHouse() {
+        
+        // encode it
+        byte[] encoded = new byte[Base64Encoder.getEncodedLength(input.length)];
+        Base64Encoder.encode(input, 0, input.length, encoded, 0);
+        return encoded;
+    }
+    
+    /**
+     * Encodes with the in-house encoder into a reused array, which is what
+     * the streaming conversions do.
+     * @return The number of bytes written.
+     */
+    @Benchmark
+    public int inHouseReused() {
+        
+        // encode it
+        return Base64Encoder.encode(input, 0, input.length, output, 0);
+    }
+    
+    /**
+     * Encodes with the selected engine into a reused array. Other engines,
+     * such as the Vector API one, are measured by selecting them with the
+     * <code>translate64.engine</code> system property in the fork options.
+     * @return The number of bytes written.
+     */
+    @Benchmark
+    public int selectedEngine() {
+        
+        // encode it
+        return Engines.getDefault().encode(input, 0, input.length, output, 0);
+    }
+    
+    /**
+     * Builds the string with commons-codec 1.5, as version 1.0 did.
+     * @return The string.
+     */
+    @Benchmark
+    public String commonsCodecString() {
+        
+        // encode it
+        return Base64.encodeBase64String(input);
+    }
+    
+    /**
+     * Builds the string with the JDK encoder.
+     * @return The string.
+     */
+    @Benchmark
+    public String javaUtilString() {
+        
+        // encode it
+        return java.util.Base64.getEncoder().encodeToString(input);
+    }
+    
+    /**
+     * Builds the string with the in-house encoder.
+     * @return The string.
+     */
+    @Benchmark
+    public String inHouseString() {
+        
+        // encode it
+        byte[] encoded = new byte[Base64Encoder.getEncodedLength(input.length)];
+        Base64Encoder.encode(input, 0, input.length, encoded, 0);
+        
+        // Base64 is plain ASCII
+        return new String(encoded, StandardCharsets.US_ASCII);
+    }
+}
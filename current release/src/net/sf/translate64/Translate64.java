@@ -45,20 +45,22 @@
  * \endcond
  *
  * <b>Translate64.java</b>: provides the main method for the Translate 64
- * application to run. It basically calls the UI class.
- * helper classes.
+ * application to run. It basically calls the UI class, or the command line
+ * mode when arguments are given.
  */
 
 // package definition
 package net.sf.translate64;
 
 // needed imports
+import net.sf.translate64.cli.TranslateCLI;
 import net.sf.translate64.ui.TranslateUI;
 import net.sf.translate64.util.TranslateUtils;
 
 /**
  * Provides the main method for the Translate 64 application to run. It
- * basically calls the UI class.
+ * basically calls the UI class, or the command line mode when arguments
+ * are given.
  * @author Paulo Roberto Massa Cereda
  * @version 1.0
  * @since 1.0
@@ -66,11 +68,20 @@ import net.sf.translate64.util.TranslateUtils;
 public class Translate64 {
 
     /**
-     * Main method. It simply calls the UI class.
+     * Main method. It simply calls the UI class, or the command line mode
+     * when arguments are given.
      * @param args The command line arguments.
      */
     public static void main(String args[]) {
         
+        // check for arguments
+        if (args.length > 0) {
+            
+            // run the command line mode, which does
+            // not load any of the UI classes
+            System.exit(TranslateCLI.run(args));
+        }
+        
         // set the native look and feel
         TranslateUtils.setNativeLookAndFeel();
         
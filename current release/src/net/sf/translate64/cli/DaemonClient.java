@@ -0,0 +1,336 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DaemonClient.java</b>: sends conversions to a running Translate 64
+ * daemon.
+ */
+
+// package definition
+package net.sf.translate64.cli;
+
+// needed imports
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends conversions to a running daemon. The client only checks its
+ * arguments, resolves their paths and copies bytes between the socket and
+ * its standard streams, so it loads a handful of classes and none of the
+ * encoders; the daemon reads and writes the files itself.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+final class DaemonClient {
+    
+    // the option selecting the client
+    private static final String CONNECT = "--connect";
+    
+    // the size of the copy buffers
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * Constructor method. This class is not meant to be instantiated.
+     */
+    private DaemonClient() {
+    }
+    
+    /**
+     * Checks if the client was requested.
+     * @param args The command line arguments.
+     * @return <code>true</code> if the conversion goes to a daemon.
+     */
+    static boolean isRequested(String[] args) {
+        
+        // look for the option
+        for (String arg : args) {
+            if (arg.equals(CONNECT)) {
+                return true;
+            }
+        }
+        
+        // not there
+        return false;
+    }
+    
+    /**
+     * Runs the client.
+     * @param args The command line arguments.
+     * @return The exit status sent by the daemon.
+     */
+    static int run(String[] args) {
+        
+        // the address and the request
+        String address = DaemonProtocol.getDefaultAddress();
+        List<String> request = new ArrayList<String>();
+        String[] resolved;
+        
+        // let's try
+        try {
+            
+            // split the arguments
+            for (int i = 0; i < args.length; i++) {
+                
+                // check the options of the client
+                if (args[i].equals(CONNECT)) {
+                    continue;
+                }
+                if (args[i].equals("--socket")) {
+                    
+                    // check the value
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("option '--socket' requires a value");
+                    }
+                    
+                    // get it
+                    address = args[++i];
+                    continue;
+                }
+                
+                // the rest goes to the daemon
+                request.add(args[i]);
+            }
+            
+            // the daemon has another working directory
+            resolved = DaemonProtocol.checkRequest(request.toArray(new String[request.size()]), new File(System.getProperty("user.dir")));
+        }
+        catch (IllegalArgumentException e) {
+            
+            // bad arguments
+            System.err.println("translate64: " + e.getMessage());
+            System.err.println("Try 'translate64 --help' for more information.");
+            return TranslateCLI.EXIT_USAGE;
+        }
+        
+        // the socket
+        final SocketChannel channel;
+        
+        // let's try
+        try {
+            
+            // connect to the daemon
+            channel = DaemonProtocol.connect(address);
+        }
+        catch (IOException e) {
+            
+            // nobody there
+            System.err.println("translate64: cannot reach a daemon on " + address + ": " + e.getMessage());
+            return TranslateCLI.EXIT_FAILURE;
+        }
+        
+        // let's try
+        try {
+            
+            // prove who we are before sending anything
+            DataInputStream input = new DataInputStream(new BufferedInputStream(DaemonProtocol.newInputStream(channel), BUFFER_SIZE));
+            DaemonProtocol.respond(channel, input, DaemonProtocol.getToken(false));
+            
+            // send the request
+            DaemonProtocol.writeRequest(channel, resolved);
+            
+            // check if the standard input follows it
+            if (DaemonProtocol.readsStandardInput(resolved)) {
+                
+                // send it while the reply comes back
+                Thread sender = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        
+                        // send it
+                        sendStandardInput(channel);
+                    }
+                }, "translate64-stdin");
+                sender.setDaemon(true);
+                sender.start();
+            }
+            else {
+                
+                // nothing else to send
+                channel.shutdownOutput();
+            }
+            
+            // read the reply
+            return receive(input);
+        }
+        catch (IOException e) {
+            
+            // the daemon went away
+            System.err.println("translate64: " + address + ": " + e.getMessage());
+            return TranslateCLI.EXIT_FAILURE;
+        }
+        finally {
+            
+            // let's try
+            try {
+                
+                // close the socket
+                channel.close();
+            }
+            catch (IOException e) {
+                
+                // nothing else to do
+            }
+        }
+    }
+    
+    /**
+     * Sends the standard input to the daemon, then closes the sending side
+     * of the socket.
+     * @param channel The socket.
+     */
+    private static void sendStandardInput(SocketChannel channel) {
+        
+        // let's try
+        try {
+            
+            // copy everything
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = System.in.read(buffer)) != -1) {
+                DaemonProtocol.write(channel, ByteBuffer.wrap(buffer, 0, read));
+            }
+            
+            // no more input
+            channel.shutdownOutput();
+        }
+        catch (IOException e) {
+            
+            // the reply tells what happened
+        }
+    }
+    
+    /**
+     * Receives the reply, copying the frames to the standard output and
+     * the standard error.
+     * @param input The socket input.
+     * @return The exit status.
+     * @throws IOException An IO error with the socket or the standard
+     * streams.
+     */
+    private static int receive(DataInputStream input) throws IOException {
+        
+        // the streams
+        OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+        OutputStream stderr = new FileOutputStream(FileDescriptor.err);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        
+        // let's try
+        try {
+            
+            // read every frame
+            while (true) {
+                
+                // the frame header
+                int kind = input.readByte();
+                int length = input.readInt();
+                
+                // check the kind
+                switch (kind) {
+                    
+                    // the last one
+                    case DaemonProtocol.EXIT:
+                        return length;
+                        
+                    // standard output
+                    case DaemonProtocol.OUT:
+                        copy(input, stdout, buffer, length);
+                        break;
+                        
+                    // standard error
+                    case DaemonProtocol.ERR:
+                        copy(input, stderr, buffer, length);
+                        break;
+                        
+                    // anything else
+                    default:
+                        throw new IOException("Malformed reply");
+                }
+            }
+        }
+        catch (EOFException e) {
+            
+            // closed before the status
+            throw new IOException("The daemon closed the connection", e);
+        }
+    }
+    
+    /**
+     * Copies the body of a frame.
+     * @param input The socket input.
+     * @param output The destination.
+     * @param buffer The copy buffer.
+     * @param length The body length.
+     * @throws IOException An IO error with the socket or the destination.
+     */
+    private static void copy(InputStream input, OutputStream output, byte[] buffer, int length) throws IOException {
+        
+        // copy until nothing is left
+        while (length > 0) {
+            
+            // read a piece
+            int read = input.read(buffer, 0, Math.min(buffer.length, length));
+            if (read == -1) {
+                throw new EOFException();
+            }
+            
+            // write it
+            output.write(buffer, 0, read);
+            length = length - read;
+        }
+    }
+}
@@ -0,0 +1,1023 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DaemonProtocol.java</b>: holds what the daemon and its thin client
+ * share: how addresses are bound and connected, and how requests and
+ * replies travel over the socket.
+ */
+
+// package definition
+package net.sf.translate64.cli;
+
+// needed imports
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.Set;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Holds what the daemon and its thin client share. An address is either a
+ * socket file, used through a Unix domain socket on Java 16 and later, or
+ * a port, bound to the loopback interface only. Before anything else, the
+ * daemon and the client prove to each other that they can read the token
+ * file in the directory of the user, which only its owner can, so neither
+ * other users connecting to the daemon nor other users binding the address
+ * first get to see a request. A request is a header with the arguments,
+ * followed by the standard input of the client, if any; the reply is a
+ * sequence of frames carrying the standard output, the standard error and,
+ * at last, the exit status.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+final class DaemonProtocol {
+    
+    /**
+     * The system property holding the default address.
+     */
+    static final String PROPERTY = "translate64.socket";
+    
+    /**
+     * The default port, when Unix domain sockets are not available.
+     */
+    static final int DEFAULT_PORT = 6464;
+    
+    /**
+     * A frame with standard output bytes.
+     */
+    static final int OUT = 1;
+    
+    /**
+     * A frame with standard error bytes.
+     */
+    static final int ERR = 2;
+    
+    /**
+     * The last frame, with the exit status.
+     */
+    static final int EXIT = 3;
+    
+    // the first bytes of every request
+    private static final int MAGIC = 0x54363444;
+    
+    // the largest frame
+    private static final int FRAME_SIZE = 64 * 1024;
+    
+    // the size of the token and of the handshake nonces
+    private static final int TOKEN_SIZE = 32;
+    private static final int NONCE_SIZE = 16;
+    
+    // who signs a handshake proof
+    private static final int CLIENT = 1;
+    private static final int SERVER = 2;
+    
+    // the algorithm of the handshake proofs
+    private static final String MAC = "HmacSHA256";
+    
+    // the random generator of tokens and nonces
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    /**
+     * Constructor method. This class is not meant to be instantiated.
+     */
+    private DaemonProtocol() {
+    }
+    
+    /**
+     * Gets the directory of the user holding the socket file and the
+     * token, inside <code>$XDG_RUNTIME_DIR</code> if set, or in the home
+     * directory otherwise.
+     * @return The directory.
+     */
+    static File getUserDirectory() {
+        
+        // check the runtime directory
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        if ((runtime != null) && !runtime.isEmpty()) {
+            return new File(runtime, "translate64");
+        }
+        
+        // fall back to the home directory
+        return new File(System.getProperty("user.home"), ".translate64");
+    }
+    
+    /**
+     * Gets the token shared by the daemons and the clients of the user,
+     * after checking that nobody else can read it.
+     * @param create Whether to create it if there is none yet.
+     * @return The token.
+     * @throws IOException There is no token, it cannot be created, or it
+     * could be read by other users.
+     */
+    static byte[] getToken(boolean create) throws IOException {
+        
+        // the directory, only usable by its owner
+        Path directory = getUserDirectory().toPath();
+        if (create && !Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+            
+            // let's try
+            try {
+                
+                // create it for its owner only
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+            catch (UnsupportedOperationException e) {
+                
+                // not a POSIX file system
+                Files.createDirectories(directory);
+            }
+        }
+        checkPrivate(directory);
+        
+        // the token file
+        Path path = directory.resolve("daemon.token");
+        if (create && !Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            
+            // a new token
+            byte[] token = new byte[TOKEN_SIZE];
+            RANDOM.nextBytes(token);
+            
+            // let's try
+            try {
+                
+                // write it, never replacing another one
+                SeekableByteChannel channel;
+                try {
+                    channel = Files.newByteChannel(path, EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+                }
+                catch (UnsupportedOperationException e) {
+                    channel = Files.newByteChannel(path, EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE));
+                }
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(token);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                finally {
+                    channel.close();
+                }
+            }
+            catch (FileAlreadyExistsException e) {
+                
+                // another daemon was faster, use its token
+            }
+        }
+        
+        // let's try
+        try {
+            
+            // check and read it
+            checkPrivate(path);
+            byte[] token = Files.readAllBytes(path);
+            if (token.length != TOKEN_SIZE) {
+                throw new IOException("Malformed token " + path);
+            }
+            
+            // return it
+            return token;
+        }
+        catch (NoSuchFileException e) {
+            
+            // no daemon ever ran
+            throw new IOException("No token at " + path + ", start a daemon first", e);
+        }
+    }
+    
+    /**
+     * Checks that a file or directory belongs to the user and that nobody
+     * else can use it.
+     * @param path The file or directory.
+     * @throws IOException It belongs to someone else, or others can use it.
+     */
+    static void checkPrivate(Path path) throws IOException {
+        
+        // check the owner
+        checkOwner(path);
+        
+        // let's try
+        try {
+            
+            // check the permissions
+            Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS);
+            for (PosixFilePermission permission : permissions) {
+                if (!permission.name().startsWith("OWNER_")) {
+                    throw new IOException(path + " can be used by other users, make it private to its owner");
+                }
+            }
+        }
+        catch (UnsupportedOperationException e) {
+            
+            // not a POSIX file system, the
+            // home directory is private there
+        }
+    }
+    
+    /**
+     * Checks that a file or directory belongs to the user.
+     * @param path The file or directory.
+     * @throws IOException It belongs to someone else.
+     */
+    static void checkOwner(Path path) throws IOException {
+        
+        // let's try
+        try {
+            
+            // compare the owner with the user
+            UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+            UserPrincipal user = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+            if (!owner.equals(user)) {
+                throw new IOException(path + " belongs to " + owner.getName() + ", not to " + user.getName());
+            }
+        }
+        catch (UnsupportedOperationException e) {
+            
+            // no owners on this file system
+        }
+    }
+    
+    /**
+     * Proves to a client that the daemon knows the token, after the client
+     * proved it. Called by the daemon right after accepting the client.
+     * @param channel The socket.
+     * @param input The socket input.
+     * @param token The token.
+     * @throws IOException An IO error with the socket, or the client does
+     * not know the token.
+     */
+    static void challenge(SocketChannel channel, DataInputStream input, byte[] token) throws IOException {
+        
+        // send a fresh nonce
+        byte[] server = newNonce();
+        write(channel, ByteBuffer.wrap(server));
+        
+        // read the nonce and the proof of the client
+        byte[] client = new byte[NONCE_SIZE];
+        byte[] proof = new byte[TOKEN_SIZE];
+        input.readFully(client);
+        input.readFully(proof);
+        
+        // check the proof
+        if (!MessageDigest.isEqual(proof, sign(token, CLIENT, server, client))) {
+            throw new IOException("Client without the token refused");
+        }
+        
+        // prove it back
+        write(channel, ByteBuffer.wrap(sign(token, SERVER, server, client)));
+    }
+    
+    /**
+     * Proves to the daemon that the client knows the token, and checks that
+     * the daemon knows it too. Called by the client before sending its
+     * request, so nothing reaches a daemon of someone else.
+     * @param channel The socket.
+     * @param input The socket input.
+     * @param token The token.
+     * @throws IOException An IO error with the socket, or the daemon does
+     * not know the token.
+     */
+    static void respond(SocketChannel channel, DataInputStream input, byte[] token) throws IOException {
+        
+        // let's try
+        try {
+            
+            // read the nonce of the daemon
+            byte[] server = new byte[NONCE_SIZE];
+            input.readFully(server);
+            
+            // send a fresh nonce and the proof
+            byte[] client = newNonce();
+            write(channel, ByteBuffer.wrap(client), ByteBuffer.wrap(sign(token, CLIENT, server, client)));
+            
+            // check the proof of the daemon
+            byte[] proof = new byte[TOKEN_SIZE];
+            input.readFully(proof);
+            if (!MessageDigest.isEqual(proof, sign(token, SERVER, server, client))) {
+                throw new IOException("The daemon does not know the token, it belongs to someone else");
+            }
+        }
+        catch (EOFException e) {
+            
+            // the daemon hung up
+            throw new IOException("The daemon refused the token", e);
+        }
+    }
+    
+    /**
+     * Creates a handshake nonce.
+     * @return The nonce.
+     */
+    private static byte[] newNonce() {
+        
+        // random bytes
+        byte[] nonce = new byte[NONCE_SIZE];
+        RANDOM.nextBytes(nonce);
+        return nonce;
+    }
+    
+    /**
+     * Signs the nonces of a handshake.
+     * @param token The token.
+     * @param role Who signs them.
+     * @param server The nonce of the daemon.
+     * @param client The nonce of the client.
+     * @return The proof.
+     * @throws IOException The algorithm is not available.
+     */
+    private static byte[] sign(byte[] token, int role, byte[] server, byte[] client) throws IOException {
+        
+        // let's try
+        try {
+            
+            // sign them
+            Mac mac = Mac.getInstance(MAC);
+            mac.init(new SecretKeySpec(token, MAC));
+            mac.update((byte) role);
+            mac.update(server);
+            mac.update(client);
+            return mac.doFinal();
+        }
+        catch (GeneralSecurityException e) {
+            
+            // every JVM has it
+            throw new IOException(e);
+        }
+    }
+    
+    /**
+     * Gets the default address, a socket file in the directory of the user
+     * when Unix domain sockets are available, or a port otherwise.
+     * @return The default address.
+     */
+    static String getDefaultAddress() {
+        
+        // check the property
+        String address = System.getProperty(PROPERTY);
+        if (address != null) {
+            return address;
+        }
+        
+        // check what the runtime has
+        if (isUnixSupported()) {
+            
+            // in a directory only the user can use
+            return new File(getUserDirectory(), "daemon.sock").getPath();
+        }
+        else {
+            
+            // a fixed port
+            return String.valueOf(DEFAULT_PORT);
+        }
+    }
+    
+    /**
+     * Checks if the runtime has Unix domain sockets.
+     * @return <code>true</code> if they are available.
+     */
+    static boolean isUnixSupported() {
+        
+        // let's try
+        try {
+            
+            // look for the family
+            StandardProtocolFamily.valueOf("UNIX");
+            return true;
+        }
+        catch (IllegalArgumentException e) {
+            
+            // older runtime
+            return false;
+        }
+    }
+    
+    /**
+     * Gets the socket file of an address.
+     * @param address The address.
+     * @return The socket file, or <code>null</code> if the address is a port.
+     */
+    static File getSocketFile(String address) {
+        
+        // check if it is a port
+        for (int i = 0; i < address.length(); i++) {
+            if (!Character.isDigit(address.charAt(i))) {
+                return new File(address);
+            }
+        }
+        
+        // it is
+        return null;
+    }
+    
+    /**
+     * Opens a server socket bound to an address. Socket files can only be
+     * used by their owner.
+     * @param address The address.
+     * @return The server socket.
+     * @throws IOException The address cannot be bound.
+     */
+    static ServerSocketChannel bind(String address) throws IOException {
+        
+        // check the kind of address
+        File file = getSocketFile(address);
+        if (file == null) {
+            
+            // never reachable from other machines
+            ServerSocketChannel server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port(address)));
+            return server;
+        }
+        
+        // bind the socket file
+        ServerSocketChannel server = (ServerSocketChannel) open(ServerSocketChannel.class);
+        server.bind(getUnixAddress(file));
+        
+        // let's try
+        try {
+            
+            // keep other users out
+            Files.setPosixFilePermissions(file.toPath(), EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+        }
+        catch (UnsupportedOperationException e) {
+            
+            // not a POSIX file system
+        }
+        
+        // return it
+        return server;
+    }
+    
+    /**
+     * Connects to an address.
+     * @param address The address.
+     * @return The socket.
+     * @throws IOException The address cannot be reached.
+     */
+    static SocketChannel connect(String address) throws IOException {
+        
+        // check the kind of address
+        File file = getSocketFile(address);
+        if (file == null) {
+            
+            // on the loopback interface
+            return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port(address)));
+        }
+        
+        // never talk to a socket of someone else
+        checkOwner(file.toPath());
+        
+        // connect to the socket file
+        SocketChannel channel = (SocketChannel) open(SocketChannel.class);
+        
+        // let's try
+        try {
+            
+            // connect it
+            channel.connect(getUnixAddress(file));
+            return channel;
+        }
+        catch (IOException e) {
+            
+            // do not leak it
+            channel.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Checks the arguments of a request, which can only hold inputs and
+     * outputs, and resolves their paths.
+     * @param args The arguments.
+     * @param base The directory relative paths are resolved against, or
+     * <code>null</code> if every path must be absolute.
+     * @return The arguments with absolute paths.
+     */
+    static String[] checkRequest(String[] args, File base) {
+        
+        // the result
+        String[] result = new String[args.length];
+        
+        // check every argument
+        for (int i = 0; i < args.length; i++) {
+            
+            // the current argument
+            String arg = args[i];
+            
+            // check the options
+            switch (arg) {
+                
+                // options with a path
+                case "-o":
+                case "--output":
+                case "-d":
+                case "--directory":
+                    
+                    // check the value
+                    if (i + 1 >= args.length) {
+                        throw new IllegalArgumentException("option '" + arg + "' requires a value");
+                    }
+                    
+                    // copy both
+                    result[i] = arg;
+                    i++;
+                    result[i] = resolve(args[i], base);
+                    break;
+                    
+                // options without a value
+                case "-s":
+                case "--sibling":
+                case "-":
+                    
+                    // copy it
+                    result[i] = arg;
+                    break;
+                    
+                // everything else
+                default:
+                    
+                    // the rest belongs to the daemon
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("option '" + arg + "' cannot be sent to a daemon, give it when starting the daemon");
+                    }
+                    
+                    // it is an input
+                    result[i] = resolve(arg, base);
+            }
+        }
+        
+        // return it
+        return result;
+    }
+    
+    /**
+     * Checks if a request reads the standard input of the client.
+     * @param args The arguments, already checked.
+     * @return <code>true</code> if the standard input is converted.
+     */
+    static boolean readsStandardInput(String[] args) {
+        
+        // look for inputs
+        boolean files = false;
+        for (int i = 0; i < args.length; i++) {
+            
+            // check the argument
+            switch (args[i]) {
+                
+                // the standard input
+                case "-":
+                    return true;
+                    
+                // skip the paths of outputs
+                case "-o":
+                case "--output":
+                case "-d":
+                case "--directory":
+                    i++;
+                    break;
+                    
+                // no input here
+                case "-s":
+                case "--sibling":
+                    break;
+                    
+                // a file
+                default:
+                    files = true;
+            }
+        }
+        
+        // no inputs means the standard input
+        return !files;
+    }
+    
+    /**
+     * Writes a request header.
+     * @param channel The socket.
+     * @param args The arguments.
+     * @throws IOException An IO error with the socket.
+     */
+    static void writeRequest(SocketChannel channel, String[] args) throws IOException {
+        
+        // build the header
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeInt(MAGIC);
+        header.writeInt(args.length);
+        for (String arg : args) {
+            header.writeUTF(arg);
+        }
+        
+        // send it
+        write(channel, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+    
+    /**
+     * Reads a request header.
+     * @param input The socket input.
+     * @return The arguments.
+     * @throws IOException An IO error with the socket, or not a request.
+     */
+    static String[] readRequest(DataInputStream input) throws IOException {
+        
+        // check the header
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a translate64 request");
+        }
+        int count = input.readInt();
+        if ((count < 0) || (count > FRAME_SIZE)) {
+            throw new IOException("Malformed request");
+        }
+        
+        // read the arguments
+        String[] args = new String[count];
+        for (int i = 0; i < count; i++) {
+            args[i] = input.readUTF();
+        }
+        
+        // return them
+        return args;
+    }
+    
+    /**
+     * Gets an input stream reading from a socket. Unlike the streams of
+     * <code>Channels</code>, it does not lock the socket, so another thread
+     * can write to it while this one waits for bytes, and closing it leaves
+     * the socket open.
+     * @param channel The socket.
+     * @return The input stream.
+     */
+    static InputStream newInputStream(final SocketChannel channel) {
+        
+        // create it
+        return new InputStream() {
+
+            @Override
+            public int read() throws IOException {
+                
+                // read a single byte
+                byte[] single = new byte[1];
+                return (read(single, 0, 1) == -1) ? -1 : (single[0] & 0xff);
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                
+                // nothing to read
+                if (length == 0) {
+                    return 0;
+                }
+                
+                // read from the socket
+                return channel.read(ByteBuffer.wrap(bytes, offset, length));
+            }
+
+            @Override
+            public void close() {
+                
+                // the socket still carries the reply,
+                // its owner closes it
+            }
+        };
+    }
+    
+    /**
+     * Writes all the remaining bytes to a socket.
+     * @param channel The socket.
+     * @param buffers The bytes.
+     * @throws IOException An IO error with the socket.
+     */
+    static void write(SocketChannel channel, ByteBuffer... buffers) throws IOException {
+        
+        // write until nothing is left
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffers);
+            }
+        }
+    }
+    
+    /**
+     * Opens a Unix domain socket of the given type.
+     * @param type The socket type.
+     * @return The socket.
+     * @throws IOException The runtime has no Unix domain sockets, or the
+     * socket cannot be opened.
+     */
+    private static Object open(Class<?> type) throws IOException {
+        
+        // check the runtime
+        if (!isUnixSupported()) {
+            throw new IOException("Socket files need Java 16 or later, use a port instead");
+        }
+        
+        // let's try
+        try {
+            
+            // open it with the Unix family
+            return type.getMethod("open", ProtocolFamily.class).invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        }
+        catch (InvocationTargetException e) {
+            
+            // the socket failed
+            throw rethrow(e);
+        }
+        catch (ReflectiveOperationException e) {
+            
+            // not there
+            throw new IOException("Socket files are not supported by this runtime", e);
+        }
+    }
+    
+    /**
+     * Gets the Unix domain socket address of a socket file.
+     * @param file The socket file.
+     * @return The address.
+     * @throws IOException The runtime has no Unix domain sockets.
+     */
+    private static SocketAddress getUnixAddress(File file) throws IOException {
+        
+        // let's try
+        try {
+            
+            // create it
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class).invoke(null, file.getPath());
+        }
+        catch (InvocationTargetException e) {
+            
+            // the path is not valid
+            throw rethrow(e);
+        }
+        catch (ReflectiveOperationException e) {
+            
+            // not there
+            throw new IOException("Socket files are not supported by this runtime", e);
+        }
+    }
+    
+    /**
+     * Gets the IO error behind a reflective call.
+     * @param e The reflective error.
+     * @return The IO error.
+     */
+    private static IOException rethrow(InvocationTargetException e) {
+        
+        // check the cause
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        
+        // wrap anything else
+        return new IOException(cause);
+    }
+    
+    /**
+     * Gets the port of an address.
+     * @param address The address.
+     * @return The port.
+     */
+    private static int port(String address) {
+        
+        // let's try
+        try {
+            
+            // parse it
+            int port = Integer.parseInt(address);
+            if ((port > 0) && (port < 65536)) {
+                return port;
+            }
+        }
+        catch (NumberFormatException e) {
+            
+            // fall through
+        }
+        
+        // not a port
+        throw new IllegalArgumentException("invalid port '" + address + "'");
+    }
+    
+    /**
+     * Resolves a path.
+     * @param path The path.
+     * @param base The directory relative paths are resolved against, or
+     * <code>null</code> if the path must be absolute.
+     * @return The absolute path.
+     */
+    private static String resolve(String path, File base) {
+        
+        // check if it is already absolute
+        File file = new File(path);
+        if (file.isAbsolute()) {
+            return path;
+        }
+        
+        // check if it can be resolved
+        if (base == null) {
+            throw new IllegalArgumentException("path '" + path + "' is not absolute");
+        }
+        
+        // resolve it
+        return new File(base, path).getPath();
+    }
+    
+    /**
+     * Writes bytes to a socket in frames of a single kind. Frames of
+     * different streams sharing the same socket never interleave.
+     */
+    static class FrameOutputStream extends OutputStream {
+        
+        // the socket
+        private final SocketChannel channel;
+        
+        // the frame kind
+        private final int kind;
+        
+        // the bytes not sent yet
+        private final byte[] buffer;
+        
+        // how many of them
+        private int count = 0;
+        
+        /**
+         * Constructor method.
+         * @param channel The socket.
+         * @param kind The frame kind.
+         */
+        FrameOutputStream(SocketChannel channel, int kind) {
+            
+            // set the values
+            this.channel = channel;
+            this.kind = kind;
+            this.buffer = new byte[kind == OUT ? FRAME_SIZE : 1024];
+        }
+        
+        /**
+         * Writes a single byte.
+         * @param value The byte.
+         * @throws IOException An IO error with the socket.
+         */
+        @Override
+        public void write(int value) throws IOException {
+            
+            // send a full buffer first
+            if (count == buffer.length) {
+                flush();
+            }
+            
+            // keep it
+            buffer[count++] = (byte) value;
+        }
+        
+        /**
+         * Writes bytes.
+         * @param bytes The bytes.
+         * @param offset The first byte.
+         * @param length How many bytes.
+         * @throws IOException An IO error with the socket.
+         */
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            
+            // large writes go out on their own
+            if (length >= buffer.length) {
+                flush();
+                send(kind, bytes, offset, length);
+                return;
+            }
+            
+            // make room
+            if (count + length > buffer.length) {
+                flush();
+            }
+            
+            // keep them
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count = count + length;
+        }
+        
+        /**
+         * Sends the bytes not sent yet.
+         * @throws IOException An IO error with the socket.
+         */
+        @Override
+        public void flush() throws IOException {
+            
+            // check if there is something
+            if (count > 0) {
+                send(kind, buffer, 0, count);
+                count = 0;
+            }
+        }
+        
+        /**
+         * Sends the last frame, with the exit status.
+         * @param status The exit status.
+         * @throws IOException An IO error with the socket.
+         */
+        void exit(int status) throws IOException {
+            
+            // send what is left, then the status
+            flush();
+            send(EXIT, new byte[0], 0, status);
+        }
+        
+        /**
+         * Sends a frame. The exit frame carries the status where the other
+         * frames carry their length.
+         * @param type The frame kind.
+         * @param bytes The bytes.
+         * @param offset The first byte.
+         * @param length How many bytes, or the exit status.
+         * @throws IOException An IO error with the socket.
+         */
+        private void send(int type, byte[] bytes, int offset, int length) throws IOException {
+            
+            // the frame header
+            ByteBuffer header = ByteBuffer.allocate(5);
+            header.put((byte) type).putInt(length).flip();
+            
+            // the frame body
+            ByteBuffer body = ByteBuffer.wrap(bytes, offset, (type == EXIT) ? 0 : length);
+            
+            // never interleave with other streams
+            synchronized (channel) {
+                DaemonProtocol.write(channel, header, body);
+            }
+        }
+    }
+}
@@ -0,0 +1,1316 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>TranslateCLI.java</b>: provides the command line mode for Translate
+ * 64, which never touches AWT or Swing.
+ */
+
+// package definition
+package net.sf.translate64.cli;
+
+// needed imports
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileFilter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.translate64.codec.Base64Engine;
+import net.sf.translate64.codec.Engines;
+import net.sf.translate64.util.Base64Format;
+import net.sf.translate64.util.BatchConverter;
+import net.sf.translate64.util.Checksums;
+import net.sf.translate64.util.Compression;
+import net.sf.translate64.util.DiskCache;
+import net.sf.translate64.util.EmbedTemplate;
+import net.sf.translate64.util.FileSink;
+import net.sf.translate64.util.FolderWatcher;
+import net.sf.translate64.util.MimeTypes;
+import net.sf.translate64.util.TranslateUtils;
+
+/**
+ * Provides the command line mode for Translate 64. Files, or the standard
+ * input, are converted to the standard output or to output files. This
+ * class never touches AWT, Swing or the task dialogs, so it runs on
+ * headless machines and starts fast.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class TranslateCLI {
+
+    /**
+     * Exit status for a successful run.
+     */
+    public static final int EXIT_SUCCESS = 0;
+    
+    /**
+     * Exit status when a conversion failed.
+     */
+    public static final int EXIT_FAILURE = 1;
+    
+    /**
+     * Exit status for invalid arguments.
+     */
+    public static final int EXIT_USAGE = 2;
+    
+    // name used for the standard input
+    private static final String STDIN = "-";
+    
+    // size of the standard output buffer
+    private static final int OUTPUT_BUFFER = 64 * 1024;
+    
+    // the input files
+    private final List<String> inputs = new ArrayList<String>();
+    
+    // the output file, if any
+    private File output;
+    
+    // the output directory, if any
+    private File directory;
+    
+    // whether outputs go next to their inputs
+    private boolean sibling = false;
+    
+    // the output format, if any
+    private Base64Format format;
+    
+    // whether the URL safe alphabet was requested
+    private boolean urlSafe = false;
+    
+    // whether the padding was dropped
+    private boolean unpadded = false;
+    
+    // the line length, if any
+    private long wrap = -1;
+    
+    // the compression, if any
+    private Compression compression;
+    
+    // the compression level, if any
+    private long level = -1;
+    
+    // whether every file is sampled before being compressed
+    private boolean adaptive = false;
+    
+    // the template, if any
+    private EmbedTemplate template;
+    
+    // the input directories
+    private final List<Path> roots = new ArrayList<Path>();
+    
+    // the cache directory, if any
+    private File cacheDirectory;
+    
+    // the cache capacity
+    private long cacheCapacity = DiskCache.DEFAULT_CAPACITY;
+    
+    // the cache, if any
+    private DiskCache cache;
+    
+    // the standard output
+    private OutputStream stdout;
+    
+    // the standard input
+    private final InputStream stdin;
+    
+    // the standard error
+    private final PrintStream stderr;
+    
+    // whether to run as a daemon
+    private boolean daemon = false;
+    
+    // the daemon address
+    private String address;
+    
+    // whether to print the checksums of every input
+    private boolean checksums = false;
+    
+    // whether to keep watching the input directory
+    private boolean watch = false;
+    
+    // how long a watched file must stay unchanged
+    private long settle = -1;
+    
+    // the exit status
+    private int status = EXIT_SUCCESS;
+    
+    /**
+     * Constructor method, for a run using the standard streams of the
+     * process.
+     */
+    private TranslateCLI() {
+        
+        // set the values
+        this(System.in, null, System.err, null);
+    }
+    
+    /**
+     * Constructor method.
+     * @param stdin The standard input.
+     * @param stdout The standard output, or <code>null</code> for the one
+     * of the process.
+     * @param stderr The standard error.
+     * @param cache The cache, or <code>null</code> to open the one given
+     * in the arguments, if any.
+     */
+    private TranslateCLI(InputStream stdin, OutputStream stdout, PrintStream stderr, DiskCache cache) {
+        
+        // set the values
+        this.stdin = stdin;
+        this.stdout = stdout;
+        this.stderr = stderr;
+        this.cache = cache;
+    }
+    
+    /**
+     * Runs the command line mode.
+     * @param args The command line arguments.
+     * @return The exit status.
+     */
+    public static int run(String[] args) {
+        
+        // make sure nothing tries to open a display
+        System.setProperty("java.awt.headless", "true");
+        
+        // a thin client never loads the encoders
+        if (DaemonClient.isRequested(args)) {
+            return DaemonClient.run(args);
+        }
+        
+        // create a new instance
+        TranslateCLI cli = new TranslateCLI();
+        
+        // let's try
+        try {
+            
+            // parse the arguments
+            if (!cli.parse(args)) {
+                return EXIT_SUCCESS;
+            }
+            
+            // use them from now on
+            cli.configure();
+            
+            // check what to do
+            if (cli.daemon) {
+                
+                // stay resident
+                return new TranslateDaemon(cli.address, cli.openCache()).run();
+            }
+            else if (cli.watch) {
+                
+                // keep the outputs up to date
+                return cli.watch();
+            }
+            else {
+                
+                // convert once
+                return cli.convert();
+            }
+        }
+        catch (IllegalArgumentException e) {
+            
+            // bad arguments
+            System.err.println("translate64: " + e.getMessage());
+            System.err.println("Try 'translate64 --help' for more information.");
+            return EXIT_USAGE;
+        }
+    }
+    
+    /**
+     * Runs a request sent to the daemon. Only inputs and outputs can be
+     * given, the rest was set when the daemon started.
+     * @param args The request arguments, with absolute paths.
+     * @param stdin The standard input of the client.
+     * @param stdout The standard output of the client.
+     * @param stderr The standard error of the client.
+     * @param cache The cache of the daemon, or <code>null</code>.
+     * @return The exit status.
+     */
+    static int run(String[] args, InputStream stdin, OutputStream stdout, PrintStream stderr, DiskCache cache) {
+        
+        // create a new instance
+        TranslateCLI cli = new TranslateCLI(stdin, stdout, stderr, cache);
+        
+        // let's try
+        try {
+            
+            // parse the arguments, which leaves
+            // the options of the daemon untouched
+            cli.parse(DaemonProtocol.checkRequest(args, null));
+            
+            // convert the inputs
+            return cli.convert();
+        }
+        catch (IllegalArgumentException e) {
+            
+            // bad arguments
+            stderr.println("translate64: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+    }
+    
+    /**
+     * Parses the command line arguments.
+     * @param args The arguments.
+     * @return <code>true</code> if there is something to convert, or
+     * <code>false</code> if only the help was requested.
+     */
+    private boolean parse(String[] args) {
+        
+        // check every argument
+        for (int i = 0; i < args.length; i++) {
+            
+            // the current argument
+            String arg = args[i];
+            
+            // check the options
+            switch (arg) {
+                
+                // help
+                case "-h":
+                case "--help":
+                    
+                    // print it and quit
+                    printHelp();
+                    return false;
+                    
+                // output file
+                case "-o":
+                case "--output":
+                    
+                    // get the value
+                    output = new File(value(args, ++i, arg));
+                    break;
+                    
+                // output directory
+                case "-d":
+                case "--directory":
+                    
+                    // get the value
+                    directory = new File(value(args, ++i, arg));
+                    break;
+                    
+                // outputs next to the inputs
+                case "-s":
+                case "--sibling":
+                    
+                    // set the flag
+                    sibling = true;
+                    break;
+                    
+                // encoding engine
+                case "-e":
+                case "--engine":
+                    
+                    // get the value
+                    engine(value(args, ++i, arg));
+                    break;
+                    
+                // output format
+                case "-f":
+                case "--format":
+                    
+                    // get the value
+                    format = format(value(args, ++i, arg));
+                    break;
+                    
+                // URL safe alphabet
+                case "-u":
+                case "--url-safe":
+                    
+                    // set the flag
+                    urlSafe = true;
+                    break;
+                    
+                // no padding
+                case "--no-padding":
+                    
+                    // set the flag
+                    unpadded = true;
+                    break;
+                    
+                // compression
+                case "-z":
+                case "--compress":
+                    
+                    // get the value
+                    compression = compression(value(args, ++i, arg));
+                    break;
+                    
+                // compression level
+                case "--level":
+                    
+                    // get the value
+                    level = number(value(args, ++i, arg), arg);
+                    break;
+                    
+                // compress only what shrinks
+                case "-a":
+                case "--adaptive":
+                    
+                    // set the flag
+                    adaptive = true;
+                    break;
+                    
+                // template around the output
+                case "-t":
+                case "--template":
+                    
+                    // get the value
+                    template = template(value(args, ++i, arg));
+                    break;
+                    
+                // line length
+                case "-w":
+                case "--wrap":
+                    
+                    // get the value
+                    wrap = number(value(args, ++i, arg), arg);
+                    break;
+                    
+                // cache directory
+                case "-c":
+                case "--cache":
+                    
+                    // get the value
+                    cacheDirectory = new File(value(args, ++i, arg));
+                    break;
+                    
+                // cache capacity
+                case "--cache-size":
+                    
+                    // get the value
+                    cacheCapacity = number(value(args, ++i, arg), arg);
+                    break;
+                    
+                // resident daemon
+                case "--daemon":
+                    
+                    // set the flag
+                    daemon = true;
+                    break;
+                    
+                // checksums of every input
+                case "--checksums":
+                    
+                    // set the flag
+                    checksums = true;
+                    break;
+                    
+                // watch the input directory
+                case "--watch":
+                    
+                    // set the flag
+                    watch = true;
+                    break;
+                    
+                // settle time of watched files
+                case "--settle":
+                    
+                    // get the value
+                    settle = number(value(args, ++i, arg), arg);
+                    break;
+                    
+                // daemon address
+                case "--socket":
+                    
+                    // get the value
+                    address = value(args, ++i, arg);
+                    break;
+                    
+                // everything else
+                default:
+                    
+                    // check for unknown options
+                    if (arg.startsWith("-") && !arg.equals(STDIN)) {
+                        throw new IllegalArgumentException("unknown option '" + arg + "'");
+                    }
+                    
+                    // it is an input
+                    inputs.add(arg);
+            }
+        }
+        
+        // the daemon only gets inputs from its clients
+        if (daemon) {
+            
+            // check the inputs and outputs
+            if (!inputs.isEmpty() || (output != null) || (directory != null) || sibling) {
+                throw new IllegalArgumentException("option '--daemon' cannot be used with inputs or outputs");
+            }
+            
+            // nothing else to check
+            return true;
+        }
+        if (address != null) {
+            throw new IllegalArgumentException("option '--socket' requires '--daemon' or '--connect'");
+        }
+        
+        // no inputs means the standard input
+        if (inputs.isEmpty()) {
+            inputs.add(STDIN);
+        }
+        
+        // check the outputs
+        if ((output != null) && (directory != null)) {
+            throw new IllegalArgumentException("options '--output' and '--directory' cannot be used together");
+        }
+        if ((output != null) && (inputs.size() > 1)) {
+            throw new IllegalArgumentException("option '--output' requires a single input");
+        }
+        if ((output != null) && new File(inputs.get(0)).isDirectory()) {
+            throw new IllegalArgumentException("option '--output' cannot be used with a directory, use '--directory' instead");
+        }
+        if ((directory != null) && inputs.contains(STDIN)) {
+            throw new IllegalArgumentException("option '--directory' cannot be used with the standard input");
+        }
+        if (sibling && ((output != null) || (directory != null))) {
+            throw new IllegalArgumentException("option '--sibling' cannot be used with '--output' or '--directory'");
+        }
+        if (sibling && inputs.contains(STDIN)) {
+            throw new IllegalArgumentException("option '--sibling' cannot be used with the standard input");
+        }
+        if (watch && ((directory == null) || (inputs.size() > 1) || inputs.contains(STDIN))) {
+            throw new IllegalArgumentException("option '--watch' requires a single input directory and '--directory'");
+        }
+        if (checksums && watch) {
+            throw new IllegalArgumentException("option '--checksums' cannot be used with '--watch'");
+        }
+        if ((settle >= 0) && !watch) {
+            throw new IllegalArgumentException("option '--settle' requires '--watch'");
+        }
+        
+        // there is something to do
+        return true;
+    }
+    
+    /**
+     * Uses the chosen format, compression and template from now on.
+     */
+    private void configure() {
+        
+        // use the chosen format, compression and template from now on
+        Base64Format.setDefault(getFormat());
+        Compression.setDefault(getCompression());
+        if (template != null) {
+            EmbedTemplate.setDefault(template);
+        }
+        
+        // check if they fit together
+        if (!EmbedTemplate.getDefault().allowsLineBreaks() && (Base64Format.getDefault().getLineLength() > 0)) {
+            throw new IllegalArgumentException("template '" + EmbedTemplate.getDefault() + "' cannot hold line breaks");
+        }
+        if (!EmbedTemplate.getDefault().allowsCompression() && Compression.getDefault().isEnabled()) {
+            throw new IllegalArgumentException("template '" + EmbedTemplate.getDefault() + "' cannot hold compressed data");
+        }
+        
+        // raw deflate has no magic bytes and a zlib header may look like
+        // text, so only gzip or the php template tell compressed outputs
+        // apart from the ones left as they were
+        if (Compression.getDefault().isAdaptive() && !Compression.getDefault().getName().equals("gzip") && (EmbedTemplate.getDefault() != EmbedTemplate.PHP)) {
+            throw new IllegalArgumentException("option '--adaptive' with '" + Compression.getDefault().getName() + "' leaves compressed outputs indistinguishable, use gzip or the php template");
+        }
+    }
+    
+    /**
+     * Gets the value of an option.
+     * @param args The arguments.
+     * @param index The index of the value.
+     * @param option The option.
+     * @return The value.
+     */
+    private static String value(String[] args, int index, String option) {
+        
+        // check if there is a value
+        if (index >= args.length) {
+            throw new IllegalArgumentException("option '" + option + "' requires a value");
+        }
+        
+        // return it
+        return args[index];
+    }
+    
+    /**
+     * Selects the encoding engine.
+     * @param name The engine name.
+     */
+    private static void engine(String name) {
+        
+        // look for it
+        Base64Engine engine = Engines.get(name);
+        
+        // check if it exists
+        if (engine == null) {
+            throw new IllegalArgumentException("unknown engine '" + name + "', available engines are " + getEngineNames());
+        }
+        
+        // use it from now on
+        Engines.setDefault(engine);
+    }
+    
+    /**
+     * Gets a predefined format.
+     * @param name The format name.
+     * @return The format.
+     */
+    private static Base64Format format(String name) {
+        
+        // look for it
+        Base64Format format = Base64Format.forName(name);
+        
+        // check if it exists
+        if (format == null) {
+            throw new IllegalArgumentException("unknown format '" + name + "', available formats are standard, url, mime, pem");
+        }
+        
+        // return it
+        return format;
+    }
+    
+    /**
+     * Gets a template.
+     * @param name The template name.
+     * @return The template.
+     */
+    private static EmbedTemplate template(String name) {
+        
+        // look for it
+        EmbedTemplate template = EmbedTemplate.forName(name);
+        
+        // check if it exists
+        if (template == null) {
+            throw new IllegalArgumentException("unknown template '" + name + "', available templates are none, php, data, json, css");
+        }
+        
+        // return it
+        return template;
+    }
+    
+    /**
+     * Gets a compression.
+     * @param name The compression name.
+     * @return The compression.
+     */
+    private static Compression compression(String name) {
+        
+        // look for it
+        Compression compression = Compression.forName(name);
+        
+        // check if it exists
+        if (compression == null) {
+            throw new IllegalArgumentException("unknown compression '" + name + "', available compressions are none, deflate, gzip, zlib, auto");
+        }
+        
+        // return it
+        return compression;
+    }
+    
+    /**
+     * Gets the compression, from the chosen one, or the default one, and
+     * the level and adaptive options. Adaptive compression alone means
+     * gzip, whose readers can tell compressed outputs apart.
+     * @return The compression.
+     */
+    private Compression getCompression() {
+        
+        // start from the chosen one
+        Compression result = (compression == null) ? Compression.getDefault() : compression;
+        
+        // apply the adaptive option
+        if (adaptive) {
+            result = result.isEnabled() ? result.withAdaptive(true) : Compression.AUTO;
+        }
+        
+        // apply the level
+        if (level >= 0) {
+            
+            // check the value
+            if (level > 9) {
+                throw new IllegalArgumentException("option '--level' requires a number from 0 to 9");
+            }
+            
+            // set it
+            result = result.withLevel((int) level);
+        }
+        
+        // return it
+        return result;
+    }
+    
+    /**
+     * Gets the output format, from the chosen one, or the default one,
+     * and the alphabet, padding and line options.
+     * @return The format.
+     */
+    private Base64Format getFormat() {
+        
+        // start from the chosen one
+        Base64Format result = (format == null) ? Base64Format.getDefault() : format;
+        
+        // apply the alphabet and padding
+        if (urlSafe) {
+            result = result.withUrlSafe(true);
+        }
+        if (unpadded) {
+            result = result.withPadding(false);
+        }
+        
+        // apply the lines, keeping the separator if it already has one
+        if (wrap >= 0) {
+            
+            // check the value
+            if ((wrap > Integer.MAX_VALUE) || (wrap % 4 != 0)) {
+                throw new IllegalArgumentException("option '--wrap' requires a multiple of 4");
+            }
+            
+            // set the lines
+            String separator = (result.getLineLength() > 0) ? result.getLineSeparator() : "\n";
+            result = result.withLines((int) wrap, separator);
+        }
+        
+        // return it
+        return result;
+    }
+    
+    /**
+     * Gets the names of the available engines, separated by commas.
+     * @return The names.
+     */
+    private static String getEngineNames() {
+        
+        // join them
+        StringBuilder names = new StringBuilder();
+        for (String name : Engines.getNames()) {
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            names.append(name);
+        }
+        
+        // return them
+        return names.toString();
+    }
+    
+    /**
+     * Parses a number given to an option.
+     * @param value The value.
+     * @param option The option.
+     * @return The number.
+     */
+    private static long number(String value, String option) {
+        
+        // let's try
+        try {
+            
+            // parse it
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            
+            // not a number
+            throw new IllegalArgumentException("option '" + option + "' requires a number");
+        }
+    }
+    
+    /**
+     * Converts all inputs.
+     * @return The exit status.
+     */
+    private int convert() {
+        
+        // open the cache, if any
+        if (cache == null) {
+            cache = openCache();
+        }
+        
+        // the standard output, without the overhead of
+        // a print stream and flushed only at the end
+        if (stdout == null) {
+            stdout = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER);
+        }
+        
+        // check if there are many files
+        if (!inputs.contains(STDIN) && ((inputs.size() > 1) || new File(inputs.get(0)).isDirectory())) {
+            
+            // let's try
+            try {
+                
+                // convert them concurrently
+                convertBatch();
+            }
+            catch (InterruptedException e) {
+                
+                // nothing else to do
+                status = EXIT_FAILURE;
+            }
+        }
+        else {
+            
+            // convert every input
+            for (String input : inputs) {
+                
+                // let's try
+                try {
+                    
+                    // convert it
+                    convert(input);
+                }
+                catch (IOException e) {
+                    
+                    // report and go on
+                    fail(input, e);
+                }
+            }
+        }
+        
+        // let's try
+        try {
+            
+            // flush what was written
+            stdout.flush();
+        }
+        catch (IOException e) {
+            
+            // nothing else can be written
+            status = EXIT_FAILURE;
+        }
+        
+        // return the status
+        return status;
+    }
+    
+    /**
+     * Watches the input directory, keeping the outputs up to date until
+     * the process is stopped.
+     * @return The exit status, when the directory cannot be watched.
+     */
+    private int watch() {
+        
+        // check the input
+        File root = new File(inputs.get(0));
+        if (!root.isDirectory()) {
+            fail(root.getPath(), new IOException("No such directory"));
+            return status;
+        }
+        
+        // create the watcher
+        FolderWatcher watcher = new FolderWatcher(root, directory, new FolderWatcher.Listener() {
+
+            @Override
+            public void fileConverted(File file, File target) {
+                
+                // report it
+                stderr.println("translate64: " + target.getPath() + ": updated");
+            }
+
+            @Override
+            public void fileRemoved(File file, File target) {
+                
+                // report it
+                stderr.println("translate64: " + target.getPath() + ": removed");
+            }
+
+            @Override
+            public void fileFailed(File file, IOException error) {
+                
+                // report and go on
+                fail(file.getPath(), error);
+            }
+        });
+        
+        // unchanged files come from the cache
+        watcher.setDiskCache(openCache());
+        if (settle >= 0) {
+            watcher.setSettleTime(settle);
+        }
+        
+        // let's try
+        try {
+            
+            // watch until stopped
+            watcher.run();
+        }
+        catch (IOException e) {
+            
+            // cannot watch it
+            fail(root.getPath(), e);
+        }
+        catch (InterruptedException e) {
+            
+            // stopped
+        }
+        
+        // return the status
+        return status;
+    }
+    
+    /**
+     * Opens the cache given in the arguments.
+     * @return The cache, or <code>null</code> if there is none or it
+     * cannot be opened.
+     */
+    private DiskCache openCache() {
+        
+        // check if there is one
+        if (cacheDirectory == null) {
+            return null;
+        }
+        
+        // let's try
+        try {
+            
+            // open it
+            return new DiskCache(cacheDirectory, cacheCapacity);
+        }
+        catch (IOException e) {
+            
+            // go on without it
+            stderr.println("translate64: " + cacheDirectory.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Converts all inputs concurrently, writing the results in the same
+     * order as the inputs.
+     * @throws InterruptedException The thread was interrupted.
+     */
+    private void convertBatch() throws InterruptedException {
+        
+        // create a new batch
+        BatchConverter batch = new BatchConverter(new BatchConverter.Listener() {
+
+            @Override
+            public void fileConverted(int index, File file, String result) {
+                
+                // outputs written to files are already there
+                if (result == null) {
+                    return;
+                }
+                
+                // let's try
+                try {
+                    
+                    // into the standard output, one line per input
+                    stdout.write(result.getBytes(StandardCharsets.US_ASCII));
+                    stdout.write('\n');
+                }
+                catch (IOException e) {
+                    
+                    // report and go on
+                    fail(file.getPath(), e);
+                }
+            }
+
+            @Override
+            public void fileFailed(int index, File file, IOException error) {
+                
+                // report and go on
+                fail(file.getPath(), error);
+            }
+        });
+        
+        // unchanged files come from the cache
+        batch.setDiskCache(cache);
+        
+        // check if the checksums were requested
+        if (checksums) {
+            
+            // print them as the files are delivered
+            batch.setChecksumListener(new BatchConverter.ChecksumListener() {
+
+                @Override
+                public void checksumsComputed(int index, File file, Checksums checksums) {
+                    
+                    // print them
+                    printChecksums(file.getPath(), checksums);
+                }
+            });
+        }
+        
+        // check if outputs go to files
+        if ((directory != null) || sibling) {
+            
+            // stream them there
+            batch.setDestination(new BatchConverter.Destination() {
+
+                @Override
+                public File getTarget(File file) {
+                    
+                    // next to the input or into the directory
+                    return sibling ? FileSink.getTarget(file) : TranslateCLI.this.getTarget(file);
+                }
+            });
+        }
+        
+        // outputs next to the inputs are not converted again
+        if (sibling) {
+            
+            // skip them while walking
+            batch.setFilter(new FileFilter() {
+
+                @Override
+                public boolean accept(File file) {
+                    
+                    // check the extension
+                    return !file.getName().endsWith(FileSink.EXTENSION);
+                }
+            });
+        }
+        
+        // submit every input
+        for (String input : inputs) {
+            
+            // get the file
+            File file = new File(input);
+            
+            // check what it is
+            if (file.isFile()) {
+                
+                // a regular file
+                batch.submit(file);
+            }
+            else {
+                
+                // check for a directory
+                if (file.isDirectory()) {
+                    
+                    // let's try
+                    try {
+                        
+                        // convert everything inside it
+                        roots.add(file.toPath());
+                        batch.submitTree(file);
+                    }
+                    catch (IOException e) {
+                        
+                        // report and go on
+                        fail(input, e);
+                    }
+                }
+                else {
+                    
+                    // nothing there
+                    fail(input, new IOException("No such file"));
+                }
+            }
+        }
+        
+        // wait for all of them
+        batch.await();
+    }
+    
+    /**
+     * Gets the output file of an input, inside the output directory. Files
+     * found under an input directory keep their path relative to it.
+     * @param file The input file.
+     * @return The output file.
+     */
+    private File getTarget(File file) {
+        
+        // the input path
+        Path path = file.toPath();
+        
+        // check the input directories
+        for (Path root : roots) {
+            
+            // check if the file is inside this one
+            if (path.startsWith(root)) {
+                
+                // keep the tree under the directory name
+                Path relative = root.relativize(path);
+                Path name = root.toAbsolutePath().normalize().getFileName();
+                
+                // the file system root has no name
+                if (name != null) {
+                    relative = name.resolve(relative);
+                }
+                
+                // return the output file
+                return new File(directory, relative.toString() + FileSink.EXTENSION);
+            }
+        }
+        
+        // it is a plain input
+        return new File(directory, file.getName() + FileSink.EXTENSION);
+    }
+    
+    /**
+     * Reports a failed input.
+     * @param input The input name.
+     * @param e The error.
+     */
+    private void fail(String input, IOException e) {
+        
+        // report it
+        stderr.println("translate64: " + input + ": " + e.getMessage());
+        
+        // and remember it
+        status = EXIT_FAILURE;
+    }
+    
+    /**
+     * Converts a single input.
+     * @param input The input name.
+     * @throws IOException An IO error with the input or the output.
+     */
+    private void convert(String input) throws IOException {
+        
+        // check for the standard input
+        if (input.equals(STDIN)) {
+            
+            // convert it
+            write(null, output);
+        }
+        else {
+            
+            // get the file
+            File file = new File(input);
+            
+            // check if it is a regular file
+            if (!file.isFile()) {
+                throw new IOException("No such file");
+            }
+            
+            // check where it goes
+            if (directory != null) {
+                
+                // into the directory
+                write(file, new File(directory, file.getName() + FileSink.EXTENSION));
+            }
+            else if (sibling) {
+                
+                // next to the input
+                write(file, FileSink.getTarget(file));
+            }
+            else {
+                
+                // into the output file or the standard output
+                write(file, output);
+            }
+        }
+    }
+    
+    /**
+     * Writes the conversion of an input to its destination.
+     * @param file The input file, or <code>null</code> for the standard
+     * input.
+     * @param target The output file, or <code>null</code> for the standard
+     * output.
+     * @throws IOException An IO error with the input or the output.
+     */
+    private void write(File file, File target) throws IOException {
+        
+        // the standard input goes on its own
+        if (file == null) {
+            writeStandardInput(target);
+            return;
+        }
+        
+        // the checksums, if requested
+        Checksums sums = checksums ? new Checksums() : null;
+        
+        // check the destination
+        if (target == null) {
+            
+            // standard output, one line per input, the cache
+            // does not read the file for the checksums
+            if ((cache != null) && (sums == null)) {
+                cache.convertFile(file, stdout, null);
+            }
+            else {
+                TranslateUtils.convertFile(file, stdout, sums, null);
+            }
+            stdout.write('\n');
+        }
+        else {
+            
+            // stream the conversion straight to the file,
+            // large files are mapped and encoded in parallel
+            FileSink.convertFile(file, target, cache, sums, null);
+        }
+        
+        // print the checksums, if any
+        if (sums != null) {
+            printChecksums(file.getPath(), sums);
+        }
+    }
+    
+    /**
+     * Prints the checksums of an input to the standard error, in the
+     * tagged format read by <code>sha256sum -c</code>.
+     * @param input The input name.
+     * @param sums The checksums.
+     */
+    private void printChecksums(String input, Checksums sums) {
+        
+        // one line per algorithm
+        stderr.println("SHA256 (" + input + ") = " + sums.getSha256());
+        stderr.println(sums.getCrcAlgorithm() + " (" + input + ") = " + sums.getCrc());
+    }
+    
+    /**
+     * Writes the conversion of the standard input to its destination. If
+     * the template needs a MIME type, the first bytes are read ahead to
+     * detect it, and then put back in front of the rest.
+     * @param target The output file, or <code>null</code> for the standard
+     * output.
+     * @throws IOException An IO error with the input or the output.
+     */
+    private void writeStandardInput(File target) throws IOException {
+        
+        // the template and the compression
+        EmbedTemplate embed = EmbedTemplate.getDefault();
+        Compression compression = Compression.getDefault();
+        
+        // read the first bytes ahead, if needed
+        byte[] head = new byte[embed.needsMimeType() ? MimeTypes.HEAD_SIZE : 0];
+        int count = 0;
+        int read;
+        while ((count < head.length) && ((read = stdin.read(head, count, head.length - count)) > 0)) {
+            count = count + read;
+        }
+        
+        // the text around the output
+        byte[] prefix = embed.getPrefix(head, count, null, compression);
+        byte[] suffix = embed.getSuffix(compression);
+        
+        // the whole input, through the checksums if requested,
+        // and compressed if needed
+        InputStream input = new SequenceInputStream(new ByteArrayInputStream(head, 0, count), stdin);
+        Checksums sums = checksums ? new Checksums() : null;
+        ReadableByteChannel channel = (sums == null) ? Channels.newChannel(input) : sums.wrap(Channels.newChannel(input));
+        channel = compression.compress(channel, null);
+        
+        // check the destination
+        if (target == null) {
+            
+            // standard output, one line per input
+            stdout.write(prefix);
+            TranslateUtils.convertChannel(channel, stdout);
+            stdout.write(suffix);
+            stdout.write('\n');
+        }
+        else {
+            
+            // stream the conversion straight to the file
+            FileSink.convertChannel(channel, target, prefix, suffix, null);
+        }
+        
+        // print the checksums, if any
+        if (sums != null) {
+            printChecksums(STDIN, sums);
+        }
+    }
+    
+    /**
+     * Prints the help message.
+     */
+    private static void printHelp() {
+        
+        // print the usage
+        System.out.println("Usage: translate64 [options] [file...]");
+        System.out.println("Converts files to Base64. Directories are converted recursively.");
+        System.out.println("Without files, or with '-', the standard input is converted. Each");
+        System.out.println("result is written on its own line.");
+        System.out.println();
+        System.out.println("Options:");
+        System.out.println("  -o, --output <file>      write the result to a file");
+        System.out.println("  -d, --directory <dir>    write each result to <dir>/<name>.b64, files in");
+        System.out.println("                           directories keep their relative paths");
+        System.out.println("  -s, --sibling            write each result next to its file as <name>.b64");
+        System.out.println("  -e, --engine <name>      encode with the given engine, one of " + getEngineNames());
+        System.out.println("  -f, --format <name>      output format: standard (default), url (URL safe");
+        System.out.println("                           alphabet, no padding), mime (lines of 76 with CRLF)");
+        System.out.println("                           or pem (lines of 64 with LF)");
+        System.out.println("  -u, --url-safe           use the URL and file name safe alphabet");
+        System.out.println("      --no-padding         omit the trailing '=' characters");
+        System.out.println("  -w, --wrap <columns>     break lines every <columns> characters, a multiple");
+        System.out.println("                           of 4, or 0 for a single line");
+        System.out.println("  -z, --compress <name>    compress before encoding, in parallel: deflate (for");
+        System.out.println("                           PHP gzinflate), gzip (gzdecode), zlib");
+        System.out.println("                           (gzuncompress) or auto (adaptive gzip)");
+        System.out.println("  -t, --template <name>    write the output inside a template: php");
+        System.out.println("                           (base64_decode('...'), decompressing if needed),");
+        System.out.println("                           data (data URI with the detected MIME type), json");
+        System.out.println("                           (a JSON string) or css (url(\"data:...\"))");
+        System.out.println("  -a, --adaptive           sample every file and only compress what shrinks,");
+        System.out.println("                           leaving JPEG, PNG, ZIP and the like as they are;");
+        System.out.println("                           deflate and zlib need '-t php' to tell them apart");
+        System.out.println("      --level <0-9>        compression level (default 6)");
+        System.out.println("  -c, --cache <dir>        reuse and store results in a cache directory,");
+        System.out.println("                           shared by every run using the same directory");
+        System.out.println("      --cache-size <bytes> maximum size of the cache (default 1 GB)");
+        System.out.println("      --checksums          print the SHA-256 and CRC32C of every input to the");
+        System.out.println("                           standard error, computed while it is converted");
+        System.out.println("      --watch              keep converting new and changed files of a single");
+        System.out.println("                           input directory into '--directory', removing the");
+        System.out.println("                           outputs of removed files");
+        System.out.println("      --settle <ms>        how long a watched file must stay unchanged before");
+        System.out.println("                           it is converted (default " + FolderWatcher.DEFAULT_SETTLE_TIME + ")");
+        System.out.println("      --daemon             stay resident with warm encoders, converting the");
+        System.out.println("                           requests of '--connect' with the options given here");
+        System.out.println("      --connect            send the conversion to a running daemon; only");
+        System.out.println("                           inputs, '-o', '-d' and '-s' can be given");
+        System.out.println("      --socket <address>   daemon address, a socket file or a loopback port");
+        System.out.println("                           (default " + DaemonProtocol.getDefaultAddress() + ")");
+        System.out.println("                           clients must read the token in " + DaemonProtocol.getUserDirectory());
+        System.out.println("  -h, --help               display this help and exit");
+    }
+}
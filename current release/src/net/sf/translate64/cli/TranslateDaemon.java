@@ -0,0 +1,343 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>TranslateDaemon.java</b>: keeps Translate 64 resident with warm
+ * encoders, converting the requests of thin clients.
+ */
+
+// package definition
+package net.sf.translate64.cli;
+
+// needed imports
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.translate64.util.Compression;
+import net.sf.translate64.util.DiskCache;
+import net.sf.translate64.util.TranslateUtils;
+
+/**
+ * Keeps Translate 64 resident, so build scripts converting many small files
+ * pay for the JVM startup and the class loading only once. The encoders are
+ * warmed up before the first request is accepted, so the JIT has already
+ * compiled them. Every client is served by its own thread, a virtual one
+ * on Java 21 and later; its inputs and outputs are streamed over the
+ * socket, so nothing is held in memory whole.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+final class TranslateDaemon {
+    
+    // the size of the warm up sample
+    private static final int WARM_UP_SIZE = 1024 * 1024;
+    
+    // how many times the sample is converted
+    private static final int WARM_UP_ROUNDS = 32;
+    
+    // the size of the socket input buffer
+    private static final int INPUT_BUFFER = 64 * 1024;
+    
+    // the address
+    private final String address;
+    
+    // the cache shared by every client, if any
+    private final DiskCache cache;
+    
+    // the token every client must know
+    private byte[] token;
+    
+    /**
+     * Constructor method.
+     * @param address The address, or <code>null</code> for the default one.
+     * @param cache The cache, or <code>null</code>.
+     */
+    TranslateDaemon(String address, DiskCache cache) {
+        
+        // set the values
+        this.address = (address == null) ? DaemonProtocol.getDefaultAddress() : address;
+        this.cache = cache;
+    }
+    
+    /**
+     * Runs the daemon until the process is stopped.
+     * @return The exit status, when the daemon cannot run.
+     */
+    int run() {
+        
+        // let's try
+        try {
+            
+            // the token, created by the first daemon
+            token = DaemonProtocol.getToken(true);
+            
+            // take over a socket file left behind
+            final File file = DaemonProtocol.getSocketFile(address);
+            if ((file != null) && file.exists()) {
+                
+                // never take over a socket of someone else
+                DaemonProtocol.checkOwner(file.toPath());
+                
+                // check if its daemon is still there
+                if (isRunning()) {
+                    System.err.println("translate64: a daemon is already running on " + address);
+                    return TranslateCLI.EXIT_FAILURE;
+                }
+                
+                // remove it
+                file.delete();
+            }
+            
+            // compile the encoders before the first request
+            long elapsed = warmUp();
+            
+            // bind the address
+            ServerSocketChannel server = DaemonProtocol.bind(address);
+            
+            // remove the socket file when stopped
+            if (file != null) {
+                Runtime.getRuntime().addShutdownHook(new Thread() {
+
+                    @Override
+                    public void run() {
+                        
+                        // remove it
+                        file.delete();
+                    }
+                });
+            }
+            
+            // ready
+            System.err.println("translate64: warmed up in " + elapsed + " ms, listening on " + address);
+            
+            // serve every client
+            ExecutorService executor = newExecutor();
+            while (true) {
+                executor.execute(new Connection(server.accept()));
+            }
+        }
+        catch (IOException e) {
+            
+            // cannot go on
+            System.err.println("translate64: " + address + ": " + e.getMessage());
+            return TranslateCLI.EXIT_FAILURE;
+        }
+    }
+    
+    /**
+     * Checks if a daemon answers on the address.
+     * @return <code>true</code> if one does.
+     */
+    private boolean isRunning() {
+        
+        // let's try
+        try {
+            
+            // connect, check it is ours and leave
+            SocketChannel channel = DaemonProtocol.connect(address);
+            try {
+                DaemonProtocol.respond(channel, new DataInputStream(DaemonProtocol.newInputStream(channel)), token);
+            }
+            finally {
+                channel.close();
+            }
+            return true;
+        }
+        catch (IOException e) {
+            
+            // nobody there
+            return false;
+        }
+    }
+    
+    /**
+     * Converts a sample enough times for the JIT to compile the encoders,
+     * with the chosen engine, format and compression.
+     * @return The elapsed time, in milliseconds.
+     * @throws IOException An IO error, which should never happen.
+     */
+    private static long warmUp() throws IOException {
+        
+        // the sample, not too easy to compress
+        byte[] sample = new byte[WARM_UP_SIZE];
+        new Random(64).nextBytes(sample);
+        
+        // discard the results
+        OutputStream sink = new OutputStream() {
+
+            @Override
+            public void write(int value) {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+            }
+        };
+        
+        // convert it
+        long start = System.nanoTime();
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            TranslateUtils.convertChannel(Compression.getDefault().compress(Channels.newChannel(new ByteArrayInputStream(sample)), null), sink);
+        }
+        
+        // return the elapsed time
+        return (System.nanoTime() - start) / 1000000;
+    }
+    
+    /**
+     * Creates the executor serving the clients, with a virtual thread per
+     * client when the runtime has them.
+     * @return The executor.
+     */
+    private static ExecutorService newExecutor() {
+        
+        // let's try
+        try {
+            
+            // Java 21 and later
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            
+            // a platform thread per client
+            return Executors.newCachedThreadPool(new ThreadFactory() {
+                
+                // the thread counter
+                private final AtomicInteger counter = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    
+                    // create a named thread
+                    return new Thread(runnable, "translate64-client-" + counter.incrementAndGet());
+                }
+            });
+        }
+    }
+    
+    /**
+     * Serves a single client.
+     */
+    private class Connection implements Runnable {
+        
+        // the socket
+        private final SocketChannel channel;
+        
+        /**
+         * Constructor method.
+         * @param channel The socket.
+         */
+        Connection(SocketChannel channel) {
+            
+            // set the value
+            this.channel = channel;
+        }
+        
+        /**
+         * Reads the request, converts it and sends the reply.
+         */
+        @Override
+        public void run() {
+            
+            // let's try
+            try {
+                
+                // check the client knows the token
+                DataInputStream input = new DataInputStream(new BufferedInputStream(DaemonProtocol.newInputStream(channel), INPUT_BUFFER));
+                DaemonProtocol.challenge(channel, input, token);
+                
+                // read the request, the standard input follows it
+                String[] args = DaemonProtocol.readRequest(input);
+                
+                // the outputs of the client
+                DaemonProtocol.FrameOutputStream stdout = new DaemonProtocol.FrameOutputStream(channel, DaemonProtocol.OUT);
+                PrintStream stderr = new PrintStream(new DaemonProtocol.FrameOutputStream(channel, DaemonProtocol.ERR), true);
+                
+                // convert
+                int status = TranslateCLI.run(args, input, stdout, stderr, cache);
+                
+                // send the rest and the status
+                stderr.flush();
+                stdout.exit(status);
+            }
+            catch (EOFException e) {
+                
+                // the client left without a request
+            }
+            catch (IOException e) {
+                
+                // the client went away
+                System.err.println("translate64: client: " + e.getMessage());
+            }
+            finally {
+                
+                // let's try
+                try {
+                    
+                    // close the socket
+                    channel.close();
+                }
+                catch (IOException e) {
+                    
+                    // nothing else to do
+                }
+            }
+        }
+    }
+}
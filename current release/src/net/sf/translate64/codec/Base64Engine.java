@@ -0,0 +1,268 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Base64Engine.java</b>: provides the service interface of Base64
+ * encoding engines.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.nio.ByteBuffer;
+import net.sf.translate64.util.Base64Encoder;
+
+/**
+ * Provides the service interface of Base64 encoding engines. Engines are
+ * discovered with {@link java.util.ServiceLoader}, so an engine is added
+ * by putting a jar with a
+ * <code>META-INF/services/net.sf.translate64.codec.Base64Engine</code>
+ * entry on the class path, and chosen through {@link Engines}. Every
+ * engine produces padded output in the standard alphabet, or in the URL
+ * and file name safe one, so outputs are the same whatever the engine.
+ * Engines must be thread safe and must have a public constructor without
+ * arguments.
+ * <p>
+ * Only the array method in the standard alphabet is required. The other
+ * alphabet is then produced by rewriting the two symbols that differ
+ * after encoding, so engines that can look it up while encoding should
+ * override the methods taking the alphabet. The buffer methods copy direct
+ * buffers to the heap first, so engines able to read them in place should
+ * override them too.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public abstract class Base64Engine {
+
+    /**
+     * Gets the name of this engine, used to select it.
+     * @return The name.
+     */
+    public abstract String getName();
+    
+    /**
+     * Checks if this engine can run in the current JVM. Engines relying on
+     * optional libraries or newer JDKs return <code>false</code> when they
+     * are missing, and are then never selected.
+     * @return <code>true</code> if the engine is available.
+     */
+    public boolean isAvailable() {
+        
+        // available by default
+        return true;
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array. If the
+     * length is not a multiple of 3, the output is padded, so only the last
+     * piece of an input may have such length.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array. It must have room for
+     * {@link Base64Encoder#getEncodedLength(int)} bytes after the target
+     * offset.
+     * @param targetOffset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    public abstract int encode(byte[] source, int offset, int length, byte[] target, int targetOffset);
+    
+    /**
+     * Encodes a piece of the source array into the target array, in the
+     * chosen alphabet. By default, the standard output is rewritten
+     * afterwards.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array. It must have room for
+     * {@link Base64Encoder#getEncodedLength(int)} bytes after the target
+     * offset.
+     * @param targetOffset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+        
+        // encode it
+        int count = encode(source, offset, length, target, targetOffset);
+        
+        // and fix the alphabet, if needed
+        if (urlSafe) {
+            for (int i = targetOffset; i < targetOffset + count; i++) {
+                target[i] = translate(target[i]);
+            }
+        }
+        
+        // return the number of bytes written
+        return count;
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array. The source position is moved to its limit.
+     * @param source The source buffer.
+     * @param target The target array. It must have room for
+     * {@link Base64Encoder#getEncodedLength(int)} bytes after the offset.
+     * @param offset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    public int encode(ByteBuffer source, byte[] target, int offset) {
+        
+        // in the standard alphabet
+        return encode(source, target, offset, false);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array, in the chosen alphabet. The source position is moved to its
+     * limit.
+     * @param source The source buffer.
+     * @param target The target array. It must have room for
+     * {@link Base64Encoder#getEncodedLength(int)} bytes after the offset.
+     * @param offset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    public int encode(ByteBuffer source, byte[] target, int offset, boolean urlSafe) {
+        
+        // the number of bytes written
+        int count;
+        
+        // check if the source is backed by an array
+        if (source.hasArray()) {
+            
+            // encode the array directly
+            count = encode(source.array(), source.arrayOffset() + source.position(), source.remaining(), target, offset, urlSafe);
+            source.position(source.limit());
+        }
+        else {
+            
+            // copy it to the heap first
+            byte[] bytes = new byte[source.remaining()];
+            source.get(bytes);
+            count = encode(bytes, 0, bytes.length, target, offset, urlSafe);
+        }
+        
+        // return the number of bytes written
+        return count;
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer. The source position is moved to its limit and the target
+     * position is moved past the written bytes.
+     * @param source The source buffer.
+     * @param target The target buffer. It must have room for
+     * {@link Base64Encoder#getEncodedLength(int)} bytes.
+     * @return The number of bytes written to the target buffer.
+     */
+    public int encode(ByteBuffer source, ByteBuffer target) {
+        
+        // in the standard alphabet
+        return encode(source, target, false);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer, in the chosen alphabet. The source position is moved to its
+     * limit and the target position is moved past the written bytes.
+     * @param source The source buffer.
+     * @param target The target buffer. It must have room for
+     * {@link Base64Encoder#getEncodedLength(int)} bytes.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target buffer.
+     */
+    public int encode(ByteBuffer source, ByteBuffer target, boolean urlSafe) {
+        
+        // check if the target is backed by an array
+        if (target.hasArray()) {
+            
+            // encode into the array directly
+            int count = encode(source, target.array(), target.arrayOffset() + target.position(), urlSafe);
+            target.position(target.position() + count);
+            return count;
+        }
+        
+        // encode into the heap first
+        byte[] encoded = new byte[Base64Encoder.getEncodedLength(source.remaining())];
+        int count = encode(source, encoded, 0, urlSafe);
+        
+        // and copy it
+        target.put(encoded, 0, count);
+        return count;
+    }
+    
+    /**
+     * Gets the name of this engine.
+     * @return The name.
+     */
+    @Override
+    public String toString() {
+        
+        // return the name
+        return getName();
+    }
+    
+    /**
+     * Translates a standard character to the URL safe alphabet.
+     * @param character The character.
+     * @return The translated character.
+     */
+    private static byte translate(byte character) {
+        
+        // only two of them change
+        if (character == '+') {
+            return '-';
+        }
+        else if (character == '/') {
+            return '_';
+        }
+        else {
+            return character;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>CommonsCodecEngine.java</b>: provides the commons-codec Base64
+ * engine.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.util.Arrays;
+import net.sf.translate64.util.Base64Encoder;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Provides the commons-codec Base64 engine, which the application used up
+ * to version 1.0. It allocates a new output for every call, so it is
+ * mostly kept for comparison. Its URL and file name safe output is not
+ * padded, so the padding is added when copying it. It is only available
+ * when commons-codec is on the class path.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class CommonsCodecEngine extends Base64Engine {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "commons-codec";
+    
+    /**
+     * Gets the name of this engine.
+     * @return The name.
+     */
+    @Override
+    public String getName() {
+        
+        // return it
+        return NAME;
+    }
+    
+    /**
+     * Checks if commons-codec is on the class path.
+     * @return <code>true</code> if it is.
+     */
+    @Override
+    public boolean isAvailable() {
+        
+        // let's try
+        try {
+            
+            // look for the class
+            Class.forName("org.apache.commons.codec.binary.Base64", false, CommonsCodecEngine.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException e) {
+            
+            // not there
+            return false;
+        }
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array. The codec
+     * only takes whole arrays, so pieces are copied first.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        
+        // in the standard alphabet
+        return encode(source, offset, length, target, targetOffset, false);
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array, with the
+     * codec method of the chosen alphabet.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+        
+        // get the whole input
+        byte[] input = ((offset == 0) && (length == source.length)) ? source : Arrays.copyOfRange(source, offset, offset + length);
+        
+        // encode it, without line breaks
+        byte[] output = urlSafe ? Base64.encodeBase64URLSafe(input) : Base64.encodeBase64(input);
+        
+        // copy it
+        System.arraycopy(output, 0, target, targetOffset, output.length);
+        
+        // and pad it, the URL safe output has no padding
+        int count = Base64Encoder.getEncodedLength(length);
+        Arrays.fill(target, targetOffset + output.length, targetOffset + count, (byte) '=');
+        
+        // return the number of bytes written
+        return count;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Engines.java</b>: provides the discovery and selection of Base64
+ * engines.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Provides the discovery and selection of Base64 engines. Engines are
+ * found with {@link ServiceLoader} the first time they are needed, and
+ * only the available ones are kept. The default engine is the 48 bit
+ * one, or else the in-house one, unless another is named by the
+ * <code>translate64.engine</code> system property or set with
+ * {@link #setDefault(Base64Engine)}, as the command line does for its
+ * <code>--engine</code> option.
+ * <p>
+ * An engine that is named but not available, such as the vector one
+ * without its module, falls back to the default engine. That is the
+ * engine every conversion goes through,
+ * <code>TranslateUtils.convertFile</code> included, since commons-codec
+ * was replaced by the engines, so nothing changes but the speed. Falling back to {@link CommonsCodecEngine}
+ * instead would pick the slowest engine, the only one allocating a new
+ * output for every call, so it is only used when it is named.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public final class Engines {
+
+    /**
+     * System property naming the default engine.
+     */
+    public static final String PROPERTY = "translate64.engine";
+    
+    /**
+     * Name of the default engine, when no other is chosen.
+     */
+    public static final String DEFAULT_ENGINE = SwarEngine.NAME;
+    
+    // the available engines
+    private static List<Base64Engine> engines;
+    
+    // the default engine
+    private static volatile Base64Engine current;
+    
+    /**
+     * Constructor method. This class only has static methods.
+     */
+    private Engines() {
+    }
+    
+    /**
+     * Gets the available engines, in discovery order. The in-house engine
+     * is always among them.
+     * @return The engines.
+     */
+    public static synchronized List<Base64Engine> getEngines() {
+        
+        // check if they were found already
+        if (engines == null) {
+            
+            // the engines
+            List<Base64Engine> found = new ArrayList<Base64Engine>();
+            
+            // look for them
+            Iterator<Base64Engine> iterator = ServiceLoader.load(Base64Engine.class, Engines.class.getClassLoader()).iterator();
+            while (true) {
+                
+                // let's try
+                try {
+                    
+                    // check if there is another one
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                    
+                    // keep it if it can run here
+                    Base64Engine engine = iterator.next();
+                    if (engine.isAvailable() && (find(found, engine.getName()) == null)) {
+                        found.add(engine);
+                    }
+                }
+                catch (ServiceConfigurationError e) {
+                    
+                    // a broken engine, skip it
+                }
+                catch (LinkageError e) {
+                    
+                    // an engine for another JDK, skip it
+                }
+            }
+            
+            // the in-house engine is always there
+            if (find(found, InHouseEngine.NAME) == null) {
+                found.add(0, new InHouseEngine());
+            }
+            
+            // keep them
+            engines = Collections.unmodifiableList(found);
+        }
+        
+        // return them
+        return engines;
+    }
+    
+    /**
+     * Gets the names of the available engines.
+     * @return The names.
+     */
+    public static List<String> getNames() {
+        
+        // the names
+        List<String> names = new ArrayList<String>();
+        
+        // add every one
+        for (Base64Engine engine : getEngines()) {
+            names.add(engine.getName());
+        }
+        
+        // return them
+        return names;
+    }
+    
+    /**
+     * Gets an available engine by its name.
+     * @param name The name.
+     * @return The engine, or <code>null</code> if there is no available
+     * engine with such name.
+     */
+    public static Base64Engine get(String name) {
+        
+        // look for it
+        return find(getEngines(), name);
+    }
+    
+    /**
+     * Gets the default engine. The first time, it is the one named by the
+     * system property, if available, or else the default engine, or else
+     * the in-house engine. An unavailable engine, such as the vector one
+     * without its module, thus falls back to the default engine.
+     * @return The engine.
+     */
+    public static Base64Engine getDefault() {
+        
+        // get the current one
+        Base64Engine engine = current;
+        
+        // check if it was chosen already
+        if (engine == null) {
+            
+            // check the system property
+            String name = System.getProperty(PROPERTY);
+            engine = (name == null) ? null : get(name.trim());
+            
+            // fall back to the default one
+            if (engine == null) {
+                engine = get(DEFAULT_ENGINE);
+            }
+            
+            // and then to the in-house one
+            if (engine == null) {
+                engine = get(InHouseEngine.NAME);
+            }
+            
+            // keep it
+            current = engine;
+        }
+        
+        // return it
+        return engine;
+    }
+    
+    /**
+     * Sets the default engine.
+     * @param engine The engine, or <code>null</code> to choose it again
+     * from the system property.
+     */
+    public static void setDefault(Base64Engine engine) {
+        
+        // set the value
+        current = engine;
+    }
+    
+    /**
+     * Finds an engine by its name.
+     * @param list The engines.
+     * @param name The name.
+     * @return The engine, or <code>null</code> if it is not there.
+     */
+    private static Base64Engine find(List<Base64Engine> list, String name) {
+        
+        // check every engine
+        for (Base64Engine engine : list) {
+            
+            // compare the names
+            if (engine.getName().equalsIgnoreCase(name)) {
+                return engine;
+            }
+        }
+        
+        // not found
+        return null;
+    }
+}
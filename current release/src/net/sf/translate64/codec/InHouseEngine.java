@@ -0,0 +1,147 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>InHouseEngine.java</b>: provides the in-house Base64 engine.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.nio.ByteBuffer;
+import net.sf.translate64.util.Base64Encoder;
+
+/**
+ * Provides the in-house Base64 engine, backed by {@link Base64Encoder}. It
+ * reads direct buffers in place and never allocates, and it is always
+ * available, so it is the last resort when no other engine can be used.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class InHouseEngine extends Base64Engine {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "translate64";
+    
+    /**
+     * Gets the name of this engine.
+     * @return The name.
+     */
+    @Override
+    public String getName() {
+        
+        // return it
+        return NAME;
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        
+        // encode it
+        return Base64Encoder.encode(source, offset, length, target, targetOffset);
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array, looking
+     * up the chosen alphabet directly.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+        
+        // encode it
+        return Base64Encoder.encode(source, offset, length, target, targetOffset, urlSafe);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array, without copying direct buffers.
+     * @param source The source buffer.
+     * @param target The target array.
+     * @param offset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(ByteBuffer source, byte[] target, int offset, boolean urlSafe) {
+        
+        // encode it
+        return Base64Encoder.encode(source, target, offset, urlSafe);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer, without copying direct buffers.
+     * @param source The source buffer.
+     * @param target The target buffer.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target buffer.
+     */
+    @Override
+    public int encode(ByteBuffer source, ByteBuffer target, boolean urlSafe) {
+        
+        // encode it
+        return Base64Encoder.encode(source, target, urlSafe);
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>JdkEngine.java</b>: provides the Base64 engine of the JDK.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import net.sf.translate64.util.Base64Encoder;
+
+/**
+ * Provides the Base64 engine of the JDK, <code>java.util.Base64</code>,
+ * which is intrinsified by newer JVMs. The encoder is looked up at runtime,
+ * so the application still runs on Java 7, where this engine is simply not
+ * available. The URL and file name safe output comes from the URL encoder
+ * of the JDK.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class JdkEngine extends Base64Engine {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "jdk";
+    
+    // the encoding method, bound to the encoder
+    private static final MethodHandle ENCODE = lookup("getEncoder");
+    
+    // and the one bound to the URL encoder
+    private static final MethodHandle URL_ENCODE = lookup("getUrlEncoder");
+    
+    /**
+     * Gets the name of this engine.
+     * @return The name.
+     */
+    @Override
+    public String getName() {
+        
+        // return it
+        return NAME;
+    }
+    
+    /**
+     * Checks if the JDK encoder exists.
+     * @return <code>true</code> on Java 8 and later.
+     */
+    @Override
+    public boolean isAvailable() {
+        
+        // check the methods
+        return (ENCODE != null) && (URL_ENCODE != null);
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array. The JDK
+     * encoder only takes whole arrays, so pieces are copied first.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        
+        // in the standard alphabet
+        return encode(source, offset, length, target, targetOffset, false);
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array, with the
+     * encoder of the chosen alphabet.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+        
+        // get the whole input
+        byte[] input = ((offset == 0) && (length == source.length)) ? source : Arrays.copyOfRange(source, offset, offset + length);
+        
+        // get the whole output
+        byte[] output = (targetOffset == 0) ? target : new byte[Base64Encoder.getEncodedLength(length)];
+        
+        // let's try
+        try {
+            
+            // encode it
+            int count = (int) (urlSafe ? URL_ENCODE : ENCODE).invokeExact(input, output);
+            
+            // copy it, if needed
+            if (output != target) {
+                System.arraycopy(output, 0, target, targetOffset, count);
+            }
+            
+            // return the number of bytes written
+            return count;
+        }
+        catch (RuntimeException e) {
+            
+            // pass it on
+            throw e;
+        }
+        catch (Throwable e) {
+            
+            // the method throws nothing else
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Looks up the encoding method of a JDK encoder.
+     * @param factory The name of the method returning the encoder.
+     * @return The method bound to the encoder, or <code>null</code> if it
+     * does not exist.
+     */
+    private static MethodHandle lookup(String factory) {
+        
+        // let's try
+        try {
+            
+            // get the encoder
+            Class<?> base64 = Class.forName("java.util.Base64");
+            Object encoder = base64.getMethod(factory).invoke(null);
+            
+            // and its method
+            Class<?> type = Class.forName("java.util.Base64$Encoder");
+            MethodHandle method = MethodHandles.publicLookup().findVirtual(type, "encode", MethodType.methodType(int.class, byte[].class, byte[].class));
+            
+            // bind them
+            return method.bindTo(encoder);
+        }
+        catch (Exception e) {
+            
+            // not available
+            return null;
+        }
+    }
+}
@@ -0,0 +1,511 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ConversionWorker.java</b>: provides a background worker that
+ * converts dropped files away from the Event Dispatch Thread.
+ */
+
+// package definition
+package net.sf.translate64.ui;
+
+// needed imports
+import java.awt.Window;
+import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import net.sf.translate64.util.BatchConverter;
+import net.sf.translate64.util.BufferPool;
+import net.sf.translate64.util.Checksums;
+import net.sf.translate64.util.ConversionCache;
+import net.sf.translate64.util.EncodedTransferable;
+import net.sf.translate64.util.ParallelConverter;
+import net.sf.translate64.util.ProgressListener;
+import net.sf.translate64.util.TranslateUtils;
+
+/**
+ * Provides a background worker that converts dropped files away from the
+ * Event Dispatch Thread, so the window never freezes. The conversion
+ * only adds the processed bytes to a counter; a timer reads it a few
+ * times per second and updates the progress dialog, so repaints do not
+ * slow the encoding down. The worker is also the progress listener of the
+ * conversion, so cancelling it both interrupts the IO and stops the
+ * conversion at the next block. Outputs larger than the clipboard
+ * threshold are streamed straight into a temporary file and offered
+ * lazily, instead of being kept as a huge string. When requested in the
+ * menu, the checksums of a single file are computed in the same pass and
+ * shown with the success message.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class ConversionWorker extends SwingWorker<Transferable, Void> implements ProgressListener {
+
+    // delay before showing the progress dialog, in milliseconds,
+    // so quick conversions do not flash a dialog
+    private static final int DIALOG_DELAY = 300;
+    
+    // interval between progress updates, in milliseconds
+    private static final int UPDATE_INTERVAL = 200;
+    
+    // the owner window
+    private final Window owner;
+    
+    // the files
+    private final File[] files;
+    
+    // the success title and message
+    private final String title;
+    private final String message;
+    
+    // the checksums of a single file, if requested
+    private Checksums checksums;
+    
+    // the processed bytes
+    private final AtomicLong processed = new AtomicLong(0);
+    
+    // the total of bytes, negative if unknown
+    private final long total;
+    
+    // the start time
+    private long start;
+    
+    // the progress dialog, only created when
+    // the conversion is taking a while
+    private ProgressDialog dialog;
+    
+    // the timer updating the dialog
+    private Timer timer;
+    
+    /**
+     * Constructor method.
+     * @param owner The owner window.
+     * @param files The files. A single regular file is converted on its
+     * own, anything else is converted as a batch.
+     * @param title The title of the success message.
+     * @param message The text of the success message.
+     */
+    public ConversionWorker(Window owner, File[] files, String title, String message) {
+        
+        // set the values
+        this.owner = owner;
+        this.files = files;
+        this.title = title;
+        this.message = message;
+        
+        // sum the sizes, folders make it unknown
+        long sum = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                sum = -1;
+                break;
+            }
+            sum = sum + file.length();
+        }
+        this.total = sum;
+    }
+    
+    /**
+     * Starts the conversion. This method must be called from the Event
+     * Dispatch Thread.
+     */
+    public void start() {
+        
+        // create the timer
+        timer = new Timer(UPDATE_INTERVAL, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                
+                // the elapsed time
+                long elapsed = System.currentTimeMillis() - start;
+                
+                // quick conversions never get here
+                if (elapsed < DIALOG_DELAY) {
+                    return;
+                }
+                
+                // the conversion is taking a while, create the dialog
+                if (dialog == null) {
+                    dialog = createDialog();
+                }
+                
+                // update it
+                dialog.setProgress(processed.get(), total, elapsed);
+                
+                // and show it
+                if (!dialog.isVisible()) {
+                    dialog.setVisible(true);
+                }
+            }
+        });
+        
+        // start everything
+        start = System.currentTimeMillis();
+        timer.start();
+        execute();
+    }
+    
+    /**
+     * Creates the progress dialog.
+     * @return The dialog.
+     */
+    private ProgressDialog createDialog() {
+        
+        // create it
+        return new ProgressDialog(owner, files.length == 1 ? "Converting " + files[0].getName() + "..." : "Converting " + files.length + " files...", new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                
+                // stop the conversion
+                cancel(true);
+            }
+        });
+    }
+    
+    /**
+     * A block of input bytes was processed. Called from the conversion
+     * threads.
+     * @param bytes The number of bytes in the block.
+     */
+    @Override
+    public void bytesProcessed(long bytes) {
+        
+        // just count them
+        processed.addAndGet(bytes);
+    }
+    
+    /**
+     * Converts the files in the background.
+     * @return The clipboard contents.
+     * @throws Exception An error during the conversion.
+     */
+    @Override
+    protected Transferable doInBackground() throws Exception {
+        
+        // check if it's only one regular file
+        if ((files.length == 1) && files[0].isFile()) {
+            
+            // compute the checksums while converting, if requested
+            checksums = Checksums.isEnabled() ? new Checksums() : null;
+            
+            // check if the output is too large for a string
+            if (TranslateUtils.getEncodedLength(files[0].length()) > EncodedTransferable.getThreshold()) {
+                
+                // write it to a temporary file instead
+                File spill = EncodedTransferable.createTempFile(files[0].getName() + ".b64");
+                
+                // let's try
+                try {
+                    
+                    // convert the file straight into it
+                    ParallelConverter.convertFile(files[0], spill, checksums, this);
+                    return new EncodedTransferable(spill);
+                }
+                catch (IOException e) {
+                    
+                    // clean up
+                    spill.delete();
+                    throw e;
+                }
+            }
+            
+            // the cache would skip reading the file,
+            // so the checksums need a fresh conversion
+            if (checksums != null) {
+                return new StringSelection(TranslateUtils.convertFile(files[0], true, checksums, this));
+            }
+            
+            // convert it to a base64 string, unless
+            // an unchanged copy is already cached
+            return new StringSelection(ConversionCache.getDefault().convert(files[0], true, this));
+        }
+        else if ((total < 0) || (TranslateUtils.getEncodedLength(total) > EncodedTransferable.getThreshold())) {
+            
+            // the joined strings may be too large, or their size
+            // is unknown because of folders, so write them to a file
+            return spillAll();
+        }
+        else {
+            
+            // convert everything
+            return convertAll();
+        }
+    }
+    
+    /**
+     * Converts many files into a temporary file, one after the other and
+     * in the same order as the files, one per line. Folders are converted
+     * recursively. Every output is streamed straight into the file, so no
+     * string of a whole file is ever kept in memory.
+     * @return The clipboard contents.
+     * @throws IOException An IO error with one of the files, or the
+     * conversion was cancelled.
+     */
+    private Transferable spillAll() throws IOException {
+        
+        // the temporary file
+        File spill = EncodedTransferable.createTempFile(files.length == 1 ? files[0].getName() + ".b64" : "translate64.b64");
+        
+        // create the output stream
+        final OutputStream ostream = new BufferedOutputStream(new FileOutputStream(spill), BufferPool.BUFFER_SIZE);
+        
+        // the number of outputs written
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        // whether every file was written
+        boolean complete = false;
+        
+        // let's try
+        try {
+            
+            // convert every file
+            for (File file : files) {
+                
+                // check if it is a directory
+                if (file.isDirectory()) {
+                    
+                    // convert everything inside it, in the
+                    // same order a batch would submit it
+                    Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                            
+                            // only regular files are converted
+                            if (attributes.isRegularFile()) {
+                                append(file.toFile(), ostream, count.getAndIncrement());
+                            }
+                            
+                            // go on
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                }
+                else {
+                    
+                    // convert the file itself
+                    append(file, ostream, count.getAndIncrement());
+                }
+            }
+            
+            // everything is there
+            complete = true;
+        }
+        finally {
+            
+            // close the output stream
+            ostream.close();
+            
+            // clean up if something failed
+            if (!complete) {
+                spill.delete();
+            }
+        }
+        
+        // return the contents
+        return new EncodedTransferable(spill);
+    }
+    
+    /**
+     * Converts a file straight into an output stream, on a new line unless
+     * it is the first one.
+     * @param file The file.
+     * @param output The output stream.
+     * @param index The position of the file among the outputs.
+     * @throws IOException An IO error with the file or the stream, or the
+     * conversion was cancelled.
+     */
+    private void append(File file, OutputStream output, int index) throws IOException {
+        
+        // add a line break between outputs
+        if (index > 0) {
+            output.write(System.getProperty("line.separator").getBytes(StandardCharsets.US_ASCII));
+        }
+        
+        // add the output
+        TranslateUtils.convertFile(file, output, this);
+    }
+    
+    /**
+     * Converts many files at once, joining their Base64 strings in the
+     * same order as the files, one per line. Folders are converted
+     * recursively. This is only used when the joined strings are known to
+     * fit in the clipboard.
+     * @return The clipboard contents.
+     * @throws IOException An IO error with one of the files.
+     * @throws InterruptedException The conversion was interrupted.
+     */
+    private Transferable convertAll() throws IOException, InterruptedException {
+        
+        // where the joined strings go
+        final StringWriter writer = new StringWriter();
+        
+        // the errors, if any
+        final List<IOException> errors = Collections.synchronizedList(new ArrayList<IOException>());
+        
+        // convert the files concurrently, results
+        // come back in the original order
+        BatchConverter batch = new BatchConverter(new BatchConverter.Listener() {
+
+            @Override
+            public void fileConverted(int index, File file, String output) {
+                
+                // add a line break between strings
+                if (index > 0) {
+                    writer.write(System.getProperty("line.separator"));
+                }
+                
+                // add the string
+                writer.write(output);
+            }
+
+            @Override
+            public void fileFailed(int index, File file, IOException error) {
+                
+                // keep the error
+                errors.add(error);
+            }
+        }, this);
+        
+        // unchanged files come from the cache
+        batch.setCache(ConversionCache.getDefault());
+        
+        // whether every file was delivered
+        boolean complete = false;
+        
+        // let's try
+        try {
+            
+            // submit every file and wait for them
+            batch.submitAll(files);
+            batch.await();
+            complete = true;
+        }
+        finally {
+            
+            // when cancelled or interrupted, stop the files
+            // in flight and wait until nothing more is delivered
+            if (!complete) {
+                batch.cancel();
+            }
+        }
+        
+        // check for errors
+        if (!errors.isEmpty()) {
+            
+            // throw the first one
+            throw errors.get(0);
+        }
+        
+        // return the contents
+        return new StringSelection(writer.toString());
+    }
+    
+    /**
+     * Finishes the conversion in the Event Dispatch Thread, copying the
+     * result to the clipboard.
+     */
+    @Override
+    protected void done() {
+        
+        // no more updates
+        timer.stop();
+        if (dialog != null) {
+            dialog.dispose();
+        }
+        
+        // let's try
+        try {
+            
+            // get the result
+            Transferable contents = get();
+            
+            // then set it to the clipboard
+            TranslateUtils.setClipboardContents(contents);
+            
+            // display a fancy message, with the checksums if any
+            TranslateUtils.showInfoMessage(owner, title, (checksums == null) ? message : message + "\n\n" + checksums);
+        }
+        catch (CancellationException e) {
+            
+            // the user cancelled it
+            TranslateUtils.showInfoMessage(owner, "Phew!", "The conversion was cancelled. Don't worry, no harm done!");
+        }
+        catch (ExecutionException e) {
+            
+            // exception, display error
+            TranslateUtils.showException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            
+            // exception, display error
+            TranslateUtils.showException(e);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ProgressDialog.java</b>: provides a small dialog showing the
+ * progress of a conversion.
+ */
+
+// package definition
+package net.sf.translate64.ui;
+
+// needed imports
+import java.awt.BorderLayout;
+import java.awt.Window;
+import java.awt.event.ActionListener;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.WindowConstants;
+
+/**
+ * Provides a small dialog showing the progress of a conversion: the bytes
+ * processed so far, the throughput and the estimated time left, plus a
+ * button to cancel it. The dialog does not poll anything by itself, it is
+ * updated by whoever runs the conversion.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class ProgressDialog extends JDialog {
+
+    // the serialization version
+    private static final long serialVersionUID = 1L;
+    
+    // units for sizes
+    private static final String[] UNITS = { "bytes", "KB", "MB", "GB", "TB" };
+    
+    // the progress bar
+    private final JProgressBar progressBar;
+    
+    // the status label
+    private final JLabel statusLabel;
+    
+    /**
+     * Constructor method.
+     * @param owner The owner window.
+     * @param text The text displayed above the progress bar.
+     * @param cancel The action for the cancel button.
+     */
+    public ProgressDialog(Window owner, String text, ActionListener cancel) {
+        
+        // call the super constructor
+        super(owner, "Translate64");
+        
+        // the dialog is closed by the conversion only
+        setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        setResizable(false);
+        
+        // create the components
+        progressBar = new JProgressBar(0, 1000);
+        statusLabel = new JLabel(" ");
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(cancel);
+        
+        // lay them out
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+        panel.add(new JLabel(text), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+        JPanel bottom = new JPanel(new BorderLayout(12, 0));
+        bottom.add(statusLabel, BorderLayout.CENTER);
+        bottom.add(cancelButton, BorderLayout.EAST);
+        panel.add(bottom, BorderLayout.SOUTH);
+        setContentPane(panel);
+        
+        // set the size and center it
+        pack();
+        setSize(Math.max(getWidth(), 420), getHeight());
+        setLocationRelativeTo(owner);
+    }
+    
+    /**
+     * Updates the progress.
+     * @param processed The bytes processed so far.
+     * @param total The total of bytes, or a negative value if unknown.
+     * @param elapsed The elapsed time, in milliseconds.
+     */
+    public void setProgress(long processed, long total, long elapsed) {
+        
+        // the throughput, in bytes per second
+        double rate = elapsed > 0 ? processed * 1000.0 / elapsed : 0;
+        
+        // build the status
+        StringBuilder status = new StringBuilder(formatSize(processed));
+        
+        // check if the total is known
+        if (total > 0) {
+            
+            // show the bar
+            progressBar.setIndeterminate(false);
+            progressBar.setValue((int) (processed * 1000 / total));
+            status.append(" of ").append(formatSize(total));
+        }
+        else {
+            
+            // no idea of how long it takes
+            progressBar.setIndeterminate(true);
+        }
+        
+        // add the throughput
+        if (rate > 0) {
+            
+            // show it
+            status.append(" at ").append(formatSize((long) rate)).append("/s");
+            
+            // and the estimated time left
+            if (total > 0) {
+                long left = (long) Math.ceil((total - processed) / rate);
+                status.append(", about ").append(left).append(left == 1 ? " second left" : " seconds left");
+            }
+        }
+        
+        // set it
+        statusLabel.setText(status.toString());
+    }
+    
+    /**
+     * Formats a size in bytes.
+     * @param bytes The size.
+     * @return The formatted size.
+     */
+    private static String formatSize(long bytes) {
+        
+        // plain bytes
+        if (bytes < 1024) {
+            return bytes + " " + UNITS[0];
+        }
+        
+        // find the unit
+        double value = bytes;
+        int unit = 0;
+        while ((value >= 1024) && (unit < UNITS.length - 1)) {
+            value = value / 1024;
+            unit++;
+        }
+        
+        // format it
+        return String.format("%.1f %s", value, UNITS[unit]);
+    }
+}
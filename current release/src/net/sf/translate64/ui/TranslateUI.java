@@ -52,13 +52,15 @@ package net.sf.translate64.ui;
 
 // needed imports
 import com.ezware.dialog.task.CommandLink;
-import java.awt.image.BufferedImage;
+import java.awt.EventQueue;
+import java.awt.Graphics;
+import java.awt.Toolkit;
 import java.io.File;
-import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
-import javax.imageio.ImageIO;
 import javax.swing.border.EmptyBorder;
+import net.sf.translate64.util.Checksums;
 import net.sf.translate64.util.FileDrop;
 import net.sf.translate64.util.TranslateUtils;
 
@@ -70,6 +72,34 @@ import net.sf.translate64.util.TranslateUtils;
  */
 public class TranslateUI extends javax.swing.JFrame {
 
+    /**
+     * The system property that, when <code>true</code>, reports how long
+     * the window took to be painted for the first time.
+     */
+    public static final String TIMING_PROPERTY = "translate64.startup.timing";
+    
+    /**
+     * The system property that, when <code>true</code>, loads the classes
+     * of the dialogs and exits once the window is painted, which is what a
+     * training run for a class data sharing archive needs.
+     */
+    public static final String TRAINING_PROPERTY = "translate64.startup.training";
+    
+    // classes only needed after the first drop, loaded by training runs
+    private static final String[] LATER_CLASSES = {
+        "net.sf.translate64.ui.ConversionWorker",
+        "net.sf.translate64.ui.ProgressDialog",
+        "com.ezware.dialog.task.TaskDialogs",
+        "com.ezware.dialog.task.TaskDialog",
+        "net.miginfocom.swing.MigLayout"
+    };
+
+    // the running conversion, if any
+    private ConversionWorker worker;
+    
+    // whether the window was already painted
+    private boolean painted = false;
+
     /**
      * Constructor method. Creates a new form.
      */
@@ -78,25 +108,10 @@ public class TranslateUI extends javax.swing.JFrame {
         // call the inner method for setting components
         initComponents();
         
-        // create a new buffered image
-        // this image will be both application
-        // and taskbar icons
-        BufferedImage image = null;
-        
-        // let's try
-        try {
-            
-            // get image from resource
-            image = ImageIO.read(getClass().getResource("/net/sf/translate64/resources/translate.png"));
-            
-            // set icon
-            setIconImage(image);
-            
-        // something bad happened
-        } catch (IOException e) {
-            
-            // do nothing
-        }
+        // set the application and taskbar icon, loaded by the
+        // toolkit in the background instead of through ImageIO,
+        // whose plugin registry is slow to start
+        setIconImage(Toolkit.getDefaultToolkit().getImage(getClass().getResource("/net/sf/translate64/resources/translate.png")));
         
         // center frame
         setLocationRelativeTo(null);
@@ -110,108 +125,193 @@ public class TranslateUI extends javax.swing.JFrame {
             @Override
             public void filesDropped(File[] files) {
                 
-                // try to handle dropped files
-                try {
+                // check if a conversion is still running
+                if ((worker != null) && !worker.isDone()) {
                     
-                    // check if it's only one file
-                    if (files.length == 1) {
-                        
-                        // if so, cconvert it to a base64 string
-                        String output = TranslateUtils.convertFile(files[0]);
-                        
-                        // then set the string to the clipboard
-                        TranslateUtils.setClipboardText(output);
-                        
-                        // display a fancy message
-                        TranslateUtils.showInfoMessage(getOwner(), "File converted successfully!", "Done! The file <u>" + files[0].getName() + "</u> was successfully converted\n to a Base64 string and copied to clipboard. Have fun!");
-                    }
-                    else {
-                        // more files were dragged
-                        
-                        // create a new list of choices
-                        List<CommandLink> listCommands = new ArrayList<CommandLink>();
-                        
-                        // create a cancel option
-                        CommandLink clCancel = new CommandLink("Cancel this operation", "Simply cancel this operation. Nothing will be done to any of the dragged files.");
-                        
-                        // add to the list
-                        listCommands.add(clCancel);
-                        
-                        // create a conversion option
-                        CommandLink clFirst = new CommandLink("Convert the first one", "Only the first file in this group, which is <u>" + files[0].getName() + "</u>, will be converted.");
-                        
-                        // add to the list
-                        listCommands.add(clFirst);
-                        
-                        // create an exit option
-                        CommandLink clExit = new CommandLink("Exit the application", "The application will discard the dragged files and will exit.");
-                        
-                        // add to the list
-                        listCommands.add(clExit);
-                        
-                        // prompt user and ask for a choice
-                        int choice = TranslateUtils.showOptions(getOwner(), "Woah, cowboy!", "Due to a design decision, Translate64 can only handle one file per time.\nPlease choose what you want to do.", 0, listCommands);
+                    // one at a time, please
+                    TranslateUtils.showInfoMessage(getOwner(), "Hold your horses!", "A conversion is still running. Please wait for it\n or cancel it before dropping more files.");
+                    return;
+                }
+                
+                // check if it's only one regular file
+                if ((files.length == 1) && files[0].isFile()) {
+                    
+                    // if so, convert it to a base64 string
+                    convert(files, "File converted successfully!", "Done! The file <u>" + files[0].getName() + "</u> was successfully converted\n to a Base64 string and copied to clipboard. Have fun!");
+                }
+                else if (files.length == 1) {
+                    
+                    // a folder was dragged, so convert everything inside it
+                    convert(files, "Folder converted successfully!", "Done! All files in the folder <u>" + files[0].getName() + "</u> were successfully converted\n to Base64 strings and copied to clipboard. Have fun!");
+                }
+                else {
+                    // more files were dragged
+                    
+                    // create a new list of choices
+                    List<CommandLink> listCommands = new ArrayList<CommandLink>();
+                    
+                    // create a cancel option
+                    CommandLink clCancel = new CommandLink("Cancel this operation", "Simply cancel this operation. Nothing will be done to any of the dragged files.");
+                    
+                    // add to the list
+                    listCommands.add(clCancel);
+                    
+                    // create a batch conversion option
+                    CommandLink clAll = new CommandLink("Convert all of them", "All the " + files.length + " files will be converted at once, and their Base64 strings will be copied to clipboard, one per line.");
+                    
+                    // add to the list
+                    listCommands.add(clAll);
+                    
+                    // create a conversion option
+                    CommandLink clFirst = new CommandLink("Convert the first one", "Only the first file in this group, which is <u>" + files[0].getName() + "</u>, will be converted.");
+                    
+                    // add to the list
+                    listCommands.add(clFirst);
+                    
+                    // create an exit option
+                    CommandLink clExit = new CommandLink("Exit the application", "The application will discard the dragged files and will exit.");
+                    
+                    // add to the list
+                    listCommands.add(clExit);
+                    
+                    // prompt user and ask for a choice
+                    int choice = TranslateUtils.showOptions(getOwner(), "Woah, cowboy!", "You dragged " + files.length + " files at once.\nPlease choose what you want to do.", 1, listCommands);
+                    
+                    // let's check what the user chose
+                    switch (choice) {
                         
-                        // let's check what the user chose
-                        switch (choice) {
+                        // cancel
+                        case 0:
                             
-                            // cancel
-                            case 0:
-                                
-                                // nothing to do, simply show a fancy message
-                                TranslateUtils.showInfoMessage(getOwner(), "Phew!", "Don't worry, no harm done!");
-                                
-                                // break the switch
-                                break;
-                                
-                            // convert the first file
-                            case 1:
-                                
-                                // convert the file to a base64 string
-                                String output = TranslateUtils.convertFile(files[0]);
-                                
-                                // then set the string to the clipboard
-                                TranslateUtils.setClipboardText(output);
-                                
-                                // display a fancy message
-                                TranslateUtils.showInfoMessage(getOwner(), "File converted successfully!", "Done! The file <u>" + files[0].getName() + "</u> was successfully converted\n to a Base64 string and copied to clipboard. Have fun!");
-                                
-                                // break the switch
-                                break;
-                                
-                            // exit application
-                            case 2:
-                                
-                                // exit
-                                System.exit(0);
-                                
-                                // break the switch
-                                // I put this just because of the syntatic
-                                // structure
-                                break;
-                                
-                            // user is a cheater
-                            default:
-                                
-                                // then let's diplay a funny message
-                                TranslateUtils.showInfoMessage(getOwner(), "So you didn't choose an option...", TranslateUtils.getMessage());
-                        }
-                        
+                            // nothing to do, simply show a fancy message
+                            TranslateUtils.showInfoMessage(getOwner(), "Phew!", "Don't worry, no harm done!");
+                            
+                            // break the switch
+                            break;
+                            
+                        // convert all files
+                        case 1:
+                            
+                            // convert the files to base64 strings
+                            convert(files, "Files converted successfully!", "Done! All the " + files.length + " files were successfully converted\n to Base64 strings and copied to clipboard. Have fun!");
+                            
+                            // break the switch
+                            break;
+                            
+                        // convert the first file
+                        case 2:
+                            
+                            // convert the file to a base64 string
+                            convert(new File[] { files[0] }, "File converted successfully!", "Done! The file <u>" + files[0].getName() + "</u> was successfully converted\n to a Base64 string and copied to clipboard. Have fun!");
+                            
+                            // break the switch
+                            break;
+                            
+                        // exit application
+                        case 3:
+                            
+                            // exit
+                            System.exit(0);
+                            
+                            // break the switch
+                            // I put this just because of the syntatic
+                            // structure
+                            break;
+                            
+                        // user is a cheater
+                        default:
+                            
+                            // then let's diplay a funny message
+                            TranslateUtils.showInfoMessage(getOwner(), "So you didn't choose an option...", TranslateUtils.getMessage());
                     }
                 }
-                catch (IOException ioe) {
+            }
+        });
+
+    }
+    
+    /**
+     * Paints the window, reporting the startup time the first time if
+     * requested.
+     * @param g The graphics context.
+     */
+    @Override
+    public void paint(Graphics g) {
+        
+        // paint it
+        super.paint(g);
+        
+        // check if it is the first time
+        if (!painted) {
+            
+            // set the flag
+            painted = true;
+            
+            // check if there is something to do
+            if (Boolean.getBoolean(TIMING_PROPERTY) || Boolean.getBoolean(TRAINING_PROPERTY)) {
+                
+                // after this paint is done
+                EventQueue.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        
+                        // do it
+                        startupFinished();
+                    }
+                });
+            }
+        }
+    }
+    
+    /**
+     * Reports the startup time and, in a training run, loads the classes
+     * needed later and exits.
+     */
+    private void startupFinished() {
+        
+        // the time since the virtual machine started
+        long now = System.currentTimeMillis();
+        long elapsed = now - ManagementFactory.getRuntimeMXBean().getStartTime();
+        
+        // report it
+        System.err.println("translate64: window painted " + elapsed + " ms after the JVM started");
+        
+        // check if it is a training run
+        if (Boolean.getBoolean(TRAINING_PROPERTY)) {
+            
+            // load the rest
+            for (String name : LATER_CLASSES) {
+                
+                // let's try
+                try {
                     
-                    // exception, display error
-                    TranslateUtils.showException(ioe);
+                    // load it
+                    Class.forName(name, false, getClass().getClassLoader());
                 }
-                catch (Exception e) {
+                catch (ClassNotFoundException e) {
                     
-                    // exception, display error
-                    TranslateUtils.showException(e);
+                    // not there, nothing to archive
                 }
             }
-        });
-
+            
+            // and quit
+            System.exit(0);
+        }
+    }
+    
+    /**
+     * Converts files in the background, copying the result to the
+     * clipboard and displaying a message when done.
+     * @param files The files.
+     * @param title The title of the success message.
+     * @param message The text of the success message.
+     */
+    private void convert(File[] files, String title, String message) {
+        
+        // create and start a new worker
+        worker = new ConversionWorker(this, files, title, message);
+        worker.start();
     }
 
     /** 
@@ -230,6 +330,7 @@ public class TranslateUI extends javax.swing.JFrame {
         menuExitApplication = new javax.swing.JMenuItem();
         menuView = new javax.swing.JMenu();
         menuAlwaysOnTop = new javax.swing.JCheckBoxMenuItem();
+        menuChecksums = new javax.swing.JCheckBoxMenuItem();
         menuHelp = new javax.swing.JMenu();
         menuAbout = new javax.swing.JMenuItem();
 
@@ -281,6 +382,15 @@ public class TranslateUI extends javax.swing.JFrame {
         });
         menuView.add(menuAlwaysOnTop);
 
+        menuChecksums.setSelected(Checksums.isEnabled());
+        menuChecksums.setText("Show checksums");
+        menuChecksums.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(java.awt.event.ActionEvent evt) {
+                menuChecksumsActionPerformed(evt);
+            }
+        });
+        menuView.add(menuChecksums);
+
         menu.add(menuView);
 
         menuHelp.setText("Help");
@@ -332,6 +442,17 @@ public class TranslateUI extends javax.swing.JFrame {
         setAlwaysOnTop(menuAlwaysOnTop.isSelected());
     }//GEN-LAST:event_menuAlwaysOnTopActionPerformed
 
+    /**
+     * Sets whether the checksums of single files are computed and shown
+     * with the conversion message.
+     * @param evt The event.
+     */
+    private void menuChecksumsActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_menuChecksumsActionPerformed
+        
+        // set state
+        Checksums.setEnabled(menuChecksums.isSelected());
+    }//GEN-LAST:event_menuChecksumsActionPerformed
+
     /**
      * Show the About info.
      * @param evt The event.
@@ -347,6 +468,7 @@ public class TranslateUI extends javax.swing.JFrame {
     private javax.swing.JMenuBar menu;
     private javax.swing.JMenuItem menuAbout;
     private javax.swing.JCheckBoxMenuItem menuAlwaysOnTop;
+    private javax.swing.JCheckBoxMenuItem menuChecksums;
     private javax.swing.JMenuItem menuExitApplication;
     private javax.swing.JMenu menuFile;
     private javax.swing.JMenu menuHelp;
@@ -0,0 +1,396 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Base64Encoder.java</b>: provides an allocation-free Base64 encoder
+ * working on caller-supplied arrays and byte buffers.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.nio.ByteBuffer;
+
+/**
+ * Provides an allocation-free Base64 encoder. It encodes a slice of a
+ * <code>byte[]</code> or a <code>ByteBuffer</code> into ASCII bytes of a
+ * <code>byte[]</code> or a <code>ByteBuffer</code> supplied by the caller,
+ * and never allocates anything, so hot loops can reuse the same buffers
+ * for every block. Direct buffers filled by a channel are read in place,
+ * without being copied into a heap array first. The output is exactly
+ * what <code>Base64.encodeBase64String</code> from Apache Commons Codec
+ * produces, or, with the URL and file name safe alphabet, the same output
+ * with <code>-</code> and <code>_</code> instead of <code>+</code> and
+ * <code>/</code>. This class does not need to be instantiated.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public final class Base64Encoder {
+
+    // the padding character
+    private static final byte PAD = '=';
+    
+    // the standard alphabet
+    private static final byte[] ALPHABET = {
+        'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+        'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+        'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+        'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '+', '/'
+    };
+    
+    // the URL and file name safe alphabet
+    private static final byte[] URL_ALPHABET = {
+        'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', 'K', 'L', 'M',
+        'N', 'O', 'P', 'Q', 'R', 'S', 'T', 'U', 'V', 'W', 'X', 'Y', 'Z',
+        'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j', 'k', 'l', 'm',
+        'n', 'o', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z',
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '-', '_'
+    };
+    
+    /**
+     * Private constructor, no instances.
+     */
+    private Base64Encoder() {
+    }
+    
+    /**
+     * Gets the length of the output for a certain input length.
+     * @param length The input length, in bytes.
+     * @return The output length, in bytes.
+     */
+    public static int getEncodedLength(int length) {
+        
+        // every 3 bytes, or part of it, become 4 characters
+        return ((length + 2) / 3) * 4;
+    }
+    
+    /**
+     * Encodes a slice of the source array into the target array. If the
+     * length is not a multiple of 3, the output is padded, so only the last
+     * piece of an input may have such length.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array. It must have room for
+     * {@link #getEncodedLength(int)} bytes after the target offset.
+     * @param targetOffset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    public static int encode(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        
+        // in the standard alphabet
+        return encode(source, offset, length, target, targetOffset, false);
+    }
+    
+    /**
+     * Encodes a slice of the source array into the target array, in the
+     * chosen alphabet. If the length is not a multiple of 3, the output is
+     * padded, so only the last piece of an input may have such length.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array. It must have room for
+     * {@link #getEncodedLength(int)} bytes after the target offset.
+     * @param targetOffset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    public static int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+        
+        // the alphabet
+        byte[] alphabet = urlSafe ? URL_ALPHABET : ALPHABET;
+        
+        // positions
+        int position = offset;
+        int end = offset + (length / 3) * 3;
+        int index = targetOffset;
+        
+        // encode every full group of 3 bytes
+        while (position < end) {
+            
+            // join the 3 bytes
+            int bits = ((source[position] & 0xff) << 16)
+                    | ((source[position + 1] & 0xff) << 8)
+                    | (source[position + 2] & 0xff);
+            position = position + 3;
+            
+            // split into 4 characters
+            target[index] = alphabet[bits >>> 18];
+            target[index + 1] = alphabet[(bits >>> 12) & 0x3f];
+            target[index + 2] = alphabet[(bits >>> 6) & 0x3f];
+            target[index + 3] = alphabet[bits & 0x3f];
+            index = index + 4;
+        }
+        
+        // check what is left
+        int left = offset + length - position;
+        
+        // encode the padded group, if any
+        if (left > 0) {
+            int bits = ((source[position] & 0xff) << 16)
+                    | (left == 2 ? (source[position + 1] & 0xff) << 8 : 0);
+            index = index + tail(bits, left, target, index, alphabet);
+        }
+        
+        // return the number of bytes written
+        return index - targetOffset;
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array. The source position is moved to its limit. If the number of
+     * remaining bytes is not a multiple of 3, the output is padded, so only
+     * the last piece of an input may have such length.
+     * @param source The source buffer.
+     * @param target The target array. It must have room for
+     * {@link #getEncodedLength(int)} bytes after the offset.
+     * @param offset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    public static int encode(ByteBuffer source, byte[] target, int offset) {
+        
+        // in the standard alphabet
+        return encode(source, target, offset, false);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array, in the chosen alphabet. The source position is moved to its
+     * limit. If the number of remaining bytes is not a multiple of 3, the
+     * output is padded, so only the last piece of an input may have such
+     * length.
+     * @param source The source buffer.
+     * @param target The target array. It must have room for
+     * {@link #getEncodedLength(int)} bytes after the offset.
+     * @param offset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    public static int encode(ByteBuffer source, byte[] target, int offset, boolean urlSafe) {
+        
+        // the alphabet
+        byte[] alphabet = urlSafe ? URL_ALPHABET : ALPHABET;
+        
+        // positions
+        int position = source.position();
+        int limit = source.limit();
+        
+        // the number of bytes written
+        int count;
+        
+        // check if the source is backed by an array
+        if (source.hasArray()) {
+            
+            // encode the array directly
+            count = encode(source.array(), source.arrayOffset() + position, limit - position, target, offset, urlSafe);
+        }
+        else {
+            
+            // end of the full groups
+            int end = position + ((limit - position) / 3) * 3;
+            
+            // where to write
+            int index = offset;
+            
+            // encode every full group of 3 bytes
+            while (position < end) {
+                
+                // join the 3 bytes
+                int bits = ((source.get(position) & 0xff) << 16)
+                        | ((source.get(position + 1) & 0xff) << 8)
+                        | (source.get(position + 2) & 0xff);
+                position = position + 3;
+                
+                // split into 4 characters
+                target[index] = alphabet[bits >>> 18];
+                target[index + 1] = alphabet[(bits >>> 12) & 0x3f];
+                target[index + 2] = alphabet[(bits >>> 6) & 0x3f];
+                target[index + 3] = alphabet[bits & 0x3f];
+                index = index + 4;
+            }
+            
+            // check what is left
+            int left = limit - position;
+            
+            // encode the padded group, if any
+            if (left > 0) {
+                int bits = ((source.get(position) & 0xff) << 16)
+                        | (left == 2 ? (source.get(position + 1) & 0xff) << 8 : 0);
+                index = index + tail(bits, left, target, index, alphabet);
+            }
+            
+            // the number of bytes written
+            count = index - offset;
+        }
+        
+        // consume the source
+        source.position(limit);
+        
+        // return the number of bytes written
+        return count;
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer. The source position is moved to its limit and the target
+     * position is moved past the written bytes. If the number of remaining
+     * bytes is not a multiple of 3, the output is padded, so only the last
+     * piece of an input may have such length.
+     * @param source The source buffer.
+     * @param target The target buffer. It must have room for
+     * {@link #getEncodedLength(int)} bytes.
+     * @return The number of bytes written to the target buffer.
+     */
+    public static int encode(ByteBuffer source, ByteBuffer target) {
+        
+        // in the standard alphabet
+        return encode(source, target, false);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer, in the chosen alphabet. The source position is moved to its
+     * limit and the target position is moved past the written bytes. If
+     * the number of remaining bytes is not a multiple of 3, the output is
+     * padded, so only the last piece of an input may have such length.
+     * @param source The source buffer.
+     * @param target The target buffer. It must have room for
+     * {@link #getEncodedLength(int)} bytes.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target buffer.
+     */
+    public static int encode(ByteBuffer source, ByteBuffer target, boolean urlSafe) {
+        
+        // the alphabet
+        byte[] alphabet = urlSafe ? URL_ALPHABET : ALPHABET;
+        
+        // check if the target is backed by an array
+        if (target.hasArray()) {
+            
+            // encode into the array directly
+            int count = encode(source, target.array(), target.arrayOffset() + target.position(), urlSafe);
+            target.position(target.position() + count);
+            return count;
+        }
+        
+        // positions
+        int position = source.position();
+        int limit = source.limit();
+        
+        // end of the full groups
+        int end = position + ((limit - position) / 3) * 3;
+        
+        // where to write
+        int start = target.position();
+        int index = start;
+        
+        // encode every full group of 3 bytes
+        while (position < end) {
+            
+            // join the 3 bytes
+            int bits = ((source.get(position) & 0xff) << 16)
+                    | ((source.get(position + 1) & 0xff) << 8)
+                    | (source.get(position + 2) & 0xff);
+            position = position + 3;
+            
+            // split into 4 characters
+            target.put(index, alphabet[bits >>> 18]);
+            target.put(index + 1, alphabet[(bits >>> 12) & 0x3f]);
+            target.put(index + 2, alphabet[(bits >>> 6) & 0x3f]);
+            target.put(index + 3, alphabet[bits & 0x3f]);
+            index = index + 4;
+        }
+        
+        // check what is left
+        int left = limit - position;
+        
+        // encode the padded group, if any
+        if (left > 0) {
+            int bits = ((source.get(position) & 0xff) << 16)
+                    | (left == 2 ? (source.get(position + 1) & 0xff) << 8 : 0);
+            target.put(index, alphabet[bits >>> 18]);
+            target.put(index + 1, alphabet[(bits >>> 12) & 0x3f]);
+            target.put(index + 2, left == 2 ? alphabet[(bits >>> 6) & 0x3f] : PAD);
+            target.put(index + 3, PAD);
+            index = index + 4;
+        }
+        
+        // consume the source and advance the target
+        source.position(limit);
+        target.position(index);
+        
+        // return the number of bytes written
+        return index - start;
+    }
+    
+    /**
+     * Writes the last, padded, group of an input.
+     * @param bits The 1 or 2 remaining bytes, aligned to the left of 24
+     * bits.
+     * @param left The number of remaining bytes.
+     * @param target The target array.
+     * @param index The index in the target array.
+     * @param alphabet The alphabet.
+     * @return The number of bytes written, always 4.
+     */
+    private static int tail(int bits, int left, byte[] target, int index, byte[] alphabet) {
+        
+        // the first two characters always exist
+        target[index] = alphabet[bits >>> 18];
+        target[index + 1] = alphabet[(bits >>> 12) & 0x3f];
+        
+        // the third one only with two bytes left
+        target[index + 2] = left == 2 ? alphabet[(bits >>> 6) & 0x3f] : PAD;
+        
+        // the last one is always a pad
+        target[index + 3] = PAD;
+        
+        // return the count
+        return 4;
+    }
+}
@@ -0,0 +1,654 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Base64Format.java</b>: provides the variants of the Base64 output.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import net.sf.translate64.codec.Base64Engine;
+import net.sf.translate64.codec.Engines;
+
+/**
+ * Provides the variants of the Base64 output: the URL and file name safe
+ * alphabet, with <code>-</code> and <code>_</code> instead of
+ * <code>+</code> and <code>/</code>, output without padding, and output
+ * wrapped in lines, as MIME and PEM do. Variants are applied while
+ * encoding, in the same pass, so the output is never copied again. Full
+ * lines are encoded by the selected engine straight into place, in the
+ * chosen alphabet, and separators are written between them. A separator
+ * is only written before a line, never after the last one.
+ * <p>
+ * Inputs may be encoded in pieces, each one given with its position in
+ * the whole input, which must be a multiple of 3 for every piece but the
+ * last. The output of a piece starting at such position always starts at
+ * {@link #getEncodedLength(long)} of the position, so pieces can be
+ * encoded in any order. Instances are immutable.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public final class Base64Format {
+
+    /**
+     * System property naming the default format: <code>standard</code>,
+     * <code>url</code>, <code>mime</code> or <code>pem</code>.
+     */
+    public static final String PROPERTY = "translate64.format";
+    
+    /**
+     * The standard output, padded and in a single line.
+     */
+    public static final Base64Format STANDARD = new Base64Format(false, true, 0, "");
+    
+    /**
+     * The URL and file name safe output, without padding, as used by web
+     * tokens.
+     */
+    public static final Base64Format URL_SAFE = new Base64Format(true, false, 0, "");
+    
+    /**
+     * The MIME output, in lines of 76 characters separated by CRLF.
+     */
+    public static final Base64Format MIME = new Base64Format(false, true, 76, "\r\n");
+    
+    /**
+     * The PEM output, in lines of 64 characters separated by LF.
+     */
+    public static final Base64Format PEM = new Base64Format(false, true, 64, "\n");
+    
+    // the padding character
+    private static final byte PAD = '=';
+    
+    // the default format
+    private static volatile Base64Format current;
+    
+    // whether the alphabet is the URL safe one
+    private final boolean urlSafe;
+    
+    // whether the output is padded
+    private final boolean padded;
+    
+    // the line length, or 0 for a single line
+    private final int lineLength;
+    
+    // the line separator
+    private final byte[] separator;
+    
+    // the alphabet
+    private final byte[] alphabet;
+    
+    /**
+     * Constructor method.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @param padded Whether the output is padded.
+     * @param lineLength The line length, a multiple of 4, or 0 for a single
+     * line.
+     * @param separator The line separator.
+     */
+    public Base64Format(boolean urlSafe, boolean padded, int lineLength, String separator) {
+        
+        // check the line length
+        if ((lineLength < 0) || (lineLength % 4 != 0)) {
+            throw new IllegalArgumentException("The line length must be a multiple of 4.");
+        }
+        
+        // and the separator
+        if ((lineLength > 0) && separator.isEmpty()) {
+            throw new IllegalArgumentException("The line separator cannot be empty.");
+        }
+        
+        // set the values
+        this.urlSafe = urlSafe;
+        this.padded = padded;
+        this.lineLength = lineLength;
+        this.separator = separator.getBytes(StandardCharsets.US_ASCII);
+        this.alphabet = ("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789"
+                + (urlSafe ? "-_" : "+/")).getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Gets the default format. The first time, it is the one named by the
+     * system property, or else the standard one.
+     * @return The format.
+     */
+    public static Base64Format getDefault() {
+        
+        // get the current one
+        Base64Format format = current;
+        
+        // check if it was chosen already
+        if (format == null) {
+            
+            // check the system property
+            String name = System.getProperty(PROPERTY);
+            format = (name == null) ? null : forName(name.trim());
+            
+            // fall back to the standard one
+            if (format == null) {
+                format = STANDARD;
+            }
+            
+            // keep it
+            current = format;
+        }
+        
+        // return it
+        return format;
+    }
+    
+    /**
+     * Sets the default format.
+     * @param format The format, or <code>null</code> to choose it again
+     * from the system property.
+     */
+    public static void setDefault(Base64Format format) {
+        
+        // set the value
+        current = format;
+    }
+    
+    /**
+     * Gets a predefined format by its name.
+     * @param name The name, <code>standard</code>, <code>url</code>,
+     * <code>mime</code> or <code>pem</code>.
+     * @return The format, or <code>null</code> if there is no format with
+     * such name.
+     */
+    public static Base64Format forName(String name) {
+        
+        // check the names
+        switch (name.toLowerCase()) {
+            case "standard":
+                return STANDARD;
+            case "url":
+                return URL_SAFE;
+            case "mime":
+                return MIME;
+            case "pem":
+                return PEM;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Gets a copy of this format with another alphabet.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The new format.
+     */
+    public Base64Format withUrlSafe(boolean urlSafe) {
+        
+        // create it
+        return new Base64Format(urlSafe, padded, lineLength, getLineSeparator());
+    }
+    
+    /**
+     * Gets a copy of this format with another padding policy.
+     * @param padded Whether the output is padded.
+     * @return The new format.
+     */
+    public Base64Format withPadding(boolean padded) {
+        
+        // create it
+        return new Base64Format(urlSafe, padded, lineLength, getLineSeparator());
+    }
+    
+    /**
+     * Gets a copy of this format with other lines.
+     * @param lineLength The line length, a multiple of 4, or 0 for a single
+     * line.
+     * @param separator The line separator.
+     * @return The new format.
+     */
+    public Base64Format withLines(int lineLength, String separator) {
+        
+        // create it
+        return new Base64Format(urlSafe, padded, lineLength, separator);
+    }
+    
+    /**
+     * Checks if this is the standard output, padded and in a single line,
+     * which is what the engines produce and the caches hold.
+     * @return <code>true</code> if it is the standard output.
+     */
+    public boolean isStandard() {
+        
+        // check everything
+        return !urlSafe && padded && (lineLength == 0);
+    }
+    
+    /**
+     * Checks if the URL and file name safe alphabet is used.
+     * @return <code>true</code> if it is used.
+     */
+    public boolean isUrlSafe() {
+        
+        // return it
+        return urlSafe;
+    }
+    
+    /**
+     * Checks if the output is padded.
+     * @return <code>true</code> if it is padded.
+     */
+    public boolean isPadded() {
+        
+        // return it
+        return padded;
+    }
+    
+    /**
+     * Gets the line length.
+     * @return The line length, or 0 for a single line.
+     */
+    public int getLineLength() {
+        
+        // return it
+        return lineLength;
+    }
+    
+    /**
+     * Gets the line separator.
+     * @return The line separator.
+     */
+    public String getLineSeparator() {
+        
+        // return it
+        return new String(separator, StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Gets the length of the output for a certain input length. For a
+     * multiple of 3, it is also where the output of the next piece starts.
+     * @param length The input length, in bytes.
+     * @return The output length, in bytes.
+     */
+    public long getEncodedLength(long length) {
+        
+        // the characters, padded or not
+        long characters = padded ? ((length + 2) / 3) * 4 : (length / 3) * 4 + ((length % 3 == 0) ? 0 : length % 3 + 1);
+        
+        // and the separators between lines
+        return characters + getSeparators(characters) * separator.length;
+    }
+    
+    /**
+     * Gets the maximum length of the output of a piece, wherever it starts.
+     * @param length The piece length, in bytes.
+     * @return The maximum output length, in bytes.
+     */
+    public int getMaxEncodedLength(int length) {
+        
+        // the characters
+        int characters = Base64Encoder.getEncodedLength(length);
+        
+        // and a separator before every line
+        return characters + ((lineLength == 0) ? 0 : (characters / lineLength + 1) * separator.length);
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode. Only the last piece may
+     * have a length that is not a multiple of 3.
+     * @param target The target array. It must have room for
+     * {@link #getMaxEncodedLength(int)} bytes after the target offset.
+     * @param targetOffset The offset in the target array.
+     * @param position The position of the piece in the whole input, a
+     * multiple of 3.
+     * @return The number of bytes written to the target array.
+     */
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, long position) {
+        
+        // get the engine
+        Base64Engine engine = Engines.getDefault();
+        
+        // the standard output is the engine output
+        if (isStandard()) {
+            return engine.encode(source, offset, length, target, targetOffset);
+        }
+        
+        // the full groups
+        int full = (length / 3) * 3;
+        
+        // where to write
+        int index = targetOffset;
+        int column = getColumn(position);
+        
+        // encode the full groups, line by line
+        int done = 0;
+        while (done < full) {
+            
+            // start a new line, if needed
+            if ((lineLength > 0) && (column == lineLength)) {
+                System.arraycopy(separator, 0, target, index, separator.length);
+                index = index + separator.length;
+                column = 0;
+            }
+            
+            // encode what fits in the line
+            int count = getSegment(full - done, column);
+            int written = engine.encode(source, offset + done, count, target, index, urlSafe);
+            
+            // move on
+            index = index + written;
+            column = column + written;
+            done = done + count;
+        }
+        
+        // encode the last group, if any
+        int left = length - full;
+        if (left > 0) {
+            
+            // start a new line, if needed
+            if ((lineLength > 0) && (column == lineLength)) {
+                System.arraycopy(separator, 0, target, index, separator.length);
+                index = index + separator.length;
+            }
+            
+            // encode it
+            int bits = ((source[offset + full] & 0xff) << 16)
+                    | (left == 2 ? (source[offset + full + 1] & 0xff) << 8 : 0);
+            index = index + tail(bits, left, target, index);
+        }
+        
+        // return the number of bytes written
+        return index - targetOffset;
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array. The source position is moved to its limit.
+     * @param source The source buffer. Only the last piece may have a
+     * length that is not a multiple of 3.
+     * @param target The target array. It must have room for
+     * {@link #getMaxEncodedLength(int)} bytes after the offset.
+     * @param offset The offset in the target array.
+     * @param position The position of the piece in the whole input, a
+     * multiple of 3.
+     * @return The number of bytes written to the target array.
+     */
+    public int encode(ByteBuffer source, byte[] target, int offset, long position) {
+        
+        // get the engine
+        Base64Engine engine = Engines.getDefault();
+        
+        // the standard output is the engine output
+        if (isStandard()) {
+            return engine.encode(source, target, offset);
+        }
+        
+        // the full groups, read through a view
+        int full = (source.remaining() / 3) * 3;
+        int end = source.position() + full;
+        ByteBuffer piece = source.duplicate();
+        
+        // where to write
+        int index = offset;
+        int column = getColumn(position);
+        
+        // encode the full groups, line by line
+        while (piece.position() < end) {
+            
+            // start a new line, if needed
+            if ((lineLength > 0) && (column == lineLength)) {
+                System.arraycopy(separator, 0, target, index, separator.length);
+                index = index + separator.length;
+                column = 0;
+            }
+            
+            // encode what fits in the line
+            piece.limit(piece.position() + getSegment(end - piece.position(), column));
+            int written = engine.encode(piece, target, index, urlSafe);
+            
+            // move on
+            index = index + written;
+            column = column + written;
+        }
+        
+        // encode the last group, if any
+        int left = source.limit() - end;
+        if (left > 0) {
+            
+            // start a new line, if needed
+            if ((lineLength > 0) && (column == lineLength)) {
+                System.arraycopy(separator, 0, target, index, separator.length);
+                index = index + separator.length;
+            }
+            
+            // encode it
+            int bits = ((source.get(end) & 0xff) << 16)
+                    | (left == 2 ? (source.get(end + 1) & 0xff) << 8 : 0);
+            index = index + tail(bits, left, target, index);
+        }
+        
+        // consume the source
+        source.position(source.limit());
+        
+        // return the number of bytes written
+        return index - offset;
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer. The source position is moved to its limit and the target
+     * position is moved past the written bytes.
+     * @param source The source buffer. Only the last piece may have a
+     * length that is not a multiple of 3.
+     * @param target The target buffer. It must have room for
+     * {@link #getMaxEncodedLength(int)} bytes.
+     * @param position The position of the piece in the whole input, a
+     * multiple of 3.
+     * @return The number of bytes written to the target buffer.
+     */
+    public int encode(ByteBuffer source, ByteBuffer target, long position) {
+        
+        // get the engine
+        Base64Engine engine = Engines.getDefault();
+        
+        // the standard output is the engine output
+        if (isStandard()) {
+            return engine.encode(source, target);
+        }
+        
+        // the full groups, read through a view
+        int full = (source.remaining() / 3) * 3;
+        int end = source.position() + full;
+        ByteBuffer piece = source.duplicate();
+        
+        // where to write
+        int start = target.position();
+        int column = getColumn(position);
+        
+        // encode the full groups, line by line
+        while (piece.position() < end) {
+            
+            // start a new line, if needed
+            if ((lineLength > 0) && (column == lineLength)) {
+                target.put(separator);
+                column = 0;
+            }
+            
+            // encode what fits in the line
+            piece.limit(piece.position() + getSegment(end - piece.position(), column));
+            int written = engine.encode(piece, target, urlSafe);
+            
+            // move on
+            column = column + written;
+        }
+        
+        // encode the last group, if any
+        int left = source.limit() - end;
+        if (left > 0) {
+            
+            // start a new line, if needed
+            if ((lineLength > 0) && (column == lineLength)) {
+                target.put(separator);
+            }
+            
+            // encode it
+            int bits = ((source.get(end) & 0xff) << 16)
+                    | (left == 2 ? (source.get(end + 1) & 0xff) << 8 : 0);
+            tail(bits, left, target);
+        }
+        
+        // consume the source
+        source.position(source.limit());
+        
+        // return the number of bytes written
+        return target.position() - start;
+    }
+    
+    /**
+     * Gets the number of separators in an output.
+     * @param characters The number of characters in the output.
+     * @return The number of separators.
+     */
+    private long getSeparators(long characters) {
+        
+        // one before every line but the first
+        return ((lineLength == 0) || (characters == 0)) ? 0 : (characters - 1) / lineLength;
+    }
+    
+    /**
+     * Gets the column where the output of a piece starts. A full line
+     * gives the line length, as its separator is only written when more
+     * output comes.
+     * @param position The position of the piece in the whole input, a
+     * multiple of 3.
+     * @return The column.
+     */
+    private int getColumn(long position) {
+        
+        // the characters before the piece
+        long characters = (position / 3) * 4;
+        
+        // the position in the current line
+        return ((lineLength == 0) || (characters == 0)) ? 0 : (int) ((characters - 1) % lineLength) + 1;
+    }
+    
+    /**
+     * Gets the number of input bytes to encode in the current line.
+     * @param remaining The remaining bytes of full groups.
+     * @param column The current column, before the line is full.
+     * @return The number of bytes, a multiple of 3.
+     */
+    private int getSegment(int remaining, int column) {
+        
+        // everything, or what fits in the line
+        return (lineLength == 0) ? remaining : Math.min(remaining, ((lineLength - column) / 4) * 3);
+    }
+    
+    /**
+     * Writes the last group of an input, padded if needed.
+     * @param bits The 1 or 2 remaining bytes, aligned to the left of 24
+     * bits.
+     * @param left The number of remaining bytes.
+     * @param target The target array.
+     * @param index The index in the target array.
+     * @return The number of bytes written.
+     */
+    private int tail(int bits, int left, byte[] target, int index) {
+        
+        // the first two characters always exist
+        target[index] = alphabet[bits >>> 18];
+        target[index + 1] = alphabet[(bits >>> 12) & 0x3f];
+        
+        // the third one only with two bytes left
+        int count = 2;
+        if (left == 2) {
+            target[index + 2] = alphabet[(bits >>> 6) & 0x3f];
+            count = 3;
+        }
+        
+        // and the padding, if any
+        while (padded && (count < 4)) {
+            target[index + count] = PAD;
+            count++;
+        }
+        
+        // return the count
+        return count;
+    }
+    
+    /**
+     * Writes the last group of an input, padded if needed, at the position
+     * of the target buffer, which is moved past it.
+     * @param bits The 1 or 2 remaining bytes, aligned to the left of 24
+     * bits.
+     * @param left The number of remaining bytes.
+     * @param target The target buffer.
+     * @return The number of bytes written.
+     */
+    private int tail(int bits, int left, ByteBuffer target) {
+        
+        // the first two characters always exist
+        target.put(alphabet[bits >>> 18]);
+        target.put(alphabet[(bits >>> 12) & 0x3f]);
+        
+        // the third one only with two bytes left
+        int count = 2;
+        if (left == 2) {
+            target.put(alphabet[(bits >>> 6) & 0x3f]);
+            count = 3;
+        }
+        
+        // and the padding, if any
+        while (padded && (count < 4)) {
+            target.put(PAD);
+            count++;
+        }
+        
+        // return the count
+        return count;
+    }
+}
@@ -0,0 +1,847 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>BatchConverter.java</b>: provides concurrent conversion of many
+ * files, delivering the results in input order.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides concurrent conversion of many files. Files are read by a pool
+ * of IO threads, which may block on the disk, and encoded by a pool with
+ * one thread per processor. Results are kept in a reorder buffer and
+ * handed to the listener strictly in submission order, one at a time, so
+ * the output is deterministic no matter which file finishes first. The
+ * number of files in flight is bounded, so memory use stays under control
+ * when many files are submitted. Directories are walked while their files
+ * are already being converted.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class BatchConverter {
+
+    /**
+     * Listens to the results of a batch conversion. Methods are called in
+     * submission order and never concurrently.
+     */
+    public static interface Listener {
+        
+        /**
+         * A file was converted.
+         * @param index The submission index of the file.
+         * @param file The file.
+         * @param output The Base64 string, or <code>null</code> when it was
+         * written to a target file.
+         */
+        public void fileConverted(int index, File file, String output);
+        
+        /**
+         * A file could not be converted.
+         * @param index The submission index of the file.
+         * @param file The file.
+         * @param error The error.
+         */
+        public void fileFailed(int index, File file, IOException error);
+    }
+    
+    /**
+     * Tells where the output of each file is written, when outputs go
+     * straight to files instead of the listener.
+     */
+    public static interface Destination {
+        
+        /**
+         * Gets the target file of a file. It may be called concurrently.
+         * @param file The file.
+         * @return The target file.
+         */
+        public File getTarget(File file);
+    }
+    
+    /**
+     * Listens to the checksums of the converted files, computed while they
+     * are read. Methods are called in submission order, right before the
+     * result of the same file, and never concurrently.
+     */
+    public static interface ChecksumListener {
+        
+        /**
+         * The checksums of a converted file are ready.
+         * @param index The submission index of the file.
+         * @param file The file.
+         * @param checksums The checksums.
+         */
+        public void checksumsComputed(int index, File file, Checksums checksums);
+    }
+    
+    // number of processors
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    
+    // pool for reading, threads mostly block on IO
+    private static final ExecutorService IO_POOL = newBlockingPool();
+    
+    // pool for encoding, bound to the processors
+    private static final ExecutorService CPU_POOL = Executors.newFixedThreadPool(PROCESSORS, new DaemonThreadFactory("translate64-cpu-"));
+    
+    // the listener
+    private final Listener listener;
+    
+    // the progress listener, if any
+    private final ProgressListener progress;
+    
+    // bounds the files in flight
+    private final Semaphore permits;
+    
+    // the cache, if any
+    private volatile ConversionCache cache;
+    
+    // the disk cache, if any
+    private volatile DiskCache diskCache;
+    
+    // the destination, if any
+    private volatile Destination destination;
+    
+    // the filter of walked files, if any
+    private volatile FileFilter filter;
+    
+    // the checksum listener, if any
+    private volatile ChecksumListener checksumListener;
+    
+    // finished results waiting for their turn
+    private final Map<Integer, Result> pending = new HashMap<Integer, Result>();
+    
+    // number of submitted files
+    private int submitted = 0;
+    
+    // index of the next result to deliver
+    private int next = 0;
+    
+    // the first exception thrown by the listener, if any
+    private RuntimeException listenerError;
+    
+    // whether the batch was cancelled
+    private volatile boolean cancelled = false;
+    
+    /**
+     * Constructor method. At most twice the number of processors files are
+     * kept in flight.
+     * @param listener The listener.
+     */
+    public BatchConverter(Listener listener) {
+        
+        // call the other constructor
+        this(listener, null);
+    }
+    
+    /**
+     * Constructor method. At most twice the number of processors files are
+     * kept in flight.
+     * @param listener The listener.
+     * @param progress The progress listener, or <code>null</code>. When it
+     * is cancelled, files not yet read fail right away.
+     */
+    public BatchConverter(Listener listener, ProgressListener progress) {
+        
+        // call the other constructor
+        this(listener, progress, 2 * PROCESSORS);
+    }
+    
+    /**
+     * Constructor method.
+     * @param listener The listener.
+     * @param progress The progress listener, or <code>null</code>. When it
+     * is cancelled, files not yet read fail right away.
+     * @param inflight The maximum number of files being read, encoded or
+     * waiting for their turn at the same time.
+     */
+    public BatchConverter(Listener listener, ProgressListener progress, int inflight) {
+        
+        // set the values
+        this.listener = listener;
+        this.progress = progress;
+        this.permits = new Semaphore(inflight);
+    }
+    
+    /**
+     * Converts all files and waits for them. Directories are converted
+     * recursively.
+     * @param files The files.
+     * @param listener The listener.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting.
+     */
+    public static void convertFiles(File[] files, Listener listener) throws InterruptedException {
+        
+        // call the proper method
+        convertFiles(files, listener, null);
+    }
+    
+    /**
+     * Converts all files and waits for them, reporting the progress.
+     * Directories are converted recursively.
+     * @param files The files.
+     * @param listener The listener.
+     * @param progress The progress listener, or <code>null</code>.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting.
+     */
+    public static void convertFiles(File[] files, Listener listener, ProgressListener progress) throws InterruptedException {
+        
+        // create a new batch
+        BatchConverter batch = new BatchConverter(listener, progress);
+        
+        // submit every file
+        batch.submitAll(files);
+        
+        // wait for all of them
+        batch.await();
+    }
+    
+    /**
+     * Sets the cache used by this batch. Cached files are delivered without
+     * being read, and converted files are added to the cache.
+     * @param cache The cache, or <code>null</code> for none.
+     */
+    public void setCache(ConversionCache cache) {
+        
+        // set the value
+        this.cache = cache;
+    }
+    
+    /**
+     * Sets the disk cache used by this batch. Files are converted through
+     * it, so unchanged files are not read at all.
+     * @param diskCache The disk cache, or <code>null</code> for none.
+     */
+    public void setDiskCache(DiskCache diskCache) {
+        
+        // set the value
+        this.diskCache = diskCache;
+    }
+    
+    /**
+     * Sets the destination of this batch. Outputs are then streamed straight
+     * to their target files, through the disk cache if any, and the
+     * listener gets no strings. The memory cache is not used.
+     * @param destination The destination, or <code>null</code> to deliver
+     * strings to the listener.
+     */
+    public void setDestination(Destination destination) {
+        
+        // set the value
+        this.destination = destination;
+    }
+    
+    /**
+     * Sets the checksum listener of this batch. The checksums of every file
+     * are then computed in the same pass that encodes it, so the caches,
+     * which skip reading, are not used.
+     * @param checksumListener The checksum listener, or <code>null</code>
+     * for no checksums.
+     */
+    public void setChecksumListener(ChecksumListener checksumListener) {
+        
+        // set the value
+        this.checksumListener = checksumListener;
+    }
+    
+    /**
+     * Sets the filter of regular files found while walking directories.
+     * Files given explicitly are always submitted.
+     * @param filter The filter, or <code>null</code> to submit every file.
+     */
+    public void setFilter(FileFilter filter) {
+        
+        // set the value
+        this.filter = filter;
+    }
+    
+    /**
+     * Submits many files for conversion. Directories are submitted
+     * recursively, and directories that cannot be walked are delivered to
+     * the listener as failures.
+     * @param files The files.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting for room.
+     */
+    public void submitAll(File[] files) throws InterruptedException {
+        
+        // submit every file
+        for (File file : files) {
+            
+            // check if it is a directory
+            if (file.isDirectory()) {
+                
+                // let's try
+                try {
+                    
+                    // submit everything inside it
+                    submitTree(file);
+                }
+                catch (IOException e) {
+                    
+                    // deliver the failure in order
+                    fail(file, e);
+                }
+            }
+            else {
+                
+                // submit the file itself
+                submit(file);
+            }
+        }
+    }
+    
+    /**
+     * Submits a file for conversion. This method blocks while the maximum
+     * number of files is in flight.
+     * @param file The file.
+     * @return The submission index of the file.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting for room.
+     */
+    public int submit(final File file) throws InterruptedException {
+        
+        // wait for room
+        permits.acquire();
+        
+        // get the index
+        final int index;
+        synchronized (this) {
+            index = submitted++;
+        }
+        
+        // read the file in the IO pool
+        IO_POOL.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                
+                // let's try
+                try {
+                    
+                    // files not yet read are not read at all
+                    if (cancelled) {
+                        throw new InterruptedIOException("The conversion was cancelled.");
+                    }
+                    
+                    // the checksums, if requested
+                    Checksums checksums = (checksumListener == null) ? null : new Checksums();
+                    
+                    // check if the output goes to a file
+                    if (destination != null) {
+                        
+                        // stream it there, nothing is kept in memory
+                        FileSink.convertFile(file, destination.getTarget(file), diskCache, checksums, progress);
+                        finish(index, new Result(file, null, checksums, null));
+                        return;
+                    }
+                    
+                    // check the cache first
+                    String cached = ((cache == null) || (checksums != null)) ? null : cache.get(file);
+                    if (cached != null) {
+                        
+                        // no need to read it
+                        TranslateUtils.report(progress, file.length());
+                        finish(index, new Result(file, cached, null));
+                    }
+                    else if ((diskCache != null) && (checksums == null)) {
+                        
+                        // convert it through the disk cache
+                        String output = diskCache.convertFile(file, progress);
+                        if (cache != null) {
+                            cache.put(file, output);
+                        }
+                        finish(index, new Result(file, output, null));
+                    }
+                    else if (Compression.getDefault().isEnabled()) {
+                        
+                        // compressed files are deflated in parallel and
+                        // encoded as the compressed bytes arrive, files
+                        // that would not shrink are encoded as they are
+                        finish(index, new Result(file, TranslateUtils.convertFile(file, true, checksums, progress), checksums, null));
+                    }
+                    else if (file.length() >= ParallelConverter.THRESHOLD) {
+                        
+                        // large files are better encoded in parallel
+                        // on their own, with no full copy in memory
+                        String output = ParallelConverter.convertFile(file, checksums, progress);
+                        if (cache != null) {
+                            cache.put(file, output);
+                        }
+                        finish(index, new Result(file, output, checksums, null));
+                    }
+                    else {
+                        
+                        // check if we should stop
+                        TranslateUtils.report(progress, 0);
+                        
+                        // read it and hand it to the encoding pool
+                        byte[] bytes = TranslateUtils.getBytesFromFile(file);
+                        TranslateUtils.report(progress, bytes.length);
+                        if (checksums != null) {
+                            checksums.update(bytes, 0, bytes.length);
+                        }
+                        encode(index, file, bytes, checksums);
+                    }
+                }
+                catch (IOException e) {
+                    
+                    // record the error
+                    finish(index, new Result(file, null, e));
+                }
+                catch (Throwable e) {
+                    
+                    // record the error, even running out of memory
+                    // must not leave the file undelivered
+                    finish(index, new Result(file, null, new IOException(e)));
+                }
+            }
+        });
+        
+        // return the index
+        return index;
+    }
+    
+    /**
+     * Submits every regular file under a directory for conversion. The
+     * tree is walked in the calling thread and each file is submitted as
+     * soon as it is found, so files are converted while the walk goes on.
+     * Entries that cannot be read are delivered to the listener as
+     * failures. This method blocks while the maximum number of files is in
+     * flight.
+     * @param root The directory.
+     * @return The number of submitted entries.
+     * @throws IOException An IO error while walking the tree.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting for room.
+     */
+    public int submitTree(File root) throws IOException, InterruptedException {
+        
+        // the counter
+        final AtomicInteger count = new AtomicInteger(0);
+        
+        // let's try
+        try {
+            
+            // walk the tree
+            Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    
+                    // only regular files are converted
+                    if (attributes.isRegularFile() && ((filter == null) || filter.accept(file.toFile()))) {
+                        
+                        // let's try
+                        try {
+                            
+                            // submit the file
+                            submit(file.toFile());
+                            count.incrementAndGet();
+                        }
+                        catch (InterruptedException e) {
+                            
+                            // stop the walk
+                            throw new InterruptedIOException();
+                        }
+                    }
+                    
+                    // go on
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException error) throws IOException {
+                    
+                    // let's try
+                    try {
+                        
+                        // deliver the failure in order
+                        fail(file.toFile(), error);
+                        count.incrementAndGet();
+                    }
+                    catch (InterruptedException e) {
+                        
+                        // stop the walk
+                        throw new InterruptedIOException();
+                    }
+                    
+                    // go on
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        catch (InterruptedIOException e) {
+            
+            // the walk was interrupted
+            throw new InterruptedException();
+        }
+        
+        // return the counter
+        return count.get();
+    }
+    
+    /**
+     * Submits a failure, which is delivered in order like any result.
+     * @param file The file.
+     * @param error The error.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting for room.
+     */
+    private void fail(File file, IOException error) throws InterruptedException {
+        
+        // wait for room
+        permits.acquire();
+        
+        // get the index
+        int index;
+        synchronized (this) {
+            index = submitted++;
+        }
+        
+        // finish it right away
+        finish(index, new Result(file, null, error));
+    }
+    
+    /**
+     * Waits until every submitted file has been delivered to the listener.
+     * If the listener threw an exception, the rest of the results are still
+     * delivered and the first exception is thrown here.
+     * @throws InterruptedException The thread was interrupted while
+     * waiting.
+     */
+    public synchronized void await() throws InterruptedException {
+        
+        // wait for the last result
+        while (next < submitted) {
+            wait();
+        }
+        
+        // report a failing listener
+        if (listenerError != null) {
+            RuntimeException error = listenerError;
+            listenerError = null;
+            throw error;
+        }
+    }
+    
+    /**
+     * Cancels the batch and waits until every submitted file has been
+     * delivered to the listener, so the listener is never called after
+     * this method returns. Files not yet read fail right away, and files
+     * being converted stop at their next block if the progress listener is
+     * cancelled too. Interrupts are ignored while waiting, and kept for the
+     * caller.
+     */
+    public synchronized void cancel() {
+        
+        // no more reading
+        cancelled = true;
+        
+        // wait for the last result, even if interrupted
+        boolean interrupted = false;
+        while (next < submitted) {
+            
+            // let's try
+            try {
+                
+                // wait for the next result
+                wait();
+            }
+            catch (InterruptedException e) {
+                
+                // remember it for later
+                interrupted = true;
+            }
+        }
+        
+        // forget the listener error, the batch was dropped anyway
+        listenerError = null;
+        
+        // restore the interrupt
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Encodes the bytes of a file in the encoding pool.
+     * @param index The submission index.
+     * @param file The file.
+     * @param bytes The file contents.
+     * @param checksums The checksums of the contents, or <code>null</code>.
+     */
+    private void encode(final int index, final File file, final byte[] bytes, final Checksums checksums) {
+        
+        // encode in the encoding pool
+        CPU_POOL.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                
+                // let's try
+                try {
+                    
+                    // encode the bytes
+                    Base64Format format = Base64Format.getDefault();
+                    
+                    // the text around the output, if any, with the
+                    // type detected from the bytes already read
+                    EmbedTemplate template = EmbedTemplate.getDefault();
+                    byte[] prefix = template.getPrefix(bytes, bytes.length, file.getName(), Compression.NONE);
+                    byte[] suffix = template.getSuffix(Compression.NONE);
+                    
+                    // encode them straight between the prefix and the suffix
+                    byte[] encoded = new byte[prefix.length + (int) format.getEncodedLength(bytes.length) + suffix.length];
+                    System.arraycopy(prefix, 0, encoded, 0, prefix.length);
+                    format.encode(bytes, 0, bytes.length, encoded, prefix.length, 0);
+                    System.arraycopy(suffix, 0, encoded, encoded.length - suffix.length, suffix.length);
+                    
+                    // Base64 is plain ASCII
+                    String output = new String(encoded, StandardCharsets.US_ASCII);
+                    
+                    // keep it in the cache
+                    if (cache != null) {
+                        
+                        // let's try
+                        try {
+                            
+                            // the file is only checked, not read
+                            cache.put(file, output);
+                        }
+                        catch (IOException e) {
+                            
+                            // not cached, no big deal
+                        }
+                    }
+                    
+                    // deliver it
+                    finish(index, new Result(file, output, checksums, null));
+                }
+                catch (Throwable e) {
+                    
+                    // record the error, even running out of memory
+                    // must not leave the file undelivered
+                    finish(index, new Result(file, null, new IOException(e)));
+                }
+            }
+        });
+    }
+    
+    /**
+     * Stores a result in the reorder buffer and delivers every result
+     * whose turn has come.
+     * @param index The submission index.
+     * @param result The result.
+     */
+    private synchronized void finish(int index, Result result) {
+        
+        // keep the result
+        pending.put(index, result);
+        
+        // deliver everything in order
+        Result current;
+        while ((current = pending.remove(next)) != null) {
+            
+            // let's try
+            try {
+                
+                // call the listeners
+                if (current.error == null) {
+                    if ((current.checksums != null) && (checksumListener != null)) {
+                        checksumListener.checksumsComputed(next, current.file, current.checksums);
+                    }
+                    listener.fileConverted(next, current.file, current.output);
+                }
+                else {
+                    listener.fileFailed(next, current.file, current.error);
+                }
+            }
+            catch (RuntimeException e) {
+                
+                // keep delivering, the first one is thrown by await()
+                if (listenerError == null) {
+                    listenerError = e;
+                }
+            }
+            finally {
+                
+                // the file is no longer in flight
+                next++;
+                permits.release();
+            }
+        }
+        
+        // wake up anyone waiting
+        notifyAll();
+    }
+    
+    /**
+     * Creates the pool for reading, with a virtual thread per file when the
+     * runtime has them.
+     * @return The pool.
+     */
+    private static ExecutorService newBlockingPool() {
+        
+        // let's try
+        try {
+            
+            // Java 21 and later
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            
+            // a cached pool of platform threads
+            return Executors.newCachedThreadPool(new DaemonThreadFactory("translate64-io-"));
+        }
+    }
+    
+    /**
+     * Holds the result of a single file.
+     */
+    private static class Result {
+        
+        // the file
+        final File file;
+        
+        // the output, if successful
+        final String output;
+        
+        // the checksums, if requested
+        final Checksums checksums;
+        
+        // the error, if failed
+        final IOException error;
+        
+        /**
+         * Constructor method.
+         * @param file The file.
+         * @param output The output.
+         * @param error The error.
+         */
+        Result(File file, String output, IOException error) {
+            
+            // call the other constructor
+            this(file, output, null, error);
+        }
+        
+        /**
+         * Constructor method.
+         * @param file The file.
+         * @param output The output.
+         * @param checksums The checksums.
+         * @param error The error.
+         */
+        Result(File file, String output, Checksums checksums, IOException error) {
+            
+            // set the values
+            this.file = file;
+            this.output = output;
+            this.checksums = checksums;
+            this.error = error;
+        }
+    }
+    
+    /**
+     * Creates named daemon threads, so the pools never keep the
+     * application alive.
+     */
+    static class DaemonThreadFactory implements ThreadFactory {
+        
+        // the name prefix
+        private final String prefix;
+        
+        // the thread counter
+        private final AtomicInteger counter = new AtomicInteger(0);
+        
+        /**
+         * Constructor method.
+         * @param prefix The name prefix.
+         */
+        DaemonThreadFactory(String prefix) {
+            
+            // set the value
+            this.prefix = prefix;
+        }
+        
+        /**
+         * Creates a new thread.
+         * @param runnable The task.
+         * @return The thread.
+         */
+        @Override
+        public Thread newThread(Runnable runnable) {
+            
+            // create a daemon thread
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
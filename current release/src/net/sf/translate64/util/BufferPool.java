@@ -0,0 +1,176 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>BufferPool.java</b>: provides a pool of reusable direct byte
+ * buffers for reading files through NIO channels.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides a pool of reusable direct byte buffers for reading files through
+ * NIO channels. Direct buffers are expensive to allocate and are only
+ * released by the garbage collector, so they are kept here and handed out
+ * again instead of being created for every conversion. This class is
+ * thread safe.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class BufferPool {
+
+    /**
+     * Default capacity of each buffer, in bytes. It is a multiple of 3, so
+     * a full buffer is encoded without padding.
+     */
+    public static final int BUFFER_SIZE = 3 * 64 * 1024;
+    
+    // the shared pool
+    private static final BufferPool DEFAULT = new BufferPool(BUFFER_SIZE, 2 * Runtime.getRuntime().availableProcessors());
+    
+    // the capacity of each buffer
+    private final int capacity;
+    
+    // the maximum number of idle buffers kept
+    private final int maximum;
+    
+    // the idle buffers
+    private final Queue<ByteBuffer> buffers;
+    
+    // the number of idle buffers
+    private final AtomicInteger idle;
+
+    /**
+     * Constructor method.
+     * @param capacity The capacity of each buffer, in bytes.
+     * @param maximum The maximum number of idle buffers kept in the pool.
+     */
+    public BufferPool(int capacity, int maximum) {
+        
+        // set the values
+        this.capacity = capacity;
+        this.maximum = maximum;
+        this.buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        this.idle = new AtomicInteger(0);
+    }
+    
+    /**
+     * Gets the shared pool, whose buffers have {@link #BUFFER_SIZE} bytes.
+     * @return The shared pool.
+     */
+    public static BufferPool getDefault() {
+        
+        // return the shared pool
+        return DEFAULT;
+    }
+    
+    /**
+     * Gets the capacity of each buffer.
+     * @return The capacity, in bytes.
+     */
+    public int getCapacity() {
+        
+        // return the capacity
+        return capacity;
+    }
+    
+    /**
+     * Acquires a cleared buffer, either an idle one or a new one.
+     * @return The buffer.
+     */
+    public ByteBuffer acquire() {
+        
+        // get an idle buffer
+        ByteBuffer buffer = buffers.poll();
+        
+        // check if there was one
+        if (buffer == null) {
+            
+            // no, so allocate a new one
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        
+        // one less idle buffer
+        idle.decrementAndGet();
+        
+        // clear and return it
+        buffer.clear();
+        return buffer;
+    }
+    
+    /**
+     * Returns a buffer to the pool. The buffer must not be used after this
+     * call. If the pool is full, the buffer is simply discarded.
+     * @param buffer The buffer.
+     */
+    public void release(ByteBuffer buffer) {
+        
+        // only keep buffers from this pool
+        if (!buffer.isDirect() || (buffer.capacity() != capacity)) {
+            
+            // not ours, discard it
+            return;
+        }
+        
+        // check if the pool is full
+        if (idle.incrementAndGet() > maximum) {
+            
+            // it is, so undo the count and discard the buffer
+            idle.decrementAndGet();
+            return;
+        }
+        
+        // keep it
+        buffers.offer(buffer);
+    }
+}
@@ -0,0 +1,299 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Checksums.java</b>: provides the SHA-256 digest and the CRC32C  *
+ * checksum of a file, computed while it is converted.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Provides the SHA-256 digest and the CRC32C checksum of a file, computed
+ * while it is converted. The conversion feeds the same buffers it encodes
+ * into both, so the file is read only once. CRC32C is only available on
+ * Java 9 and later, so it is loaded by name; older runtimes fall back to
+ * plain CRC32, and {@link #getCrcAlgorithm()} says which one was used.
+ * Once a value is read, no more bytes can be added.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public final class Checksums {
+
+    /**
+     * System property that, when <code>true</code>, makes the window
+     * compute the checksums of single files it converts, unless the
+     * choice is changed in its menu.
+     */
+    public static final String PROPERTY = "translate64.checksums";
+    
+    // whether the window computes them, or null for the property
+    private static volatile Boolean enabled;
+    
+    // the class of the preferred checksum
+    private static final String CRC32C = "java.util.zip.CRC32C";
+    
+    // size of the copies made for direct buffers
+    private static final int SCRATCH_SIZE = 8 * 1024;
+    
+    // the digest
+    private final MessageDigest digest;
+    
+    // the checksum
+    private final Checksum checksum;
+    
+    // copies of direct buffers, created when needed
+    private byte[] scratch;
+    
+    // the final values, once read
+    private String sha256;
+    private String crc;
+    
+    /**
+     * Constructor method.
+     * @throws IOException The digest is not available.
+     */
+    public Checksums() throws IOException {
+        
+        // set the values
+        this.digest = DiskCache.newDigest();
+        this.checksum = newChecksum();
+    }
+    
+    /**
+     * Checks if the checksums were requested, through
+     * {@link #setEnabled(Boolean)} or else the
+     * <code>translate64.checksums</code> system property.
+     * @return <code>true</code> if they were requested.
+     */
+    public static boolean isEnabled() {
+        
+        // get the current choice
+        Boolean value = enabled;
+        
+        // check the property, if there is none
+        return (value == null) ? Boolean.getBoolean(PROPERTY) : value.booleanValue();
+    }
+    
+    /**
+     * Sets whether the checksums are requested.
+     * @param value Whether they are requested, or <code>null</code> to
+     * check the system property again.
+     */
+    public static void setEnabled(Boolean value) {
+        
+        // set the value
+        enabled = value;
+    }
+    
+    /**
+     * Adds the remaining bytes of the buffer. The buffer position is moved
+     * to its limit.
+     * @param buffer The buffer.
+     */
+    public synchronized void update(ByteBuffer buffer) {
+        
+        // check if it is still open
+        check();
+        
+        // the checksum only takes arrays
+        if (buffer.hasArray()) {
+            checksum.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        else {
+            
+            // create the copy, if needed
+            if (scratch == null) {
+                scratch = new byte[SCRATCH_SIZE];
+            }
+            
+            // copy it piece by piece
+            ByteBuffer view = buffer.duplicate();
+            while (view.hasRemaining()) {
+                int count = Math.min(view.remaining(), scratch.length);
+                view.get(scratch, 0, count);
+                checksum.update(scratch, 0, count);
+            }
+        }
+        
+        // the digest takes the buffer itself
+        digest.update(buffer);
+    }
+    
+    /**
+     * Adds bytes from an array.
+     * @param bytes The array.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     */
+    public synchronized void update(byte[] bytes, int offset, int length) {
+        
+        // check if it is still open
+        check();
+        
+        // feed both
+        checksum.update(bytes, offset, length);
+        digest.update(bytes, offset, length);
+    }
+    
+    /**
+     * Wraps a channel, so everything read through it is added to these
+     * checksums.
+     * @param channel The channel.
+     * @return The wrapped channel.
+     */
+    public ReadableByteChannel wrap(ReadableByteChannel channel) {
+        
+        // create it
+        return new DigestChannel(channel, this);
+    }
+    
+    /**
+     * Gets the SHA-256 digest.
+     * @return The digest, in hexadecimal.
+     */
+    public synchronized String getSha256() {
+        
+        // finish it
+        finish();
+        
+        // return it
+        return sha256;
+    }
+    
+    /**
+     * Gets the CRC32C checksum, or the CRC32 one on older runtimes.
+     * @return The checksum, in hexadecimal.
+     */
+    public synchronized String getCrc() {
+        
+        // finish it
+        finish();
+        
+        // return it
+        return crc;
+    }
+    
+    /**
+     * Gets the name of the checksum algorithm.
+     * @return <code>CRC32C</code>, or <code>CRC32</code> on older
+     * runtimes.
+     */
+    public String getCrcAlgorithm() {
+        
+        // check the class
+        return (checksum instanceof CRC32) ? "CRC32" : "CRC32C";
+    }
+    
+    /**
+     * Gets the values, one per line.
+     * @return The values.
+     */
+    @Override
+    public String toString() {
+        
+        // join them
+        return "SHA-256: " + getSha256() + "\n" + getCrcAlgorithm() + ": " + getCrc();
+    }
+    
+    /**
+     * Makes sure no value was read yet.
+     */
+    private void check() {
+        
+        // check the values
+        if (sha256 != null) {
+            throw new IllegalStateException("The checksums were already computed.");
+        }
+    }
+    
+    /**
+     * Computes the final values, once.
+     */
+    private void finish() {
+        
+        // check if they are there
+        if (sha256 == null) {
+            
+            // compute them
+            sha256 = ConversionCache.toHex(digest.digest());
+            crc = String.format("%08x", checksum.getValue());
+        }
+    }
+    
+    /**
+     * Creates the checksum, CRC32C if the runtime has it.
+     * @return The checksum.
+     */
+    private static Checksum newChecksum() {
+        
+        // let's try
+        try {
+            
+            // look for it
+            return (Checksum) Class.forName(CRC32C).getConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException e) {
+            
+            // not there, fall back
+            return new CRC32();
+        }
+        catch (LinkageError e) {
+            
+            // not there, fall back
+            return new CRC32();
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Compression.java</b>: describes the optional compression applied  *
+ * to the input before it is encoded.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.Deflater;
+
+/**
+ * Describes the optional compression applied to the input before it is
+ * encoded. The compressed stream can be raw deflate, a gzip member or a
+ * zlib stream, which PHP reads with <code>gzinflate</code>,
+ * <code>gzdecode</code> and <code>gzuncompress</code>. The compression
+ * itself is done by {@link DeflateChannel}, in parallel. An adaptive
+ * compression samples every file first, see {@link CompressionAdvisor},
+ * and leaves already compressed files alone. Instances are immutable, and
+ * the one used by default is chosen with the
+ * <code>translate64.compression</code> system property or with
+ * {@link #setDefault(Compression)}.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public final class Compression {
+
+    /**
+     * System property holding the name of the default compression.
+     */
+    public static final String PROPERTY = "translate64.compression";
+    
+    /**
+     * No compression, the input is encoded as it is.
+     */
+    public static final Compression NONE = new Compression("none", Deflater.DEFAULT_COMPRESSION, false);
+    
+    /**
+     * Raw deflate, for <code>gzinflate</code>.
+     */
+    public static final Compression DEFLATE = new Compression("deflate", Deflater.DEFAULT_COMPRESSION, false);
+    
+    /**
+     * A gzip member, for <code>gzdecode</code>.
+     */
+    public static final Compression GZIP = new Compression("gzip", Deflater.DEFAULT_COMPRESSION, false);
+    
+    /**
+     * A zlib stream, for <code>gzuncompress</code>.
+     */
+    public static final Compression ZLIB = new Compression("zlib", Deflater.DEFAULT_COMPRESSION, false);
+    
+    /**
+     * An adaptive gzip member. Files that would not shrink are encoded as
+     * they are, which readers can tell by the missing gzip magic bytes.
+     */
+    public static final Compression AUTO = new Compression("gzip", Deflater.DEFAULT_COMPRESSION, true);
+    
+    // the default compression, chosen on first use
+    private static volatile Compression current;
+    
+    // the name of the stream format
+    private final String name;
+    
+    // the level
+    private final int level;
+    
+    // whether every file is sampled first
+    private final boolean adaptive;
+    
+    /**
+     * Constructor method.
+     * @param name The name of the stream format.
+     * @param level The level.
+     * @param adaptive Whether every file is sampled first.
+     */
+    private Compression(String name, int level, boolean adaptive) {
+        
+        // set the values
+        this.name = name;
+        this.level = level;
+        this.adaptive = adaptive;
+    }
+    
+    /**
+     * Gets the default compression. Unless one was set, it is the one named
+     * by the <code>translate64.compression</code> system property, or else
+     * none.
+     * @return The compression.
+     */
+    public static Compression getDefault() {
+        
+        // get the current one
+        Compression compression = current;
+        
+        // check if it was chosen already
+        if (compression == null) {
+            
+            // check the system property
+            String value = System.getProperty(PROPERTY);
+            compression = (value == null) ? null : forName(value.trim());
+            
+            // fall back to none
+            if (compression == null) {
+                compression = NONE;
+            }
+            
+            // keep it
+            current = compression;
+        }
+        
+        // return it
+        return compression;
+    }
+    
+    /**
+     * Sets the default compression.
+     * @param compression The compression, or <code>null</code> to choose
+     * it again from the system property.
+     */
+    public static void setDefault(Compression compression) {
+        
+        // set the value
+        current = compression;
+    }
+    
+    /**
+     * Gets a compression by its name.
+     * @param name The name, <code>none</code>, <code>deflate</code>,
+     * <code>gzip</code>, <code>zlib</code> or <code>auto</code>.
+     * @return The compression, or <code>null</code> if there is no
+     * compression with such name.
+     */
+    public static Compression forName(String name) {
+        
+        // check the names
+        switch (name.toLowerCase()) {
+            case "none":
+                return NONE;
+            case "deflate":
+                return DEFLATE;
+            case "gzip":
+                return GZIP;
+            case "zlib":
+                return ZLIB;
+            case "auto":
+                return AUTO;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Gets a copy of this compression with another level. There is no
+     * level without compression, so {@link #NONE} is returned as it is.
+     * @param level The level, from 0 to 9, or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     * @return The new compression.
+     */
+    public Compression withLevel(int level) {
+        
+        // check the level
+        if ((level < Deflater.DEFAULT_COMPRESSION) || (level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("The level must be between 0 and 9.");
+        }
+        
+        // create it
+        return isEnabled() ? new Compression(name, level, adaptive) : this;
+    }
+    
+    /**
+     * Gets a copy of this compression that samples every file first, or
+     * that always compresses. There is nothing to adapt without
+     * compression, so {@link #NONE} is returned as it is.
+     * @param adaptive Whether every file is sampled first.
+     * @return The new compression.
+     */
+    public Compression withAdaptive(boolean adaptive) {
+        
+        // create it
+        return isEnabled() ? new Compression(name, level, adaptive) : this;
+    }
+    
+    /**
+     * Gets the name of the stream format.
+     * @return The name, <code>none</code>, <code>deflate</code>,
+     * <code>gzip</code> or <code>zlib</code>.
+     */
+    public String getName() {
+        
+        // return it
+        return name;
+    }
+    
+    /**
+     * Gets the level.
+     * @return The level, from 0 to 9, or
+     * {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public int getLevel() {
+        
+        // return it
+        return level;
+    }
+    
+    /**
+     * Checks if every file is sampled first.
+     * @return <code>true</code> if it is adaptive.
+     */
+    public boolean isAdaptive() {
+        
+        // return it
+        return adaptive;
+    }
+    
+    /**
+     * Checks if the input is compressed at all.
+     * @return <code>true</code> if it is, or <code>false</code> for
+     * {@link #NONE}.
+     */
+    public boolean isEnabled() {
+        
+        // check it
+        return !name.equals(NONE.name);
+    }
+    
+    /**
+     * Chooses the compression of a file. An adaptive compression samples
+     * the file, and may leave it uncompressed or pick another level; any
+     * other one is returned as it is.
+     * @param file The file.
+     * @return The compression of the file, never adaptive.
+     * @throws IOException An IO error while sampling the file.
+     */
+    public Compression choose(File file) throws IOException {
+        
+        // check if there is anything to choose
+        return adaptive ? CompressionAdvisor.choose(file, this) : this;
+    }
+    
+    /**
+     * Wraps a channel, so everything read through it is compressed.
+     * @param channel The channel.
+     * @param listener The progress listener, which gets the uncompressed
+     * bytes, or <code>null</code>. It is only used when there is
+     * compression.
+     * @return The compressed channel, or the channel itself if there is no
+     * compression. Channels cannot be sampled, so they are always
+     * compressed, even by an adaptive compression.
+     */
+    public ReadableByteChannel compress(ReadableByteChannel channel, ProgressListener listener) {
+        
+        // check if there is anything to do
+        return isEnabled() ? new DeflateChannel(channel, this, listener) : channel;
+    }
+    
+    /**
+     * Gets the name, with the level and whether it is adaptive.
+     * @return The description.
+     */
+    @Override
+    public String toString() {
+        
+        // describe it
+        return name + (level == Deflater.DEFAULT_COMPRESSION ? "" : " -" + level) + (adaptive ? " (adaptive)" : "");
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>CompressionAdvisor.java</b>: decides, from a few samples of a file,
+ * * whether compressing it is worth it.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+/**
+ * Decides, from a few samples of a file, whether compressing it is worth
+ * it. Files whose first bytes match a compressed format, such as JPEG,
+ * PNG or ZIP, are encoded as they are. Otherwise, some blocks spread over
+ * the file are read, and the order-0 entropy of their bytes, in bits per
+ * byte, is estimated: nearly random bytes are not compressed, dense
+ * binaries are compressed with the fastest level, and text, SVG or
+ * JavaScript get the requested level. Only a few kilobytes are read, so
+ * the decision costs far less than deflating a file that does not shrink.
+ * This class does not need to be instantiated.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class CompressionAdvisor {
+
+    /**
+     * Entropy, in bits per byte, from which a file is not compressed.
+     */
+    public static final double INCOMPRESSIBLE = 7.5;
+    
+    /**
+     * Entropy, in bits per byte, from which a file is compressed with the
+     * fastest level.
+     */
+    public static final double DENSE = 6.5;
+    
+    /**
+     * Size, in bytes, under which a file is not compressed, since the
+     * headers would eat what is saved.
+     */
+    public static final long MINIMUM_SIZE = 128;
+    
+    // the number of samples
+    private static final int SAMPLES = 4;
+    
+    // the size of every sample
+    private static final int SAMPLE_SIZE = 4096;
+    
+    // the signatures of compressed formats, at the start of the file
+    private static final byte[][] SIGNATURES = {
+        
+        // JPEG, PNG and GIF
+        { (byte) 0xff, (byte) 0xd8, (byte) 0xff },
+        { (byte) 0x89, 'P', 'N', 'G' },
+        { 'G', 'I', 'F', '8' },
+        
+        // ZIP, which includes JAR, DOCX and EPUB, gzip,
+        // bzip2, xz, 7-Zip, zstd and RAR
+        { 'P', 'K', 0x03, 0x04 },
+        { 0x1f, (byte) 0x8b },
+        { 'B', 'Z', 'h' },
+        { (byte) 0xfd, '7', 'z', 'X', 'Z', 0x00 },
+        { '7', 'z', (byte) 0xbc, (byte) 0xaf, 0x27, 0x1c },
+        { 0x28, (byte) 0xb5, 0x2f, (byte) 0xfd },
+        { 'R', 'a', 'r', '!' },
+        
+        // MP3, Ogg, FLAC and web fonts
+        { 'I', 'D', '3' },
+        { 'O', 'g', 'g', 'S' },
+        { 'f', 'L', 'a', 'C' },
+        { 'w', 'O', 'F', 'F' },
+        { 'w', 'O', 'F', '2' }
+    };
+    
+    /**
+     * Private constructor, no instances.
+     */
+    private CompressionAdvisor() {
+    }
+    
+    /**
+     * Chooses the compression of a file.
+     * @param file The file.
+     * @param compression The requested compression.
+     * @return {@link Compression#NONE} if the file would not shrink, or
+     * the requested compression, not adaptive, with the level that suits
+     * the file.
+     * @throws IOException An IO error while sampling the file.
+     */
+    public static Compression choose(File file, Compression compression) throws IOException {
+        
+        // tiny files are not worth it
+        if (!compression.isEnabled() || (file.length() < MINIMUM_SIZE)) {
+            return Compression.NONE;
+        }
+        
+        // get the samples, the first one is the start of the file
+        byte[][] samples = sample(file);
+        
+        // compressed formats do not shrink any further
+        if (isCompressed(samples[0])) {
+            return Compression.NONE;
+        }
+        
+        // estimate the entropy
+        double entropy = getEntropy(samples);
+        
+        // nearly random bytes do not shrink either
+        if (entropy >= INCOMPRESSIBLE) {
+            return Compression.NONE;
+        }
+        
+        // dense bytes only shrink a little,
+        // so do not spend much time on them
+        Compression chosen = compression.withAdaptive(false);
+        return (entropy >= DENSE) ? chosen.withLevel(Deflater.BEST_SPEED) : chosen;
+    }
+    
+    /**
+     * Checks if the bytes start with the signature of a compressed format.
+     * @param bytes The first bytes of a file.
+     * @return <code>true</code> if they do.
+     */
+    public static boolean isCompressed(byte[] bytes) {
+        
+        // check every signature
+        for (byte[] signature : SIGNATURES) {
+            if (startsWith(bytes, 0, signature)) {
+                return true;
+            }
+        }
+        
+        // WebP, which is a RIFF container, and the
+        // MP4 family, whose box type comes at offset 4
+        return (startsWith(bytes, 0, ascii("RIFF")) && startsWith(bytes, 8, ascii("WEBP")))
+                || startsWith(bytes, 4, ascii("ftyp"));
+    }
+    
+    /**
+     * Estimates the order-0 entropy of the bytes of all samples.
+     * @param samples The samples.
+     * @return The entropy, in bits per byte, from 0 to 8.
+     */
+    public static double getEntropy(byte[]... samples) {
+        
+        // count every byte value
+        long[] counts = new long[256];
+        long total = 0;
+        for (byte[] sample : samples) {
+            for (byte b : sample) {
+                counts[b & 0xff]++;
+            }
+            total = total + sample.length;
+        }
+        
+        // nothing to measure
+        if (total == 0) {
+            return 0;
+        }
+        
+        // add up every value
+        double entropy = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                double probability = (double) count / total;
+                entropy = entropy - probability * Math.log(probability);
+            }
+        }
+        
+        // return it in bits
+        return entropy / Math.log(2);
+    }
+    
+    /**
+     * Reads the samples of a file, evenly spread from its start to its
+     * end. Small files are read whole, as a single sample.
+     * @param file The file.
+     * @return The samples.
+     * @throws IOException An IO error with the file.
+     */
+    private static byte[][] sample(File file) throws IOException {
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // let's try
+        try {
+            
+            // get the channel and its length
+            FileChannel channel = istream.getChannel();
+            long length = channel.size();
+            
+            // check if it is small enough to be read whole
+            if (length <= (long) SAMPLES * SAMPLE_SIZE) {
+                return new byte[][] { read(channel, 0, (int) length) };
+            }
+            
+            // read the samples
+            byte[][] samples = new byte[SAMPLES][];
+            for (int i = 0; i < SAMPLES; i++) {
+                samples[i] = read(channel, i * ((length - SAMPLE_SIZE) / (SAMPLES - 1)), SAMPLE_SIZE);
+            }
+            
+            // return them
+            return samples;
+        }
+        finally {
+            
+            // close the input stream
+            istream.close();
+        }
+    }
+    
+    /**
+     * Reads bytes at a position of a channel.
+     * @param channel The channel.
+     * @param position The position.
+     * @param size The number of bytes.
+     * @return The bytes, fewer if the channel ends before.
+     * @throws IOException An IO error with the channel.
+     */
+    private static byte[] read(FileChannel channel, long position, int size) throws IOException {
+        
+        // read until the buffer is full or the channel ends
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) <= 0) {
+                break;
+            }
+        }
+        
+        // return what was read
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Checks if the bytes contain a signature at an offset.
+     * @param bytes The bytes.
+     * @param offset The offset.
+     * @param signature The signature.
+     * @return <code>true</code> if they do.
+     */
+    private static boolean startsWith(byte[] bytes, int offset, byte[] signature) {
+        
+        // check the length
+        if (bytes.length < offset + signature.length) {
+            return false;
+        }
+        
+        // check every byte
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        
+        // they match
+        return true;
+    }
+    
+    /**
+     * Gets the bytes of an ASCII string.
+     * @param text The string.
+     * @return The bytes.
+     */
+    private static byte[] ascii(String text) {
+        
+        // convert it
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,481 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ConversionCache.java</b>: provides an in-memory cache of Base64
+ * strings, bounded by their total size.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provides an in-memory cache of Base64 strings. Files are identified by
+ * their canonical path, size and modification time or, in content hash
+ * mode, by the SHA-256 digest of their contents. The least recently used
+ * strings are evicted when the total size of the cached output goes
+ * beyond the capacity, no matter how many entries there are. Converting
+ * an unchanged file again just returns the cached string. This class is
+ * thread safe.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class ConversionCache {
+
+    /**
+     * Default capacity, in bytes of Base64 output. It can be changed with
+     * the <code>translate64.cache.size</code> system property.
+     */
+    public static final long DEFAULT_CAPACITY = 64L * 1024 * 1024;
+    
+    // the shared cache
+    private static final ConversionCache DEFAULT = new ConversionCache(
+            Long.getLong("translate64.cache.size", DEFAULT_CAPACITY),
+            Boolean.getBoolean("translate64.cache.hash"));
+    
+    // the capacity
+    private final long capacity;
+    
+    // whether files are identified by their contents
+    private final boolean contentHash;
+    
+    // the entries, in access order
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<Key, String>(16, 0.75f, true);
+    
+    // the total size of the cached output
+    private long size = 0;
+    
+    // the counters
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    
+    /**
+     * Constructor method.
+     * @param capacity The maximum total size of the cached output, in
+     * bytes. Each Base64 character counts as one byte.
+     * @param contentHash Whether files are identified by the SHA-256 digest
+     * of their contents instead of their path, size and modification time.
+     * This finds copies and touched files, at the cost of reading the file
+     * on every lookup.
+     */
+    public ConversionCache(long capacity, boolean contentHash) {
+        
+        // set the values
+        this.capacity = capacity;
+        this.contentHash = contentHash;
+    }
+    
+    /**
+     * Gets the shared cache. Its capacity is {@link #DEFAULT_CAPACITY},
+     * unless the <code>translate64.cache.size</code> system property says
+     * otherwise, and the content hash mode is enabled by the
+     * <code>translate64.cache.hash</code> system property.
+     * @return The shared cache.
+     */
+    public static ConversionCache getDefault() {
+        
+        // return the shared cache
+        return DEFAULT;
+    }
+    
+    /**
+     * Converts the file to a Base64 string, using the cache.
+     * @param file The file.
+     * @return The string.
+     * @throws IOException An IO error with the file.
+     */
+    public String convert(File file) throws IOException {
+        
+        // call the proper method
+        return convert(file, false, null);
+    }
+    
+    /**
+     * Converts the file to a Base64 string, using the cache. On a miss,
+     * the file is taken from the shared {@link DiskCache}, if configured,
+     * or converted with
+     * {@link TranslateUtils#convertFile(File, boolean, ProgressListener)},
+     * and the result is cached. On a hit, the whole file is reported to
+     * the listener at once.
+     * @param file The file.
+     * @param parallel Whether large files should be encoded in parallel.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The string.
+     * @throws IOException An IO error with the file, or the conversion was
+     * cancelled.
+     */
+    public String convert(File file, boolean parallel, ProgressListener listener) throws IOException {
+        
+        // only plain standard output is cached
+        if (!DiskCache.isCacheable()) {
+            return TranslateUtils.convertFile(file, parallel, listener);
+        }
+        
+        // get the key
+        Key key = getKey(file);
+        
+        // look it up
+        String output = get(key);
+        
+        // check if it was there
+        if (output != null) {
+            
+            // count the hit
+            hits.incrementAndGet();
+            
+            // report the whole file
+            TranslateUtils.report(listener, file.length());
+            
+            // return it
+            return output;
+        }
+        
+        // count the miss
+        misses.incrementAndGet();
+        
+        // get the disk cache, if any
+        DiskCache disk = DiskCache.getDefault();
+        
+        // convert the file, through the disk cache if there is one
+        output = (disk != null) ? disk.convertFile(file, listener) : TranslateUtils.convertFile(file, parallel, listener);
+        
+        // keep it
+        put(key, output);
+        
+        // return it
+        return output;
+    }
+    
+    /**
+     * Looks up a cached string for the file, without converting it.
+     * @param file The file.
+     * @return The string, or <code>null</code> if it is not cached.
+     * @throws IOException An IO error with the file.
+     */
+    public String get(File file) throws IOException {
+        
+        // only plain standard output is cached
+        if (!DiskCache.isCacheable()) {
+            return null;
+        }
+        
+        // look it up
+        String output = get(getKey(file));
+        
+        // count it
+        if (output != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        
+        // return it
+        return output;
+    }
+    
+    /**
+     * Caches the string for the file.
+     * @param file The file.
+     * @param output The string.
+     * @throws IOException An IO error with the file.
+     */
+    public void put(File file, String output) throws IOException {
+        
+        // only plain standard output is cached
+        if (DiskCache.isCacheable()) {
+            put(getKey(file), output);
+        }
+    }
+    
+    /**
+     * Gets the number of hits.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        
+        // return the counter
+        return hits.get();
+    }
+    
+    /**
+     * Gets the number of misses.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        
+        // return the counter
+        return misses.get();
+    }
+    
+    /**
+     * Gets the total size of the cached output.
+     * @return The size, in bytes.
+     */
+    public synchronized long getSize() {
+        
+        // return the size
+        return size;
+    }
+    
+    /**
+     * Gets the capacity.
+     * @return The capacity, in bytes.
+     */
+    public long getCapacity() {
+        
+        // return the capacity
+        return capacity;
+    }
+    
+    /**
+     * Removes every entry. The counters are kept.
+     */
+    public synchronized void clear() {
+        
+        // remove everything
+        entries.clear();
+        size = 0;
+    }
+    
+    /**
+     * Looks up a key, marking it as recently used.
+     * @param key The key.
+     * @return The string, or <code>null</code> if it is not cached.
+     */
+    private synchronized String get(Key key) {
+        
+        // look it up
+        return entries.get(key);
+    }
+    
+    /**
+     * Caches a string, evicting the least recently used ones until
+     * everything fits. Strings larger than the capacity are not cached.
+     * @param key The key.
+     * @param output The string.
+     */
+    private synchronized void put(Key key, String output) {
+        
+        // check if it fits at all
+        if (output.length() > capacity) {
+            return;
+        }
+        
+        // add it, replacing any previous string
+        String previous = entries.put(key, output);
+        size = size + output.length();
+        if (previous != null) {
+            size = size - previous.length();
+        }
+        
+        // evict the least recently used ones
+        Iterator<Map.Entry<Key, String>> iterator = entries.entrySet().iterator();
+        while ((size > capacity) && iterator.hasNext()) {
+            size = size - iterator.next().getValue().length();
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * Gets the key of a file.
+     * @param file The file.
+     * @return The key.
+     * @throws IOException An IO error with the file.
+     */
+    private Key getKey(File file) throws IOException {
+        
+        // check the mode
+        if (contentHash) {
+            
+            // identify it by its contents
+            return new Key(digest(file), file.length(), 0);
+        }
+        else {
+            
+            // identify it by where it is and when it changed
+            return new Key(file.getCanonicalPath(), file.length(), file.lastModified());
+        }
+    }
+    
+    /**
+     * Computes the SHA-256 digest of a file.
+     * @param file The file.
+     * @return The digest, in hexadecimal.
+     * @throws IOException An IO error with the file.
+     */
+    static String digest(File file) throws IOException {
+        
+        // the digest
+        MessageDigest digest = DiskCache.newDigest();
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // get a buffer from the pool
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquire();
+        
+        // let's try
+        try {
+            
+            // read every block
+            FileChannel channel = istream.getChannel();
+            while (channel.read(buffer) >= 0) {
+                
+                // feed the digest
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        finally {
+            
+            // give the buffer back
+            pool.release(buffer);
+            
+            // close the input stream
+            istream.close();
+        }
+        
+        // return the digest
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Converts bytes to hexadecimal.
+     * @param bytes The bytes.
+     * @return The hexadecimal string.
+     */
+    static String toHex(byte[] bytes) {
+        
+        // the digits
+        final String DIGITS = "0123456789abcdef";
+        
+        // convert every byte
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(DIGITS.charAt((b >> 4) & 0xf)).append(DIGITS.charAt(b & 0xf));
+        }
+        
+        // return the string
+        return builder.toString();
+    }
+    
+    /**
+     * Identifies a file in the cache.
+     */
+    private static class Key {
+        
+        // the canonical path or the digest
+        private final String id;
+        
+        // the size
+        private final long length;
+        
+        // the modification time, 0 for digests
+        private final long modified;
+        
+        /**
+         * Constructor method.
+         * @param id The canonical path or the digest.
+         * @param length The size.
+         * @param modified The modification time.
+         */
+        Key(String id, long length, long modified) {
+            
+            // set the values
+            this.id = id;
+            this.length = length;
+            this.modified = modified;
+        }
+        
+        /**
+         * Checks if two keys are equal.
+         * @param object The other key.
+         * @return <code>true</code> if they are equal, or <code>false</code>
+         * otherwise.
+         */
+        @Override
+        public boolean equals(Object object) {
+            
+            // check the type
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            
+            // compare the fields
+            Key other = (Key) object;
+            return id.equals(other.id) && (length == other.length) && (modified == other.modified);
+        }
+        
+        /**
+         * Computes the hash code.
+         * @return The hash code.
+         */
+        @Override
+        public int hashCode() {
+            
+            // combine the fields
+            int hash = id.hashCode();
+            hash = 31 * hash + (int) (length ^ (length >>> 32));
+            hash = 31 * hash + (int) (modified ^ (modified >>> 32));
+            return hash;
+        }
+    }
+}
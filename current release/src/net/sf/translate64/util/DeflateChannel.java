@@ -0,0 +1,506 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DeflateChannel.java</b>: provides a readable channel that
+ * compresses  * another one, deflating its blocks in parallel.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.Deflater;
+
+/**
+ * Provides a readable channel that compresses another one, deflating its
+ * blocks in parallel, like <code>pigz</code> does. The input is read in
+ * blocks of {@link #BLOCK_SIZE} bytes, and each block is deflated on its
+ * own in the fork/join pool, primed with the last 32 KB of the block
+ * before it, so matches can still reach back across blocks. Every block
+ * ends with a sync flush, which leaves the stream at a byte boundary, so
+ * the compressed blocks are simply joined in order; an empty final block
+ * ends the stream. The reading thread only reads the input and keeps the
+ * gzip or zlib check value, which is cheap, so the compression runs on
+ * every core and the Base64 encoding behind it is not starved.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class DeflateChannel implements ReadableByteChannel {
+
+    /**
+     * Size, in bytes, of the blocks deflated by a single task.
+     */
+    public static final int BLOCK_SIZE = 128 * 1024;
+    
+    // size of the dictionary taken from the previous block
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    
+    // an empty final block with fixed codes
+    private static final byte[] FINAL_BLOCK = { 0x03, 0x00 };
+    
+    // the gzip header: magic, deflate, no flags,
+    // no time, no extra flags and unknown system
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, 0x08, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    
+    // the zlib headers: deflate with a 32 KB window, for the
+    // fastest, fast, default and best levels
+    private static final byte[][] ZLIB_HEADERS = {
+        { 0x78, 0x01 }, { 0x78, 0x5e }, { 0x78, (byte) 0x9c }, { 0x78, (byte) 0xda }
+    };
+    
+    // the wrapped channel
+    private final ReadableByteChannel channel;
+    
+    // the compression
+    private final Compression compression;
+    
+    // the progress listener
+    private final ProgressListener listener;
+    
+    // the header and the check value of the
+    // uncompressed bytes, if any
+    private final byte[] header;
+    private final Checksum check;
+    
+    // the maximum number of blocks being deflated
+    private final int inflight;
+    
+    // the blocks being deflated, in order
+    private final ArrayDeque<Future<ByteBuffer>> pending = new ArrayDeque<Future<ByteBuffer>>();
+    
+    // the last block read, the dictionary of the next one
+    private byte[] previous;
+    
+    // the compressed bytes being handed out
+    private ByteBuffer current;
+    
+    // the number of uncompressed bytes read
+    private long length = 0;
+    
+    // the state
+    private boolean started = false;
+    private boolean exhausted = false;
+    private boolean finished = false;
+    private boolean open = true;
+    
+    /**
+     * Constructor method.
+     * @param channel The wrapped channel, with the uncompressed bytes.
+     * @param compression The compression. It must be enabled.
+     * @param listener The progress listener, which gets the uncompressed
+     * bytes, or <code>null</code>.
+     */
+    public DeflateChannel(ReadableByteChannel channel, Compression compression, ProgressListener listener) {
+        
+        // check the compression
+        if (!compression.isEnabled()) {
+            throw new IllegalArgumentException("There is no compression to apply.");
+        }
+        
+        // set the values
+        this.channel = channel;
+        this.compression = compression;
+        this.listener = listener;
+        this.inflight = 2 * Runtime.getRuntime().availableProcessors();
+        
+        // gzip and zlib have a header and end with a check value
+        switch (compression.getName()) {
+            case "gzip":
+                this.header = GZIP_HEADER;
+                this.check = new CRC32();
+                break;
+            case "zlib":
+                this.header = ZLIB_HEADERS[getLevelFlag(compression.getLevel())];
+                this.check = new Adler32();
+                break;
+            default:
+                this.header = null;
+                this.check = null;
+        }
+    }
+    
+    /**
+     * Reads compressed bytes into the buffer.
+     * @param buffer The buffer.
+     * @return The number of bytes read, or -1 at the end of the stream.
+     * @throws IOException An IO error with the wrapped channel, or the
+     * conversion was cancelled.
+     */
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        
+        // check if it is open
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+        
+        // the number of bytes read
+        int count = 0;
+        
+        // fill the buffer
+        while (buffer.hasRemaining()) {
+            
+            // get more compressed bytes, if needed
+            if ((current == null) || !current.hasRemaining()) {
+                
+                // check if there are any left
+                current = next();
+                if (current == null) {
+                    break;
+                }
+            }
+            
+            // copy as much as fits
+            int size = Math.min(current.remaining(), buffer.remaining());
+            ByteBuffer slice = current.duplicate();
+            slice.limit(slice.position() + size);
+            buffer.put(slice);
+            current.position(current.position() + size);
+            count = count + size;
+        }
+        
+        // return the count, or the end of the stream
+        return ((count == 0) && (current == null)) ? -1 : count;
+    }
+    
+    /**
+     * Gets the number of uncompressed bytes read so far.
+     * @return The number of bytes.
+     */
+    public long getInputLength() {
+        
+        // return it
+        return length;
+    }
+    
+    /**
+     * Checks if the channel is open.
+     * @return <code>true</code> if it is open, or <code>false</code>
+     * otherwise.
+     */
+    @Override
+    public boolean isOpen() {
+        
+        // return the state
+        return open;
+    }
+    
+    /**
+     * Closes the channel, dropping the blocks being deflated, and the
+     * wrapped channel.
+     * @throws IOException An IO error with the wrapped channel.
+     */
+    @Override
+    public void close() throws IOException {
+        
+        // no more reads
+        open = false;
+        
+        // drop the pending blocks
+        for (Future<ByteBuffer> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        
+        // close the wrapped channel
+        channel.close();
+    }
+    
+    /**
+     * Gets the next piece of the compressed stream.
+     * @return The piece, or <code>null</code> at the end of the stream.
+     * @throws IOException An IO error with the wrapped channel, or the
+     * conversion was cancelled.
+     */
+    private ByteBuffer next() throws IOException {
+        
+        // the header comes first
+        if (!started) {
+            
+            // no more headers
+            started = true;
+            
+            // check if there is one
+            if (header != null) {
+                return ByteBuffer.wrap(header);
+            }
+        }
+        
+        // keep the pool busy
+        fill();
+        
+        // check if there are blocks left
+        if (!pending.isEmpty()) {
+            
+            // wait for the oldest one
+            return get(pending.poll());
+        }
+        
+        // check if the trailer was written
+        if (finished) {
+            return null;
+        }
+        
+        // this is the end
+        finished = true;
+        return getTrailer();
+    }
+    
+    /**
+     * Reads blocks and hands them to the pool, until enough of them are
+     * being deflated or the input ends.
+     * @throws IOException An IO error with the wrapped channel, or the
+     * conversion was cancelled.
+     */
+    private void fill() throws IOException {
+        
+        // read until there are enough blocks
+        while (!exhausted && (pending.size() < inflight)) {
+            
+            // check if we should stop
+            TranslateUtils.report(listener, 0);
+            
+            // read a whole block, only the last one may be partial
+            final byte[] block = new byte[BLOCK_SIZE];
+            final int count = TranslateUtils.readBlock(channel, ByteBuffer.wrap(block));
+            
+            // check for the end
+            if (count == 0) {
+                exhausted = true;
+                break;
+            }
+            
+            // update the check value and the length
+            if (check != null) {
+                check.update(block, 0, count);
+            }
+            length = length + count;
+            
+            // deflate it in the pool
+            final byte[] dictionary = previous;
+            final int level = compression.getLevel();
+            pending.add(ParallelConverter.getPool().submit(new Callable<ByteBuffer>() {
+
+                @Override
+                public ByteBuffer call() {
+                    
+                    // compress it
+                    return deflate(block, count, dictionary, level);
+                }
+            }));
+            
+            // it primes the next one
+            previous = block;
+            
+            // report the progress
+            TranslateUtils.report(listener, count);
+            
+            // a partial block is the last one
+            if (count < BLOCK_SIZE) {
+                exhausted = true;
+            }
+        }
+    }
+    
+    /**
+     * Waits for a block to be deflated.
+     * @param future The block.
+     * @return The compressed block.
+     * @throws IOException The compression failed or was interrupted.
+     */
+    private static ByteBuffer get(Future<ByteBuffer> future) throws IOException {
+        
+        // let's try
+        try {
+            
+            // wait for it
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            
+            // the compression failed
+            throw new IOException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            
+            // keep the interruption
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The conversion was interrupted.");
+        }
+    }
+    
+    /**
+     * Deflates a block, ending it with a sync flush.
+     * @param block The block.
+     * @param count The number of bytes in the block.
+     * @param dictionary The previous block, or <code>null</code> for the
+     * first one.
+     * @param level The level.
+     * @return The compressed block.
+     */
+    private static ByteBuffer deflate(byte[] block, int count, byte[] dictionary, int level) {
+        
+        // raw deflate, the wrapper is written here
+        Deflater deflater = new Deflater(level, true);
+        
+        // let's try
+        try {
+            
+            // the previous block is always a whole one
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            
+            // set the input
+            deflater.setInput(block, 0, count);
+            
+            // the output, grown if incompressible
+            byte[] output = new byte[count / 2 + 64];
+            int size = 0;
+            
+            // deflate until the flush leaves room to spare
+            while (true) {
+                
+                // grow the output, if needed
+                if (size == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                
+                // deflate what fits
+                size = size + deflater.deflate(output, size, output.length - size, Deflater.SYNC_FLUSH);
+                
+                // check if it is done
+                if (size < output.length) {
+                    break;
+                }
+            }
+            
+            // return it
+            return ByteBuffer.wrap(output, 0, size);
+        }
+        finally {
+            
+            // release the native memory
+            deflater.end();
+        }
+    }
+    
+    /**
+     * Gets the end of the stream, the final block and the check value and
+     * length of the wrapper, if any.
+     * @return The trailer.
+     */
+    private ByteBuffer getTrailer() {
+        
+        // the final block and up to 8 more bytes
+        ByteBuffer trailer = ByteBuffer.allocate(FINAL_BLOCK.length + 8);
+        trailer.put(FINAL_BLOCK);
+        
+        // check the wrapper
+        if (check instanceof CRC32) {
+            
+            // the CRC32 and the length, little endian
+            putLittleEndian(trailer, check.getValue());
+            putLittleEndian(trailer, length);
+        }
+        else if (check instanceof Adler32) {
+            
+            // the Adler32, big endian
+            trailer.putInt((int) check.getValue());
+        }
+        
+        // return it
+        trailer.flip();
+        return trailer;
+    }
+    
+    /**
+     * Gets the level flag of the zlib header.
+     * @param level The level.
+     * @return The flag, from 0, the fastest, to 3, the best.
+     */
+    private static int getLevelFlag(int level) {
+        
+        // check the level
+        if (level == Deflater.DEFAULT_COMPRESSION) {
+            return 2;
+        }
+        if (level < 2) {
+            return 0;
+        }
+        if (level < 6) {
+            return 1;
+        }
+        return (level == 6) ? 2 : 3;
+    }
+    
+    /**
+     * Puts the low 32 bits of a value, little endian.
+     * @param buffer The buffer.
+     * @param value The value.
+     */
+    private static void putLittleEndian(ByteBuffer buffer, long value) {
+        
+        // every byte
+        for (int i = 0; i < 4; i++) {
+            buffer.put((byte) (value >>> (8 * i)));
+        }
+    }
+}
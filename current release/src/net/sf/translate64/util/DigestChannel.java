@@ -0,0 +1,165 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DigestChannel.java</b>: provides a readable channel that feeds a
+ * message digest, or checksums, with everything read through it.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+
+/**
+ * Provides a readable channel that feeds a message digest, or checksums,
+ * with everything read through it, so a file can be hashed in the same
+ * pass that encodes it. The bytes are read from the buffer the caller
+ * provides, no copies are made.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+class DigestChannel implements ReadableByteChannel {
+
+    // the wrapped channel
+    private final ReadableByteChannel channel;
+    
+    // the digest, if any
+    private final MessageDigest digest;
+    
+    // the checksums, if any
+    private final Checksums checksums;
+    
+    /**
+     * Constructor method.
+     * @param channel The wrapped channel.
+     * @param digest The digest.
+     */
+    DigestChannel(ReadableByteChannel channel, MessageDigest digest) {
+        
+        // set the values
+        this.channel = channel;
+        this.digest = digest;
+        this.checksums = null;
+    }
+    
+    /**
+     * Constructor method.
+     * @param channel The wrapped channel.
+     * @param checksums The checksums.
+     */
+    DigestChannel(ReadableByteChannel channel, Checksums checksums) {
+        
+        // set the values
+        this.channel = channel;
+        this.digest = null;
+        this.checksums = checksums;
+    }
+    
+    /**
+     * Reads bytes into the buffer, feeding them to the digest or the
+     * checksums.
+     * @param buffer The buffer.
+     * @return The number of bytes read, or -1 at the end of the channel.
+     * @throws IOException An IO error with the wrapped channel.
+     */
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+        
+        // where the new bytes start
+        int start = buffer.position();
+        
+        // read them
+        int count = channel.read(buffer);
+        
+        // check if there is something new
+        if (count > 0) {
+            
+            // feed a view of just the new bytes
+            ByteBuffer view = buffer.duplicate();
+            view.limit(buffer.position());
+            view.position(start);
+            
+            // and feed it
+            if (digest != null) {
+                digest.update(view);
+            }
+            else {
+                checksums.update(view);
+            }
+        }
+        
+        // return the count
+        return count;
+    }
+    
+    /**
+     * Checks if the wrapped channel is open.
+     * @return <code>true</code> if it is open, or <code>false</code>
+     * otherwise.
+     */
+    @Override
+    public boolean isOpen() {
+        
+        // ask the wrapped channel
+        return channel.isOpen();
+    }
+    
+    /**
+     * Closes the wrapped channel.
+     * @throws IOException An IO error with the wrapped channel.
+     */
+    @Override
+    public void close() throws IOException {
+        
+        // close the wrapped channel
+        channel.close();
+    }
+}
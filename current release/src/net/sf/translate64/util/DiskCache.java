@@ -0,0 +1,853 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DiskCache.java</b>: provides a persistent cache of Base64 outputs,
+ * shared by every run and process using the same directory.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provides a persistent cache of Base64 outputs, shared by every run and
+ * process using the same directory. Outputs are stored as
+ * <code>objects/&lt;sha256&gt;.b64</code>, named after the SHA-256 digest
+ * of the input, and a small <code>index</code> file maps the canonical
+ * path, size and modification time of each input to its digest. An
+ * unchanged file is therefore found without being read at all, and a
+ * file with the same contents under another identity is only hashed.
+ * <p>
+ * Outputs are written to temporary files and atomically renamed, so other
+ * processes never see a partial output. Changes to the index and
+ * evictions happen while holding a lock on the <code>lock</code> file. The
+ * least recently used outputs are evicted once their total size goes
+ * beyond the capacity.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class DiskCache {
+
+    /**
+     * Default capacity, in bytes. It can be changed with the
+     * <code>translate64.cache.capacity</code> system property.
+     */
+    public static final long DEFAULT_CAPACITY = 1024L * 1024 * 1024;
+    
+    // extension of the outputs
+    private static final String EXTENSION = ".b64";
+    
+    // extension of the outputs being written
+    private static final String PARTIAL = ".part";
+    
+    // age of abandoned partial outputs, in milliseconds
+    private static final long ABANDONED = 24L * 60 * 60 * 1000;
+    
+    // file locks are per process, so threads of
+    // this process take turns on this monitor
+    private static final Object MONITOR = new Object();
+    
+    // the shared cache, if configured
+    private static DiskCache defaultCache;
+    
+    // whether the shared cache was configured
+    private static boolean configured = false;
+    
+    // the directories and files
+    private final File objects;
+    private final File indexFile;
+    private final File lockFile;
+    
+    // the capacity
+    private final long capacity;
+    
+    // the index, from file identity to digest
+    private final Map<String, String> index = new HashMap<String, String>();
+    
+    // approximate total size of the outputs
+    private final AtomicLong size = new AtomicLong(0);
+    
+    // the counters
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    
+    /**
+     * Constructor method. The directory is created if needed.
+     * @param directory The cache directory.
+     * @param capacity The maximum total size of the outputs, in bytes.
+     * @throws IOException An IO error with the directory.
+     */
+    public DiskCache(File directory, long capacity) throws IOException {
+        
+        // set the values
+        this.objects = new File(directory, "objects");
+        this.indexFile = new File(directory, "index");
+        this.lockFile = new File(directory, "lock");
+        this.capacity = capacity;
+        
+        // create the directories
+        if (!objects.isDirectory() && !objects.mkdirs() && !objects.isDirectory()) {
+            throw new IOException("Could not create the cache directory " + objects.getPath());
+        }
+        
+        // load the index
+        loadIndex();
+        
+        // sum the outputs
+        long total = 0;
+        for (File object : listObjects()) {
+            total = total + object.length();
+        }
+        size.set(total);
+    }
+    
+    /**
+     * Gets the shared cache, configured by the
+     * <code>translate64.cache.dir</code> system property.
+     * @return The shared cache, or <code>null</code> if there is no cache
+     * directory or it could not be opened.
+     */
+    public static synchronized DiskCache getDefault() {
+        
+        // only try once
+        if (!configured) {
+            
+            // get the directory
+            configured = true;
+            String directory = System.getProperty("translate64.cache.dir");
+            
+            // check if there is one
+            if (directory != null) {
+                
+                // let's try
+                try {
+                    
+                    // open it
+                    defaultCache = new DiskCache(new File(directory),
+                            Long.getLong("translate64.cache.capacity", DEFAULT_CAPACITY));
+                }
+                catch (IOException e) {
+                    
+                    // no cache then
+                }
+            }
+        }
+        
+        // return the shared cache
+        return defaultCache;
+    }
+    
+    /**
+     * Gets the cached output of a file, converting and storing it first if
+     * needed. Unchanged files are found by their path, size and
+     * modification time, without being read. Other files are hashed first,
+     * so contents already cached under another identity, after a fresh
+     * checkout for instance, are not encoded again; only new contents are.
+     * @param file The file.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The output file inside the cache. It may be evicted by
+     * another process at any time.
+     * @throws IOException An IO error with the file or the cache, or the
+     * conversion was cancelled.
+     */
+    public File fetch(File file, ProgressListener listener) throws IOException {
+        
+        // get the identity
+        String identity = getIdentity(file);
+        
+        // look it up
+        File object = lookup(identity);
+        
+        // check if it is there
+        if (object != null) {
+            
+            // count the hit
+            hits.incrementAndGet();
+            
+            // report the whole file
+            TranslateUtils.report(listener, file.length());
+            
+            // return it
+            return object;
+        }
+        
+        // check if we should stop
+        TranslateUtils.report(listener, 0);
+        
+        // look the contents up
+        String hash = ConversionCache.digest(file);
+        object = getObject(hash);
+        if (object.isFile()) {
+            
+            // count the hit
+            hits.incrementAndGet();
+            
+            // mark it as recently used and remember
+            // the identity for the next time
+            object.setLastModified(System.currentTimeMillis());
+            record(identity, hash);
+            
+            // report the whole file
+            TranslateUtils.report(listener, file.length());
+            
+            // return it
+            return object;
+        }
+        
+        // count the miss
+        misses.incrementAndGet();
+        
+        // store it
+        return store(file, identity, listener);
+    }
+    
+    /**
+     * Converts the file to Base64 through the cache, writing the result to
+     * an output stream.
+     * @param file The file.
+     * @param output The output stream. It is not closed.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes written to the output stream.
+     * @throws IOException An IO error with the file, the cache or the
+     * stream, or the conversion was cancelled.
+     */
+    public long convertFile(File file, OutputStream output, ProgressListener listener) throws IOException {
+        
+        // only plain standard output is cached
+        if (!isCacheable()) {
+            return Base64Format.getDefault().getEncodedLength(TranslateUtils.convertFile(file, output, listener));
+        }
+        
+        // let's try
+        try {
+            
+            // copy the cached output
+            return copy(fetch(file, listener), output);
+        }
+        catch (FileNotFoundException e) {
+            
+            // evicted in the meantime, so
+            // forget it and store it again
+            forget(getIdentity(file));
+            return copy(fetch(file, listener), output);
+        }
+    }
+    
+    /**
+     * Converts the file to a Base64 string through the cache.
+     * @param file The file.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The string.
+     * @throws IOException An IO error with the file or the cache, or the
+     * conversion was cancelled.
+     */
+    public String convertFile(File file, ProgressListener listener) throws IOException {
+        
+        // only plain standard output is cached
+        if (!isCacheable()) {
+            return TranslateUtils.convertFile(file, false, listener);
+        }
+        
+        // check if it fits in a string
+        if (TranslateUtils.getEncodedLength(file.length()) > Integer.MAX_VALUE) {
+            throw new IOException("File " + file.getName() + " is too large to be converted to a string.");
+        }
+        
+        // let's try
+        try {
+            
+            // read the cached output
+            return read(fetch(file, listener));
+        }
+        catch (FileNotFoundException e) {
+            
+            // evicted in the meantime, so
+            // forget it and store it again
+            forget(getIdentity(file));
+            return read(fetch(file, listener));
+        }
+    }
+    
+    /**
+     * Gets the number of hits.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        
+        // return the counter
+        return hits.get();
+    }
+    
+    /**
+     * Gets the number of misses.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        
+        // return the counter
+        return misses.get();
+    }
+    
+    /**
+     * Looks up a file identity in the index.
+     * @param identity The identity.
+     * @return The output file, or <code>null</code> if it is not cached.
+     */
+    private File lookup(String identity) {
+        
+        // get the digest
+        String digest;
+        synchronized (index) {
+            digest = index.get(identity);
+        }
+        
+        // check if it is known
+        if (digest == null) {
+            return null;
+        }
+        
+        // check if the output is still there
+        File object = getObject(digest);
+        if (!object.isFile()) {
+            return null;
+        }
+        
+        // mark it as recently used
+        object.setLastModified(System.currentTimeMillis());
+        
+        // return it
+        return object;
+    }
+    
+    /**
+     * Forgets a file identity.
+     * @param identity The identity.
+     */
+    private void forget(String identity) {
+        
+        // remove it
+        synchronized (index) {
+            index.remove(identity);
+        }
+    }
+    
+    /**
+     * Converts a file and stores its output, hashing it again in the same
+     * pass, so the output is named after the contents actually encoded.
+     * @param file The file.
+     * @param identity The file identity.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The output file.
+     * @throws IOException An IO error with the file or the cache, or the
+     * conversion was cancelled.
+     */
+    private File store(File file, String identity, ProgressListener listener) throws IOException {
+        
+        // the digest
+        MessageDigest digest = newDigest();
+        
+        // the temporary output, in the same directory
+        // so it can be atomically renamed
+        File partial = File.createTempFile("object", PARTIAL, objects);
+        
+        // let's try
+        try {
+            
+            // create the streams
+            FileInputStream istream = new FileInputStream(file);
+            OutputStream ostream = null;
+            
+            // let's try
+            try {
+                
+                // encode and hash in a single pass
+                ostream = new BufferedOutputStream(new FileOutputStream(partial), BufferPool.BUFFER_SIZE);
+                TranslateUtils.convertChannel(new DigestChannel(istream.getChannel(), digest), ostream, Base64Format.STANDARD, listener);
+            }
+            finally {
+                
+                // close the streams
+                istream.close();
+                if (ostream != null) {
+                    ostream.close();
+                }
+            }
+            
+            // get the final name
+            String hash = ConversionCache.toHex(digest.digest());
+            File object = getObject(hash);
+            
+            // let's try
+            try {
+                
+                // publish it atomically, a rename silently replaces
+                // the same contents stored by someone else meanwhile,
+                // which must not be counted twice
+                boolean existed = object.exists();
+                Files.move(partial.toPath(), object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                if (!existed) {
+                    size.addAndGet(object.length());
+                }
+            }
+            catch (FileAlreadyExistsException e) {
+                
+                // same contents stored by someone else
+            }
+            
+            // remember it
+            record(identity, hash);
+            
+            // make room if needed
+            if (size.get() > capacity) {
+                evict(object);
+            }
+            
+            // return the output
+            return object;
+        }
+        finally {
+            
+            // clean up, it only exists if something failed
+            // or the contents were already there
+            Files.deleteIfExists(partial.toPath());
+        }
+    }
+    
+    /**
+     * Records a file identity in the index, in memory and on disk.
+     * @param identity The identity.
+     * @param hash The digest.
+     * @throws IOException An IO error with the index.
+     */
+    private void record(String identity, String hash) throws IOException {
+        
+        // in memory
+        synchronized (index) {
+            index.put(identity, hash);
+        }
+        
+        // on disk, appended while holding the lock
+        synchronized (MONITOR) {
+            
+            // get the lock
+            RandomAccessFile lock = lock();
+            
+            // let's try
+            try {
+                
+                // open the index for appending
+                Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile, true), StandardCharsets.UTF_8);
+                
+                // let's try
+                try {
+                    
+                    // a single line, the last one wins
+                    writer.write(hash + "\t" + identity + "\n");
+                }
+                finally {
+                    
+                    // close the index
+                    writer.close();
+                }
+            }
+            finally {
+                
+                // release the lock
+                lock.close();
+            }
+        }
+    }
+    
+    /**
+     * Evicts the least recently used outputs until the total size is well
+     * below the capacity, and rewrites the index without them. Abandoned
+     * partial outputs are removed as well.
+     * @param keep An output that must not be evicted, since it is about to
+     * be used.
+     * @throws IOException An IO error with the cache.
+     */
+    private void evict(File keep) throws IOException {
+        
+        // hold the lock
+        synchronized (MONITOR) {
+            
+            // get the lock
+            RandomAccessFile lock = lock();
+            
+            // let's try
+            try {
+                
+                // get the outputs, oldest first
+                File[] list = listObjects();
+                Arrays.sort(list, new Comparator<File>() {
+
+                    @Override
+                    public int compare(File a, File b) {
+                        
+                        // compare the modification times
+                        long x = a.lastModified();
+                        long y = b.lastModified();
+                        return x < y ? -1 : (x == y ? 0 : 1);
+                    }
+                });
+                
+                // sum them, other processes may have added some
+                long total = 0;
+                for (File object : list) {
+                    total = total + object.length();
+                }
+                
+                // delete the oldest ones, leaving some room
+                long target = capacity - capacity / 10;
+                for (int i = 0; (i < list.length) && (total > target); i++) {
+                    long length = list[i].length();
+                    if (!list[i].equals(keep) && list[i].delete()) {
+                        total = total - length;
+                    }
+                }
+                size.set(total);
+                
+                // remove abandoned partial outputs
+                File[] partials = objects.listFiles();
+                if (partials != null) {
+                    for (File partial : partials) {
+                        if (partial.getName().endsWith(PARTIAL)
+                                && (System.currentTimeMillis() - partial.lastModified() > ABANDONED)) {
+                            partial.delete();
+                        }
+                    }
+                }
+                
+                // rewrite the index
+                compactIndex();
+            }
+            finally {
+                
+                // release the lock
+                lock.close();
+            }
+        }
+    }
+    
+    /**
+     * Rewrites the index with the entries whose outputs still exist. Must
+     * be called while holding the lock.
+     * @throws IOException An IO error with the index.
+     */
+    private void compactIndex() throws IOException {
+        
+        // reload what every process wrote
+        loadIndex();
+        
+        // the surviving outputs
+        Set<String> alive = new HashSet<String>();
+        for (File object : listObjects()) {
+            String name = object.getName();
+            alive.add(name.substring(0, name.length() - EXTENSION.length()));
+        }
+        
+        // write a new index next to the old one
+        File partial = File.createTempFile("index", PARTIAL, indexFile.getParentFile());
+        
+        // let's try
+        try {
+            
+            // open it
+            Writer writer = new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(partial)), StandardCharsets.UTF_8);
+            
+            // let's try
+            try {
+                
+                // keep the entries whose outputs survived
+                synchronized (index) {
+                    Iterator<Map.Entry<String, String>> iterator = index.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<String, String> entry = iterator.next();
+                        if (alive.contains(entry.getValue())) {
+                            writer.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+                        }
+                        else {
+                            iterator.remove();
+                        }
+                    }
+                }
+            }
+            finally {
+                
+                // close it
+                writer.close();
+            }
+            
+            // replace the old one atomically, readers
+            // see either the old or the new index
+            Files.move(partial.toPath(), indexFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally {
+            
+            // clean up if something failed
+            Files.deleteIfExists(partial.toPath());
+        }
+    }
+    
+    /**
+     * Loads the index from disk. Later lines win, and damaged lines, such
+     * as one being appended right now, are skipped.
+     * @throws IOException An IO error with the index.
+     */
+    private void loadIndex() throws IOException {
+        
+        // nothing to load yet
+        if (!indexFile.isFile()) {
+            return;
+        }
+        
+        // open the index
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8));
+        
+        // let's try
+        try {
+            
+            // read every line
+            String line;
+            while ((line = reader.readLine()) != null) {
+                
+                // split the digest from the identity
+                int tab = line.indexOf('\t');
+                if (tab == 64) {
+                    synchronized (index) {
+                        index.put(line.substring(tab + 1), line.substring(0, tab));
+                    }
+                }
+            }
+        }
+        finally {
+            
+            // close the index
+            reader.close();
+        }
+    }
+    
+    /**
+     * Acquires the lock shared by every process. Closing the returned file
+     * releases it.
+     * @return The lock file.
+     * @throws IOException An IO error with the lock file.
+     */
+    private RandomAccessFile lock() throws IOException {
+        
+        // open the lock file
+        RandomAccessFile file = new RandomAccessFile(lockFile, "rw");
+        
+        // let's try
+        try {
+            
+            // wait for the lock, it is released on close
+            file.getChannel().lock();
+            return file;
+        }
+        catch (IOException e) {
+            
+            // no lock, close the file
+            file.close();
+            throw e;
+        }
+    }
+    
+    /**
+     * Lists the outputs.
+     * @return The outputs.
+     */
+    private File[] listObjects() {
+        
+        // list the complete outputs only
+        File[] list = objects.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(File file) {
+                
+                // check the extension
+                return file.getName().endsWith(EXTENSION);
+            }
+        });
+        
+        // return them
+        return list == null ? new File[0] : list;
+    }
+    
+    /**
+     * Gets the output file for a digest.
+     * @param hash The digest.
+     * @return The output file.
+     */
+    private File getObject(String hash) {
+        
+        // return the file
+        return new File(objects, hash + EXTENSION);
+    }
+    
+    /**
+     * Gets the identity of a file.
+     * @param file The file.
+     * @return The identity.
+     * @throws IOException An IO error with the file.
+     */
+    private static String getIdentity(File file) throws IOException {
+        
+        // path, size and modification time
+        return file.length() + "\t" + file.lastModified() + "\t" + file.getCanonicalPath();
+    }
+    
+    /**
+     * Copies an output file to an output stream.
+     * @param object The output file.
+     * @param output The output stream.
+     * @return The number of bytes copied.
+     * @throws IOException An IO error with the file or the stream.
+     */
+    private static long copy(File object, OutputStream output) throws IOException {
+        
+        // open the output file
+        FileInputStream istream = new FileInputStream(object);
+        
+        // let's try
+        try {
+            
+            // transfer everything
+            FileChannel channel = istream.getChannel();
+            WritableByteChannel target = Channels.newChannel(output);
+            long length = channel.size();
+            long position = 0;
+            while (position < length) {
+                position = position + channel.transferTo(position, length - position, target);
+            }
+            
+            // return the length
+            return length;
+        }
+        finally {
+            
+            // close it
+            istream.close();
+        }
+    }
+    
+    /**
+     * Reads an output file as a string.
+     * @param object The output file.
+     * @return The string.
+     * @throws IOException An IO error with the file.
+     */
+    private static String read(File object) throws IOException {
+        
+        // Base64 is plain ASCII
+        return new String(Files.readAllBytes(object.toPath()), StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Checks if the current output can be cached. The caches only hold the
+     * standard format of uncompressed inputs, with no template around it,
+     * and are bypassed otherwise.
+     * @return <code>true</code> if it can be cached.
+     */
+    static boolean isCacheable() {
+        
+        // check the format, the compression and the template
+        return Base64Format.getDefault().isStandard() && !Compression.getDefault().isEnabled()
+                && !EmbedTemplate.getDefault().isEnabled();
+    }
+    
+    /**
+     * Creates a SHA-256 digest.
+     * @return The digest.
+     * @throws IOException The algorithm is not available.
+     */
+    static MessageDigest newDigest() throws IOException {
+        
+        // let's try
+        try {
+            
+            // get it
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            
+            // every JVM has it
+            throw new IOException(e);
+        }
+    }
+}
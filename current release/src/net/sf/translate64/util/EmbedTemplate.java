@@ -0,0 +1,355 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>EmbedTemplate.java</b>: describes the text written around the
+ * Base64  * output to embed it somewhere.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Describes the text written around the Base64 output to embed it in a
+ * PHP script, a data URI, a JSON string or a CSS <code>url()</code>. The
+ * prefix and the suffix are written straight to the output before and
+ * after the encoder, so the payload is never copied into another string
+ * to be wrapped. Data URIs get the MIME type detected by
+ * {@link MimeTypes}, and the PHP expression decompresses the payload if
+ * it was compressed. Instances are immutable, and the one used by default
+ * is chosen with the <code>translate64.template</code> system property or
+ * with {@link #setDefault(EmbedTemplate)}.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public final class EmbedTemplate {
+
+    /**
+     * System property holding the name of the default template.
+     */
+    public static final String PROPERTY = "translate64.template";
+    
+    /**
+     * No template, just the Base64 output.
+     */
+    public static final EmbedTemplate NONE = new EmbedTemplate("none");
+    
+    /**
+     * A PHP expression, <code>base64_decode('...')</code>.
+     */
+    public static final EmbedTemplate PHP = new EmbedTemplate("php");
+    
+    /**
+     * A data URI, <code>data:&lt;type&gt;;base64,...</code>.
+     */
+    public static final EmbedTemplate DATA_URI = new EmbedTemplate("data");
+    
+    /**
+     * A JSON string, <code>"..."</code>.
+     */
+    public static final EmbedTemplate JSON = new EmbedTemplate("json");
+    
+    /**
+     * A CSS value, <code>url("data:&lt;type&gt;;base64,...")</code>.
+     */
+    public static final EmbedTemplate CSS = new EmbedTemplate("css");
+    
+    // nothing at all
+    private static final byte[] EMPTY = new byte[0];
+    
+    // the default template, chosen on first use
+    private static volatile EmbedTemplate current;
+    
+    // the name
+    private final String name;
+    
+    /**
+     * Constructor method.
+     * @param name The name.
+     */
+    private EmbedTemplate(String name) {
+        
+        // set the value
+        this.name = name;
+    }
+    
+    /**
+     * Gets the default template. Unless one was set, it is the one named
+     * by the <code>translate64.template</code> system property, or else
+     * none.
+     * @return The template.
+     */
+    public static EmbedTemplate getDefault() {
+        
+        // get the current one
+        EmbedTemplate template = current;
+        
+        // check if it was chosen already
+        if (template == null) {
+            
+            // check the system property
+            String value = System.getProperty(PROPERTY);
+            template = (value == null) ? null : forName(value.trim());
+            
+            // fall back to none
+            if (template == null) {
+                template = NONE;
+            }
+            
+            // keep it
+            current = template;
+        }
+        
+        // return it
+        return template;
+    }
+    
+    /**
+     * Sets the default template.
+     * @param template The template, or <code>null</code> to choose it
+     * again from the system property.
+     */
+    public static void setDefault(EmbedTemplate template) {
+        
+        // set the value
+        current = template;
+    }
+    
+    /**
+     * Gets a template by its name.
+     * @param name The name, <code>none</code>, <code>php</code>,
+     * <code>data</code>, <code>json</code> or <code>css</code>.
+     * @return The template, or <code>null</code> if there is no template
+     * with such name.
+     */
+    public static EmbedTemplate forName(String name) {
+        
+        // check the names
+        switch (name.toLowerCase()) {
+            case "none":
+                return NONE;
+            case "php":
+                return PHP;
+            case "data":
+                return DATA_URI;
+            case "json":
+                return JSON;
+            case "css":
+                return CSS;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Gets the name.
+     * @return The name.
+     */
+    public String getName() {
+        
+        // return it
+        return name;
+    }
+    
+    /**
+     * Checks if anything is written around the output.
+     * @return <code>true</code> if it is, or <code>false</code> for
+     * {@link #NONE}.
+     */
+    public boolean isEnabled() {
+        
+        // check it
+        return this != NONE;
+    }
+    
+    /**
+     * Checks if the prefix depends on the MIME type of the input.
+     * @return <code>true</code> for data URIs and CSS.
+     */
+    public boolean needsMimeType() {
+        
+        // check it
+        return (this == DATA_URI) || (this == CSS);
+    }
+    
+    /**
+     * Checks if the output may be broken into lines. JSON strings, data
+     * URIs and CSS strings cannot hold raw line breaks.
+     * @return <code>true</code> if it may.
+     */
+    public boolean allowsLineBreaks() {
+        
+        // check it
+        return (this == NONE) || (this == PHP);
+    }
+    
+    /**
+     * Checks if the output may be compressed. Data URIs and CSS are read
+     * by browsers, which do not decompress them.
+     * @return <code>true</code> if it may.
+     */
+    public boolean allowsCompression() {
+        
+        // check it
+        return !needsMimeType();
+    }
+    
+    /**
+     * Gets the prefix for a file, detecting its MIME type if needed.
+     * @param file The file.
+     * @param compression The compression of the file.
+     * @return The prefix.
+     * @throws IOException An IO error with the file.
+     */
+    public byte[] getPrefix(File file, Compression compression) throws IOException {
+        
+        // detect the type only if needed
+        return getPrefix(needsMimeType() ? MimeTypes.detect(file) : null, compression);
+    }
+    
+    /**
+     * Gets the prefix for data whose first bytes are known, detecting its
+     * MIME type if needed.
+     * @param head The first bytes.
+     * @param length The number of bytes.
+     * @param name The file name, or <code>null</code> if unknown.
+     * @param compression The compression of the data.
+     * @return The prefix.
+     */
+    public byte[] getPrefix(byte[] head, int length, String name, Compression compression) {
+        
+        // detect the type only if needed
+        return getPrefix(needsMimeType() ? MimeTypes.detect(head, length, name) : null, compression);
+    }
+    
+    /**
+     * Gets the prefix.
+     * @param mimeType The MIME type, if the template needs it.
+     * @param compression The compression of the data.
+     * @return The prefix.
+     */
+    public byte[] getPrefix(String mimeType, Compression compression) {
+        
+        // check the template
+        switch (name) {
+            case "php":
+                return ascii(compression.isEnabled() ? getDecompressor(compression) + "(base64_decode('" : "base64_decode('");
+            case "data":
+                return ascii("data:" + mimeType + ";base64,");
+            case "json":
+                return ascii("\"");
+            case "css":
+                return ascii("url(\"data:" + mimeType + ";base64,");
+            default:
+                return EMPTY;
+        }
+    }
+    
+    /**
+     * Gets the suffix.
+     * @param compression The compression of the data.
+     * @return The suffix.
+     */
+    public byte[] getSuffix(Compression compression) {
+        
+        // check the template
+        switch (name) {
+            case "php":
+                return ascii(compression.isEnabled() ? "'))" : "')");
+            case "json":
+                return ascii("\"");
+            case "css":
+                return ascii("\")");
+            default:
+                return EMPTY;
+        }
+    }
+    
+    /**
+     * Gets the name.
+     * @return The name.
+     */
+    @Override
+    public String toString() {
+        
+        // return it
+        return name;
+    }
+    
+    /**
+     * Gets the PHP function that decompresses the data.
+     * @param compression The compression.
+     * @return The function name.
+     */
+    private static String getDecompressor(Compression compression) {
+        
+        // check the stream format
+        switch (compression.getName()) {
+            case "deflate":
+                return "gzinflate";
+            case "zlib":
+                return "gzuncompress";
+            default:
+                return "gzdecode";
+        }
+    }
+    
+    /**
+     * Gets the bytes of an ASCII string.
+     * @param text The string.
+     * @return The bytes.
+     */
+    private static byte[] ascii(String text) {
+        
+        // convert it
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>EncodedTransferable.java</b>: provides clipboard contents backed by
+ * a file holding a Base64 output, so huge outputs never live on the
+ * heap.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+/**
+ * Provides clipboard contents backed by a temporary file holding a Base64
+ * output, so huge outputs never live on the heap. The text is only read
+ * when a consumer actually asks for it: as a file list, so the output can
+ * be pasted as a file; as a reader, so it can be streamed; or as a plain
+ * string, built on request. The file is deleted when the clipboard
+ * contents are replaced.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class EncodedTransferable implements Transferable, ClipboardOwner {
+
+    /**
+     * Default size, in bytes of Base64 output, above which outputs are
+     * written to a temporary file instead of being kept as a string. It
+     * can be changed with the <code>translate64.clipboard.threshold</code>
+     * system property.
+     */
+    public static final long DEFAULT_THRESHOLD = 16L * 1024 * 1024;
+    
+    /**
+     * Flavor for streaming the text through a reader.
+     */
+    public static final DataFlavor READER_FLAVOR = new DataFlavor("text/plain; class=java.io.Reader; charset=US-ASCII", "Base64 text");
+    
+    // the supported flavors, best first
+    private static final DataFlavor[] FLAVORS = {
+        DataFlavor.javaFileListFlavor, READER_FLAVOR, DataFlavor.stringFlavor
+    };
+    
+    // the file with the output
+    private final File file;
+    
+    /**
+     * Constructor method.
+     * @param file The file with the Base64 output. It is deleted when the
+     * clipboard contents are replaced.
+     */
+    public EncodedTransferable(File file) {
+        
+        // set the value
+        this.file = file;
+    }
+    
+    /**
+     * Gets the size above which outputs should be written to a temporary
+     * file instead of being kept as a string.
+     * @return The threshold, in bytes of Base64 output.
+     */
+    public static long getThreshold() {
+        
+        // the system property wins
+        return Long.getLong("translate64.clipboard.threshold", DEFAULT_THRESHOLD);
+    }
+    
+    /**
+     * Creates a temporary file for an output, in its own temporary
+     * directory, so it keeps a meaningful name when pasted as a file.
+     * Both are deleted on exit at the latest.
+     * @param name The name of the output file.
+     * @return The temporary file.
+     * @throws IOException An IO error while creating it.
+     */
+    public static File createTempFile(String name) throws IOException {
+        
+        // create the directory
+        File directory = Files.createTempDirectory("translate64").toFile();
+        directory.deleteOnExit();
+        
+        // the file, deleted before the directory
+        File file = new File(directory, name);
+        file.deleteOnExit();
+        
+        // return it
+        return file;
+    }
+    
+    /**
+     * Gets the file with the output.
+     * @return The file.
+     */
+    public File getFile() {
+        
+        // return the file
+        return file;
+    }
+    
+    /**
+     * Gets the supported flavors.
+     * @return The flavors.
+     */
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+        
+        // return a copy
+        return FLAVORS.clone();
+    }
+    
+    /**
+     * Checks if a flavor is supported.
+     * @param flavor The flavor.
+     * @return <code>true</code> if it is supported, or <code>false</code>
+     * otherwise.
+     */
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+        
+        // check every flavor
+        for (DataFlavor supported : FLAVORS) {
+            if (supported.equals(flavor)) {
+                return true;
+            }
+        }
+        
+        // not supported
+        return false;
+    }
+    
+    /**
+     * Gets the data in a flavor. Nothing is read until this method is
+     * called.
+     * @param flavor The flavor.
+     * @return The data.
+     * @throws UnsupportedFlavorException The flavor is not supported.
+     * @throws IOException An IO error with the file.
+     */
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException, IOException {
+        
+        // the file itself
+        if (DataFlavor.javaFileListFlavor.equals(flavor)) {
+            return Collections.singletonList(file);
+        }
+        
+        // a stream of the text
+        if (READER_FLAVOR.equals(flavor)) {
+            return new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII);
+        }
+        
+        // the whole text, built right now
+        if (DataFlavor.stringFlavor.equals(flavor)) {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+        }
+        
+        // anything else
+        throw new UnsupportedFlavorException(flavor);
+    }
+    
+    /**
+     * The clipboard contents were replaced, so the file is deleted.
+     * @param clipboard The clipboard.
+     * @param contents The old contents.
+     */
+    @Override
+    public void lostOwnership(Clipboard clipboard, Transferable contents) {
+        
+        // delete the file and its directory
+        file.delete();
+        file.getParentFile().delete();
+    }
+}
@@ -0,0 +1,500 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>FileSink.java</b>: provides a sink that writes Base64 outputs
+ * straight to files.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Provides a sink that writes Base64 outputs straight to files, so the
+ * whole output never exists in memory and its size is only bounded by the
+ * disk. Input blocks are encoded into a large direct buffer, which is
+ * written to the file channel only when full. Large files are mapped and
+ * encoded in parallel instead. Outputs are written to a temporary file
+ * next to the target and renamed when complete, so a failed or cancelled
+ * conversion never leaves a truncated target behind.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class FileSink {
+
+    /**
+     * Extension added to the input name to get the default target.
+     */
+    public static final String EXTENSION = ".b64";
+    
+    /**
+     * Size, in bytes, of the write buffer. It holds the output of four
+     * pooled input buffers.
+     */
+    public static final int WRITE_BUFFER = 4 * Base64Encoder.getEncodedLength(BufferPool.BUFFER_SIZE);
+    
+    // suffix of partial outputs
+    private static final String PARTIAL = ".part";
+    
+    // the write buffers, kept for the next files
+    private static final BufferPool WRITE_POOL = new BufferPool(WRITE_BUFFER, 2 * Runtime.getRuntime().availableProcessors());
+    
+    /**
+     * Gets the default target of a file, <code>&lt;name&gt;.b64</code>
+     * next to it.
+     * @param file The file.
+     * @return The target file.
+     */
+    public static File getTarget(File file) {
+        
+        // add the extension
+        return new File(file.getPath() + EXTENSION);
+    }
+    
+    /**
+     * Converts a file to Base64, writing the result next to it as
+     * <code>&lt;name&gt;.b64</code>.
+     * @param file The file.
+     * @return The target file.
+     * @throws IOException An IO error with one of the files.
+     */
+    public static File convertFile(File file) throws IOException {
+        
+        // get the target
+        File target = getTarget(file);
+        
+        // convert it
+        convertFile(file, target, null, null);
+        
+        // return it
+        return target;
+    }
+    
+    /**
+     * Converts a file to Base64, writing the result to a target file.
+     * @param file The file.
+     * @param target The target file. It is replaced if it exists, and
+     * missing parent directories are created.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with one of the files, or the
+     * conversion was cancelled.
+     */
+    public static long convertFile(File file, File target, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, target, null, listener);
+    }
+    
+    /**
+     * Converts a file to Base64, writing the result to a target file. When
+     * a disk cache is given, the output is copied from it without going
+     * through the heap.
+     * @param file The file.
+     * @param target The target file. It is replaced if it exists, and
+     * missing parent directories are created.
+     * @param cache The disk cache, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with one of the files or the cache,
+     * or the conversion was cancelled.
+     */
+    public static long convertFile(File file, File target, DiskCache cache, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, target, cache, null, listener);
+    }
+    
+    /**
+     * Converts a file to Base64, writing the result to a target file and
+     * computing the checksums of the file in the same pass. The disk cache
+     * does not read unchanged files, so it is not used when checksums are
+     * requested.
+     * @param file The file.
+     * @param target The target file. It is replaced if it exists, and
+     * missing parent directories are created.
+     * @param cache The disk cache, or <code>null</code> for none.
+     * @param checksums The checksums, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with one of the files or the cache,
+     * or the conversion was cancelled.
+     */
+    public static long convertFile(File file, File target, DiskCache cache, Checksums checksums, ProgressListener listener) throws IOException {
+        
+        // check the input
+        if (!file.isFile()) {
+            throw new IOException("File " + file.getName() + " does not exist or is not a regular file.");
+        }
+        
+        // the cache only holds plain standard output,
+        // and it would not read the file for the checksums
+        if (!DiskCache.isCacheable() || (checksums != null)) {
+            cache = null;
+        }
+        
+        // the partial output
+        File partial = createPartial(target);
+        
+        // let's try
+        try {
+            
+            // the number of bytes read
+            long length;
+            
+            // choose the compression of this file
+            Compression compression = Compression.getDefault().choose(file);
+            
+            // large files are mapped and encoded in parallel,
+            // unless they are deflated in parallel instead
+            if ((cache == null) && !compression.isEnabled() && (file.length() >= ParallelConverter.THRESHOLD)) {
+                
+                // convert it
+                length = ParallelConverter.convertFile(file, partial, checksums, listener);
+            }
+            else {
+                
+                // create the output stream
+                FileOutputStream ostream = new FileOutputStream(partial);
+                
+                // let's try
+                try {
+                    
+                    // check the cache
+                    if (cache != null) {
+                        
+                        // copy the cached output, the file
+                        // stream lets it be transferred directly
+                        cache.convertFile(file, ostream, listener);
+                        length = file.length();
+                    }
+                    else {
+                        
+                        // the text around the output, if any
+                        EmbedTemplate template = EmbedTemplate.getDefault();
+                        write(template.getPrefix(file, compression), ostream.getChannel());
+                        
+                        // create the input stream
+                        FileInputStream istream = new FileInputStream(file);
+                        
+                        // let's try
+                        try {
+                            
+                            // read through the checksums, if any
+                            ReadableByteChannel input = (checksums == null) ? istream.getChannel() : checksums.wrap(istream.getChannel());
+                            
+                            // check for compression
+                            if (compression.isEnabled()) {
+                                
+                                // encode the deflated stream, the
+                                // deflater reports the progress
+                                DeflateChannel channel = new DeflateChannel(input, compression, listener);
+                                write(channel, ostream.getChannel(), null);
+                                length = channel.getInputLength();
+                            }
+                            else {
+                                
+                                // encode it
+                                length = write(input, ostream.getChannel(), listener);
+                            }
+                            
+                            // close the template
+                            write(template.getSuffix(compression), ostream.getChannel());
+                        }
+                        finally {
+                            
+                            // close the input stream
+                            istream.close();
+                        }
+                    }
+                }
+                finally {
+                    
+                    // close the output stream
+                    ostream.close();
+                }
+            }
+            
+            // publish the output
+            publish(partial, target);
+            
+            // return the length
+            return length;
+        }
+        finally {
+            
+            // clean up if something failed
+            partial.delete();
+        }
+    }
+    
+    /**
+     * Converts a channel to Base64, writing the result to a target file.
+     * @param channel The channel. It is not closed.
+     * @param target The target file. It is replaced if it exists, and
+     * missing parent directories are created.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the file, or the
+     * conversion was cancelled.
+     */
+    public static long convertChannel(ReadableByteChannel channel, File target, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertChannel(channel, target, new byte[0], new byte[0], listener);
+    }
+    
+    /**
+     * Converts a channel to Base64, writing the result to a target file
+     * between a prefix and a suffix, such as those of an
+     * {@link EmbedTemplate}.
+     * @param channel The channel. It is not closed.
+     * @param target The target file. It is replaced if it exists, and
+     * missing parent directories are created.
+     * @param prefix The bytes written before the output.
+     * @param suffix The bytes written after the output.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the file, or the
+     * conversion was cancelled.
+     */
+    public static long convertChannel(ReadableByteChannel channel, File target, byte[] prefix, byte[] suffix, ProgressListener listener) throws IOException {
+        
+        // the partial output
+        File partial = createPartial(target);
+        
+        // let's try
+        try {
+            
+            // create the output stream
+            FileOutputStream ostream = new FileOutputStream(partial);
+            
+            // the number of bytes read
+            long length;
+            
+            // let's try
+            try {
+                
+                // encode it between the prefix and the suffix
+                write(prefix, ostream.getChannel());
+                length = write(channel, ostream.getChannel(), listener);
+                write(suffix, ostream.getChannel());
+            }
+            finally {
+                
+                // close the output stream
+                ostream.close();
+            }
+            
+            // publish the output
+            publish(partial, target);
+            
+            // return the length
+            return length;
+        }
+        finally {
+            
+            // clean up if something failed
+            partial.delete();
+        }
+    }
+    
+    /**
+     * Encodes a channel into a file channel. Input blocks are read into a
+     * pooled direct buffer and encoded into a large, also pooled, direct
+     * write buffer, so no byte goes through the heap.
+     * @param input The input channel.
+     * @param output The output channel.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the input channel.
+     * @throws IOException An IO error with one of the channels, or the
+     * conversion was cancelled.
+     */
+    private static long write(ReadableByteChannel input, FileChannel output, ProgressListener listener) throws IOException {
+        
+        // get a buffer from the pool
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquire();
+        
+        // the format, the same for the whole input
+        Base64Format format = Base64Format.getDefault();
+        
+        // get the write buffer from its pool, unless the separators
+        // of the format are so long that a block would not fit
+        int needed = format.getMaxEncodedLength(buffer.capacity());
+        ByteBuffer encoded = (needed <= WRITE_BUFFER) ? WRITE_POOL.acquire() : ByteBuffer.allocateDirect(needed);
+        
+        // let's try
+        try {
+            
+            // total of bytes read
+            long total = 0;
+            
+            // counter
+            int count;
+            
+            // read every block
+            while ((count = TranslateUtils.readBlock(input, buffer)) > 0) {
+                
+                // make room if needed
+                if (encoded.remaining() < format.getMaxEncodedLength(count)) {
+                    flush(encoded, output);
+                }
+                
+                // encode it
+                format.encode(buffer, encoded, total);
+                
+                // update the total
+                total = total + count;
+                
+                // report the progress
+                TranslateUtils.report(listener, count);
+            }
+            
+            // write what is left
+            flush(encoded, output);
+            
+            // return the total
+            return total;
+        }
+        finally {
+            
+            // give the buffers back, the pool
+            // discards an oversized one
+            WRITE_POOL.release(encoded);
+            pool.release(buffer);
+        }
+    }
+    
+    /**
+     * Writes the contents of a buffer to a channel and clears it.
+     * @param buffer The buffer.
+     * @param channel The channel.
+     * @throws IOException An IO error with the channel.
+     */
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        
+        // prepare for writing
+        buffer.flip();
+        
+        // write everything
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        
+        // start from scratch
+        buffer.clear();
+    }
+    
+    /**
+     * Writes bytes to a channel.
+     * @param bytes The bytes.
+     * @param channel The channel.
+     * @throws IOException An IO error with the channel.
+     */
+    private static void write(byte[] bytes, FileChannel channel) throws IOException {
+        
+        // write everything
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    /**
+     * Creates the partial output of a target, in the same directory so it
+     * can be renamed.
+     * @param target The target file.
+     * @return The partial output.
+     * @throws IOException An IO error creating the file.
+     */
+    private static File createPartial(File target) throws IOException {
+        
+        // get the directory
+        File directory = target.getAbsoluteFile().getParentFile();
+        
+        // create it if needed
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Directory " + directory.getPath() + " could not be created.");
+        }
+        
+        // create the file, with the usual permissions
+        return File.createTempFile("." + target.getName() + ".", PARTIAL, directory);
+    }
+    
+    /**
+     * Renames a partial output to its target, replacing it.
+     * @param partial The partial output.
+     * @param target The target file.
+     * @throws IOException An IO error renaming the file.
+     */
+    private static void publish(File partial, File target) throws IOException {
+        
+        // let's try
+        try {
+            
+            // rename it at once
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            
+            // do the best we can
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,600 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>FolderWatcher.java</b>: keeps the encoded outputs of a directory
+ * tree up to date as its files are created, changed and removed.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the encoded outputs of a directory tree up to date. The tree is
+ * watched with a <code>WatchService</code>, and a file is only picked up
+ * once it has settled: no event arrived for it and its size and
+ * modification time stayed the same for the whole settle time, so files
+ * still being written are left alone. A settled file is only converted
+ * again if its size or modification time changed since its last
+ * conversion and its SHA-256 digest did too, so touched or rewritten but
+ * identical files cost a read and nothing else. Outputs of removed files
+ * are removed as well. At startup, outputs newer than their files are
+ * kept as they are, and only the digests of those files are computed.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class FolderWatcher {
+    
+    /**
+     * The default settle time, in milliseconds.
+     */
+    public static final long DEFAULT_SETTLE_TIME = 500;
+    
+    /**
+     * Listens to the work of a watcher. Methods are called from the thread
+     * running the watcher, or from the conversion threads, but never
+     * concurrently.
+     */
+    public static interface Listener {
+        
+        /**
+         * A file was converted.
+         * @param file The file.
+         * @param target The output file.
+         */
+        public void fileConverted(File file, File target);
+        
+        /**
+         * A file was removed, and so was its output.
+         * @param file The file.
+         * @param target The output file.
+         */
+        public void fileRemoved(File file, File target);
+        
+        /**
+         * A file could not be converted. It is tried again when it changes.
+         * @param file The file.
+         * @param error The error.
+         */
+        public void fileFailed(File file, IOException error);
+    }
+    
+    // the watched directory
+    private final Path root;
+    
+    // the output directory
+    private final File directory;
+    
+    // the listener
+    private final Listener listener;
+    
+    // the disk cache, if any
+    private volatile DiskCache diskCache;
+    
+    // the settle time
+    private volatile long settleTime = DEFAULT_SETTLE_TIME;
+    
+    // the watched directories
+    private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+    
+    // files waiting to settle
+    private final Map<Path, Snapshot> pending = new HashMap<Path, Snapshot>();
+    
+    // files as they were when last converted
+    private final Map<Path, Snapshot> converted = new HashMap<Path, Snapshot>();
+    
+    // the watch service
+    private WatchService service;
+    
+    /**
+     * Constructor method.
+     * @param root The watched directory.
+     * @param directory The output directory, which must not be inside the
+     * watched one. Files keep their path relative to the watched directory.
+     * @param listener The listener.
+     * @throws IllegalArgumentException The output directory is inside the
+     * watched one.
+     */
+    public FolderWatcher(File root, File directory, Listener listener) {
+        
+        // set the values
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.directory = directory;
+        this.listener = listener;
+        
+        // outputs inside the tree would be converted too
+        if (directory.toPath().toAbsolutePath().normalize().startsWith(this.root)) {
+            throw new IllegalArgumentException("the output directory cannot be inside the watched directory");
+        }
+    }
+    
+    /**
+     * Sets the disk cache. Files found there are not converted again.
+     * @param diskCache The disk cache, or <code>null</code> for none.
+     */
+    public void setDiskCache(DiskCache diskCache) {
+        
+        // set the value
+        this.diskCache = diskCache;
+    }
+    
+    /**
+     * Sets how long a file must stay unchanged before it is converted.
+     * @param settleTime The settle time, in milliseconds.
+     */
+    public void setSettleTime(long settleTime) {
+        
+        // set the value
+        this.settleTime = settleTime;
+    }
+    
+    /**
+     * Gets the output file of a file in the watched directory.
+     * @param file The file.
+     * @return The output file.
+     */
+    public File getTarget(File file) {
+        
+        // keep the relative path
+        Path relative = root.relativize(file.toPath().toAbsolutePath().normalize());
+        return new File(directory, relative.toString() + FileSink.EXTENSION);
+    }
+    
+    /**
+     * Watches the directory until the thread is interrupted. Files with no
+     * output, or with an output older than themselves, are converted
+     * first.
+     * @throws IOException An IO error with the watched directory.
+     * @throws InterruptedException The thread was interrupted.
+     */
+    public void run() throws IOException, InterruptedException {
+        
+        // create the watch service
+        service = root.getFileSystem().newWatchService();
+        
+        // let's try
+        try {
+            
+            // watch the tree and look at what is already there
+            scan(root, true);
+            
+            // watch until interrupted
+            while (true) {
+                
+                // wait for events, or for the next file to settle
+                WatchKey key = pending.isEmpty() ? service.take() : service.poll(getWaitTime(), TimeUnit.MILLISECONDS);
+                
+                // handle all the events there are
+                while (key != null) {
+                    handle(key);
+                    key = service.poll();
+                }
+                
+                // convert the files that settled
+                convertSettled();
+            }
+        }
+        catch (ClosedWatchServiceException e) {
+            
+            // closed from elsewhere
+            throw new InterruptedException();
+        }
+        finally {
+            
+            // close the watch service
+            service.close();
+        }
+    }
+    
+    /**
+     * Watches a directory tree and marks its files. At startup, files with
+     * an up to date output are recorded as converted instead.
+     * @param start The directory.
+     * @param startup Whether this is the startup scan.
+     * @throws IOException An IO error walking the tree.
+     */
+    private void scan(Path start, final boolean startup) throws IOException {
+        
+        // walk the tree
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) throws IOException {
+                
+                // watch it
+                keys.put(path.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), path);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+                
+                // only regular files are converted
+                if (attributes.isRegularFile()) {
+                    
+                    // the file as it is now
+                    Snapshot snapshot = new Snapshot(attributes, now());
+                    
+                    // check if its output is up to date
+                    File target = getTarget(path.toFile());
+                    if (startup && (target.lastModified() >= snapshot.modified)) {
+                        
+                        // nothing to convert, but keep the digest
+                        // to recognize the file if it is touched
+                        snapshot.digest = ConversionCache.digest(path.toFile());
+                        converted.put(path, snapshot);
+                    }
+                    else {
+                        
+                        // wait for it to settle
+                        pending.put(path, snapshot);
+                    }
+                }
+                
+                // go on
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path path, IOException error) throws IOException {
+                
+                // report and go on
+                listener.fileFailed(path.toFile(), error);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    /**
+     * Handles the events of a watched directory.
+     * @param key The key of the directory.
+     */
+    private void handle(WatchKey key) {
+        
+        // get the directory
+        Path parent = keys.get(key);
+        
+        // check every event
+        for (WatchEvent<?> event : key.pollEvents()) {
+            
+            // let's try
+            try {
+                
+                // events were lost
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    
+                    // look at everything again, unchanged
+                    // files are skipped when they settle
+                    scan(root, false);
+                    continue;
+                }
+                
+                // no longer watched
+                if (parent == null) {
+                    continue;
+                }
+                
+                // the changed entry
+                Path path = parent.resolve((Path) event.context());
+                
+                // check what happened
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    
+                    // remove its outputs
+                    remove(path);
+                }
+                else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    
+                    // a new directory, maybe with files already
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        scan(path, false);
+                    }
+                }
+                else if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                    
+                    // wait for it to settle
+                    pending.put(path, new Snapshot(Files.readAttributes(path, BasicFileAttributes.class), now()));
+                }
+            }
+            catch (IOException e) {
+                
+                // it is already gone, its removal comes next
+            }
+        }
+        
+        // keep watching, if it is still there
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+    
+    /**
+     * Converts the files that settled and changed since their last
+     * conversion.
+     * @throws InterruptedException The thread was interrupted.
+     */
+    private void convertSettled() throws InterruptedException {
+        
+        // the files to convert, in order
+        final List<Path> ready = new ArrayList<Path>();
+        final List<Snapshot> snapshots = new ArrayList<Snapshot>();
+        
+        // check every pending file
+        long now = now();
+        Iterator<Map.Entry<Path, Snapshot>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            
+            // the current entry
+            Map.Entry<Path, Snapshot> entry = iterator.next();
+            Path path = entry.getKey();
+            Snapshot last = entry.getValue();
+            
+            // not settled yet
+            if (now - last.seen < settleTime) {
+                continue;
+            }
+            
+            // the file as it is now
+            Snapshot current;
+            try {
+                current = new Snapshot(Files.readAttributes(path, BasicFileAttributes.class), now);
+            }
+            catch (IOException e) {
+                
+                // gone, its removal comes next
+                iterator.remove();
+                continue;
+            }
+            
+            // still being written, wait again
+            if (!current.isSameFile(last)) {
+                entry.setValue(current);
+                continue;
+            }
+            
+            // settled
+            iterator.remove();
+            
+            // check if it changed since its last conversion
+            Snapshot previous = converted.get(path);
+            if ((previous != null) && current.isSameFile(previous)) {
+                continue;
+            }
+            
+            // let's try
+            try {
+                
+                // compare the contents
+                current.digest = ConversionCache.digest(path.toFile());
+                if ((previous != null) && current.digest.equals(previous.digest)) {
+                    
+                    // only touched
+                    converted.put(path, current);
+                    continue;
+                }
+            }
+            catch (IOException e) {
+                
+                // report and go on
+                listener.fileFailed(path.toFile(), e);
+                continue;
+            }
+            
+            // convert it
+            ready.add(path);
+            snapshots.add(current);
+        }
+        
+        // check if there is something to convert
+        if (ready.isEmpty()) {
+            return;
+        }
+        
+        // create a new batch, indices follow the order of submission
+        BatchConverter batch = new BatchConverter(new BatchConverter.Listener() {
+
+            @Override
+            public void fileConverted(int index, File file, String output) {
+                
+                // remember it
+                converted.put(ready.get(index), snapshots.get(index));
+                listener.fileConverted(file, getTarget(file));
+            }
+
+            @Override
+            public void fileFailed(int index, File file, IOException error) {
+                
+                // tried again when it changes
+                converted.remove(ready.get(index));
+                listener.fileFailed(file, error);
+            }
+        });
+        
+        // write the outputs into the directory
+        batch.setDiskCache(diskCache);
+        batch.setDestination(new BatchConverter.Destination() {
+
+            @Override
+            public File getTarget(File file) {
+                
+                // keep the relative path
+                return FolderWatcher.this.getTarget(file);
+            }
+        });
+        
+        // submit every file and wait for them
+        for (Path path : ready) {
+            batch.submit(path.toFile());
+        }
+        batch.await();
+    }
+    
+    /**
+     * Removes the outputs of a removed file, or of every file under a
+     * removed directory.
+     * @param path The removed file or directory.
+     */
+    private void remove(Path path) {
+        
+        // nothing to convert there anymore
+        Iterator<Path> iterator = pending.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(path)) {
+                iterator.remove();
+            }
+        }
+        
+        // remove the outputs
+        iterator = converted.keySet().iterator();
+        while (iterator.hasNext()) {
+            
+            // check the file
+            Path file = iterator.next();
+            if (file.startsWith(path)) {
+                
+                // forget it
+                iterator.remove();
+                
+                // and remove its output
+                File target = getTarget(file.toFile());
+                if (target.delete()) {
+                    listener.fileRemoved(file.toFile(), target);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gets how long to wait for the next pending file to settle.
+     * @return The wait time, in milliseconds.
+     */
+    private long getWaitTime() {
+        
+        // find the earliest one
+        long now = now();
+        long wait = settleTime;
+        for (Snapshot snapshot : pending.values()) {
+            wait = Math.min(wait, snapshot.seen + settleTime - now);
+        }
+        
+        // never less than a millisecond
+        return Math.max(wait, 1);
+    }
+    
+    /**
+     * Gets the current time of a monotonic clock.
+     * @return The current time, in milliseconds.
+     */
+    private static long now() {
+        
+        // never goes back
+        return System.nanoTime() / 1000000;
+    }
+    
+    /**
+     * Holds what is known about a file at some point.
+     */
+    private static class Snapshot {
+        
+        // the size
+        private final long size;
+        
+        // the modification time
+        private final long modified;
+        
+        // when it was seen
+        private final long seen;
+        
+        // the digest, if computed
+        private String digest;
+        
+        /**
+         * Constructor method.
+         * @param attributes The file attributes.
+         * @param seen When it was seen.
+         */
+        Snapshot(BasicFileAttributes attributes, long seen) {
+            
+            // set the values
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime().toMillis();
+            this.seen = seen;
+        }
+        
+        /**
+         * Checks if another snapshot has the same size and modification
+         * time.
+         * @param other The other snapshot.
+         * @return <code>true</code> if they are the same.
+         */
+        boolean isSameFile(Snapshot other) {
+            
+            // compare them
+            return (size == other.size) && (modified == other.modified);
+        }
+    }
+}
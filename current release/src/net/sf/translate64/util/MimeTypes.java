@@ -0,0 +1,304 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>MimeTypes.java</b>: detects the MIME type of a file from its  *
+ * first bytes.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Detects the MIME type of a file from its first bytes, so data URIs get
+ * the right type even for files without an extension. Text formats with
+ * no magic bytes, such as SVG and HTML, are told by their first tag; when
+ * nothing matches, the file name is looked up, and then plain text or
+ * binary is assumed. This class does not need to be instantiated.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class MimeTypes {
+
+    /**
+     * Number of bytes read from the start of a file.
+     */
+    public static final int HEAD_SIZE = 512;
+    
+    /**
+     * The type of unknown binary data.
+     */
+    public static final String BINARY = "application/octet-stream";
+    
+    /**
+     * The type of unknown text.
+     */
+    public static final String TEXT = "text/plain";
+    
+    // the sizes of the known bitmap info headers
+    private static final int[] BITMAP_HEADERS = { 12, 40, 52, 56, 64, 108, 124 };
+    
+    // the signatures and their types, in pairs
+    private static final Object[] SIGNATURES = {
+        
+        // images
+        new byte[] { (byte) 0x89, 'P', 'N', 'G' }, "image/png",
+        new byte[] { (byte) 0xff, (byte) 0xd8, (byte) 0xff }, "image/jpeg",
+        new byte[] { 'G', 'I', 'F', '8' }, "image/gif",
+        new byte[] { 0x00, 0x00, 0x01, 0x00 }, "image/x-icon",
+        
+        // fonts
+        new byte[] { 'w', 'O', 'F', 'F' }, "font/woff",
+        new byte[] { 'w', 'O', 'F', '2' }, "font/woff2",
+        new byte[] { 0x00, 0x01, 0x00, 0x00 }, "font/ttf",
+        new byte[] { 'O', 'T', 'T', 'O' }, "font/otf",
+        
+        // audio and video
+        new byte[] { 'I', 'D', '3' }, "audio/mpeg",
+        new byte[] { 'O', 'g', 'g', 'S' }, "audio/ogg",
+        new byte[] { 'f', 'L', 'a', 'C' }, "audio/flac",
+        new byte[] { 0x1a, 0x45, (byte) 0xdf, (byte) 0xa3 }, "video/webm",
+        
+        // documents and archives
+        new byte[] { '%', 'P', 'D', 'F' }, "application/pdf",
+        new byte[] { 'P', 'K', 0x03, 0x04 }, "application/zip",
+        new byte[] { 0x1f, (byte) 0x8b }, "application/gzip",
+        new byte[] { 0x00, 'a', 's', 'm' }, "application/wasm"
+    };
+    
+    /**
+     * Private constructor, no instances.
+     */
+    private MimeTypes() {
+    }
+    
+    /**
+     * Detects the MIME type of a file.
+     * @param file The file.
+     * @return The MIME type.
+     * @throws IOException An IO error with the file.
+     */
+    public static String detect(File file) throws IOException {
+        
+        // the first bytes
+        byte[] head = new byte[(int) Math.min(HEAD_SIZE, file.length())];
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // let's try
+        try {
+            
+            // read them, the file may have shrunk
+            int count = 0;
+            int read;
+            while ((count < head.length) && ((read = istream.read(head, count, head.length - count)) > 0)) {
+                count = count + read;
+            }
+            
+            // detect the type
+            return detect(head, count, file.getName());
+        }
+        finally {
+            
+            // close the input stream
+            istream.close();
+        }
+    }
+    
+    /**
+     * Detects the MIME type of data from its first bytes.
+     * @param head The first bytes.
+     * @param length The number of bytes.
+     * @param name The file name, or <code>null</code> if unknown.
+     * @return The MIME type.
+     */
+    public static String detect(byte[] head, int length, String name) {
+        
+        // check the signatures
+        for (int i = 0; i < SIGNATURES.length; i = i + 2) {
+            if (startsWith(head, length, 0, (byte[]) SIGNATURES[i])) {
+                return (String) SIGNATURES[i + 1];
+            }
+        }
+        
+        // check the containers
+        if (startsWith(head, length, 0, ascii("RIFF"))) {
+            if (startsWith(head, length, 8, ascii("WEBP"))) {
+                return "image/webp";
+            }
+            if (startsWith(head, length, 8, ascii("WAVE"))) {
+                return "audio/wav";
+            }
+        }
+        if (startsWith(head, length, 4, ascii("ftyp"))) {
+            return "video/mp4";
+        }
+        
+        // two bytes are too weak for bitmaps, text may start
+        // with them, so the info header must be there as well
+        if (startsWith(head, length, 0, ascii("BM")) && isBitmap(head, length)) {
+            return "image/bmp";
+        }
+        
+        // check for text
+        if (isText(head, length)) {
+            
+            // look at the first tag
+            String text = new String(head, 0, length, StandardCharsets.ISO_8859_1).trim().toLowerCase(Locale.ENGLISH);
+            if (text.startsWith("<svg") || (text.startsWith("<?xml") && text.contains("<svg"))) {
+                return "image/svg+xml";
+            }
+            if (text.startsWith("<!doctype html") || text.startsWith("<html")) {
+                return "text/html";
+            }
+        }
+        
+        // try the file name
+        String type = (name == null) ? null : URLConnection.guessContentTypeFromName(name);
+        if (type != null) {
+            return type;
+        }
+        
+        // fall back to the generic types
+        return isText(head, length) ? TEXT : BINARY;
+    }
+    
+    /**
+     * Checks if the bytes look like text, with no control characters
+     * other than whitespace.
+     * @param head The bytes.
+     * @param length The number of bytes.
+     * @return <code>true</code> if they do.
+     */
+    private static boolean isText(byte[] head, int length) {
+        
+        // check every byte
+        for (int i = 0; i < length; i++) {
+            int b = head[i] & 0xff;
+            if ((b < 0x20) && (b != '\t') && (b != '\n') && (b != '\r') && (b != '\f')) {
+                return false;
+            }
+        }
+        
+        // they do
+        return true;
+    }
+    
+    /**
+     * Checks if the bytes after the bitmap signature hold the size of a
+     * known info header, at offset 14, in little endian order.
+     * @param head The first bytes.
+     * @param length The number of bytes.
+     * @return <code>true</code> if they do.
+     */
+    private static boolean isBitmap(byte[] head, int length) {
+        
+        // check if the size is there
+        if (length < 18) {
+            return false;
+        }
+        
+        // read it
+        int size = (head[14] & 0xff) | ((head[15] & 0xff) << 8)
+                | ((head[16] & 0xff) << 16) | ((head[17] & 0xff) << 24);
+        
+        // look for it
+        for (int known : BITMAP_HEADERS) {
+            if (size == known) {
+                return true;
+            }
+        }
+        
+        // not a bitmap
+        return false;
+    }
+    
+    /**
+     * Checks if the bytes contain a signature at an offset.
+     * @param bytes The bytes.
+     * @param length The number of bytes.
+     * @param offset The offset.
+     * @param signature The signature.
+     * @return <code>true</code> if they do.
+     */
+    private static boolean startsWith(byte[] bytes, int length, int offset, byte[] signature) {
+        
+        // check the length
+        if (length < offset + signature.length) {
+            return false;
+        }
+        
+        // check every byte
+        for (int i = 0; i < signature.length; i++) {
+            if (bytes[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        
+        // they match
+        return true;
+    }
+    
+    /**
+     * Gets the bytes of an ASCII string.
+     * @param text The string.
+     * @return The bytes.
+     */
+    private static byte[] ascii(String text) {
+        
+        // convert it
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,856 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ParallelConverter.java</b>: provides parallel conversion of a
+ * single large file.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Provides parallel conversion of a single large file. Every 3 input bytes
+ * become exactly 4 output characters, plus any line separators, so a file
+ * split at 3-byte boundaries can be encoded in independent chunks, each
+ * one written straight to its own offset of the output. The chunks are
+ * encoded in a fork/join pool, either into an array or into pooled
+ * buffers written to disjoint regions of the output file. The output is
+ * never mapped, since a mapped file cannot be renamed or deleted on some
+ * platforms until the mapping is collected. Checksums, which need the bytes
+ * in order, make the input go through the pool one window at a time: the
+ * calling thread maps the window, the tasks encode their chunks from that
+ * same mapping and the calling thread feeds it to the checksums meanwhile,
+ * so the file is still read from disk only once. This class does not need
+ * to be instantiated.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class ParallelConverter {
+
+    /**
+     * Size, in bytes, of the chunks encoded by a single task. It is a
+     * multiple of the pooled buffer size, which is a multiple of 3.
+     */
+    public static final int CHUNK_SIZE = 16 * BufferPool.BUFFER_SIZE;
+    
+    /**
+     * Minimum file size, in bytes, for which a parallel conversion pays
+     * off. Smaller files are better converted sequentially.
+     */
+    public static final long THRESHOLD = 4L * CHUNK_SIZE;
+    
+    // size of the input windows shared with the checksums, small
+    // enough to stay in memory until both are done with them
+    private static final long CHECKSUM_WINDOW = 16L * CHUNK_SIZE;
+    
+    /**
+     * Private constructor, no instances.
+     */
+    private ParallelConverter() {
+    }
+    
+    /**
+     * Gets the fork/join pool used for encoding. It is created on first
+     * use and has one worker per available processor.
+     * @return The pool.
+     */
+    public static ForkJoinPool getPool() {
+        
+        // return the lazily created pool
+        return PoolHolder.POOL;
+    }
+    
+    /**
+     * Converts the file to a Base64 string, encoding its chunks in
+     * parallel.
+     * @param file The file.
+     * @return The string.
+     * @throws IOException An IO error with the file.
+     */
+    public static String convertFile(File file) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, (ProgressListener) null);
+    }
+    
+    /**
+     * Converts the file to a Base64 string, encoding its chunks in
+     * parallel and reporting the progress.
+     * @param file The file.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The string.
+     * @throws IOException An IO error with the file, or the conversion was
+     * cancelled.
+     */
+    public static String convertFile(File file, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, (Checksums) null, listener);
+    }
+    
+    /**
+     * Converts the file to a Base64 string, encoding its chunks in
+     * parallel, computing its checksums and reporting the progress.
+     * @param file The file.
+     * @param checksums The checksums, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The string.
+     * @throws IOException An IO error with the file, or the conversion was
+     * cancelled.
+     */
+    public static String convertFile(File file, Checksums checksums, ProgressListener listener) throws IOException {
+        
+        // choose the compression of this file
+        Compression compression = Compression.getDefault().choose(file);
+        
+        // compressed inputs are deflated in parallel instead
+        if (compression.isEnabled()) {
+            return TranslateUtils.convertFile(file, false, checksums, listener);
+        }
+        
+        // the format, the same for the whole input
+        Base64Format format = Base64Format.getDefault();
+        
+        // the text around the output, if any
+        EmbedTemplate template = EmbedTemplate.getDefault();
+        byte[] prefix = template.getPrefix(file, compression);
+        byte[] suffix = template.getSuffix(compression);
+        
+        // get the lengths
+        long length = file.length();
+        long encoded = format.getEncodedLength(length);
+        
+        // check if it fits in a string
+        if (prefix.length + encoded + suffix.length > Integer.MAX_VALUE) {
+            
+            // it does not, so throw an exception
+            throw new IOException("File " + file.getName() + " is too large to be converted to a string.");
+        }
+        
+        // the output, with its final size and
+        // the template straight around the payload
+        byte[] output = new byte[(int) (prefix.length + encoded + suffix.length)];
+        System.arraycopy(prefix, 0, output, 0, prefix.length);
+        System.arraycopy(suffix, 0, output, output.length - suffix.length, suffix.length);
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // let's try
+        try {
+            
+            // encode all chunks
+            invoke(new EncodeTask(istream.getChannel(), 0, length, output, prefix.length, file.getName(), format, listener), istream.getChannel(), length, checksums, listener);
+        }
+        finally {
+            
+            // close the input stream
+            istream.close();
+        }
+        
+        // Base64 is plain ASCII
+        return new String(output, StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Converts the input file to Base64, writing the result to the output
+     * file. The input is memory mapped, and every chunk of it is encoded
+     * into pooled direct buffers, which are written straight to their own
+     * region of the output, so no heap buffers are involved. The output
+     * file is created or truncated to its exact final size.
+     * @param input The input file.
+     * @param output The output file.
+     * @return The number of bytes read from the input file.
+     * @throws IOException An IO error with one of the files.
+     */
+    public static long convertFile(File input, File output) throws IOException {
+        
+        // call the proper method
+        return convertFile(input, output, null);
+    }
+    
+    /**
+     * Converts the input file to Base64, writing the result to the output
+     * file by regions and reporting the progress.
+     * @param input The input file.
+     * @param output The output file.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the input file.
+     * @throws IOException An IO error with one of the files, or the
+     * conversion was cancelled.
+     */
+    public static long convertFile(File input, File output, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertFile(input, output, null, listener);
+    }
+    
+    /**
+     * Converts the input file to Base64, writing the result to the output
+     * file by regions, computing the checksums of the input and reporting
+     * the progress.
+     * @param input The input file.
+     * @param output The output file.
+     * @param checksums The checksums, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the input file.
+     * @throws IOException An IO error with one of the files, or the
+     * conversion was cancelled.
+     */
+    public static long convertFile(File input, File output, Checksums checksums, ProgressListener listener) throws IOException {
+        
+        // choose the compression of this file
+        Compression compression = Compression.getDefault().choose(input);
+        
+        // the text around the output, if any
+        EmbedTemplate template = EmbedTemplate.getDefault();
+        byte[] prefix = template.getPrefix(input, compression);
+        byte[] suffix = template.getSuffix(compression);
+        
+        // compressed inputs are deflated in parallel instead,
+        // and their output length is not known up front
+        if (compression.isEnabled()) {
+            
+            // create the output stream
+            OutputStream ostream = new BufferedOutputStream(new FileOutputStream(output), BufferPool.BUFFER_SIZE);
+            
+            // let's try
+            try {
+                
+                // convert it, inside the template
+                ostream.write(prefix);
+                long length = TranslateUtils.convertCompressed(input, ostream, checksums, compression, listener);
+                ostream.write(suffix);
+                return length;
+            }
+            finally {
+                
+                // close the output stream
+                ostream.close();
+            }
+        }
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(input);
+        
+        // let's try
+        try {
+            
+            // get the input channel and its length
+            FileChannel source = istream.getChannel();
+            long length = source.size();
+            
+            // the format, the same for the whole input
+            Base64Format format = Base64Format.getDefault();
+            
+            // open the output file
+            RandomAccessFile ostream = new RandomAccessFile(output, "rw");
+            
+            // let's try
+            try {
+                
+                // set its final size up front
+                long encoded = format.getEncodedLength(length);
+                ostream.setLength(prefix.length + encoded + suffix.length);
+                
+                // the template goes straight around the payload
+                write(ostream.getChannel(), prefix, 0);
+                write(ostream.getChannel(), suffix, prefix.length + encoded);
+                
+                // encode all chunks, if any
+                if (length > 0) {
+                    invoke(new MapTask(source, ostream.getChannel(), 0, length, prefix.length, format, listener), source, length, checksums, listener);
+                }
+            }
+            finally {
+                
+                // close the output file
+                ostream.close();
+            }
+            
+            // return the length
+            return length;
+        }
+        finally {
+            
+            // close the input stream
+            istream.close();
+        }
+    }
+    
+    /**
+     * Runs a task in the pool, unwrapping IO errors raised by it.
+     * @param task The task.
+     * @throws IOException An IO error raised by the task.
+     */
+    static void invoke(RecursiveAction task) throws IOException {
+        
+        // let's try
+        try {
+            
+            // run the task and wait for it
+            getPool().invoke(task);
+        }
+        catch (TaskException e) {
+            
+            // throw the original exception
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Runs a task in the pool, unwrapping IO errors raised by it. With
+     * checksums, the input is mapped one window at a time, in order, and
+     * every window is encoded by a part of the task, reading from the
+     * mapping, while the calling thread feeds the same mapping to the
+     * checksums.
+     * @param task The task.
+     * @param channel The input channel.
+     * @param length The input length.
+     * @param checksums The checksums, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @throws IOException An IO error raised by the task or with the
+     * input, or the conversion was cancelled.
+     */
+    static void invoke(RangeTask task, FileChannel channel, long length, Checksums checksums, ProgressListener listener) throws IOException {
+        
+        // check if there is anything to compute
+        if (checksums == null) {
+            invoke(task);
+            return;
+        }
+        
+        // go through every window, in order
+        for (long position = 0; position < length; position = position + CHECKSUM_WINDOW) {
+            
+            // check if we should stop
+            TranslateUtils.report(listener, 0);
+            
+            // map the window, its pages are read from disk once
+            long next = Math.min(length, position + CHECKSUM_WINDOW);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, next - position);
+            
+            // and start encoding it
+            RangeTask part = task.subtask(position, next).inWindow(window, position);
+            getPool().execute(part);
+            
+            // let's try
+            try {
+                
+                // feed the same window to the checksums meanwhile
+                checksums.update(window.duplicate());
+            }
+            finally {
+                
+                // let the encoding of the window finish
+                part.quietlyJoin();
+            }
+            
+            // let's try
+            try {
+                
+                // check how it went
+                part.join();
+            }
+            catch (TaskException e) {
+                
+                // throw the original exception
+                throw e.getCause();
+            }
+        }
+    }
+    
+    /**
+     * Writes bytes at a position of a channel.
+     * @param channel The channel.
+     * @param bytes The bytes.
+     * @param position The position.
+     * @throws IOException An IO error with the channel.
+     */
+    private static void write(FileChannel channel, byte[] bytes, long position) throws IOException {
+        
+        // write everything
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+    
+    /**
+     * Gets the middle of an input range, aligned to a chunk boundary.
+     * @param start The start of the range.
+     * @param end The end of the range.
+     * @return The middle of the range.
+     */
+    static long split(long start, long end) {
+        
+        // count the chunks, the last one may be partial
+        long chunks = (end - start + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        
+        // split them in half
+        return start + (chunks / 2) * CHUNK_SIZE;
+    }
+    
+    /**
+     * Holds the pool, so it is only created when needed.
+     */
+    private static class PoolHolder {
+        
+        // the pool
+        static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+    
+    /**
+     * Wraps an IO error raised inside a task, since tasks cannot throw
+     * checked exceptions.
+     */
+    static class TaskException extends RuntimeException {
+        
+        // the serialization version
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * Constructor method.
+         * @param cause The IO error.
+         */
+        TaskException(IOException cause) {
+            
+            // call the super constructor
+            super(cause);
+        }
+        
+        /**
+         * Gets the IO error.
+         * @return The IO error.
+         */
+        @Override
+        public synchronized IOException getCause() {
+            
+            // it is always an IO error
+            return (IOException) super.getCause();
+        }
+    }
+    
+    /**
+     * Encodes a range of the input, splitting it in half while it has more
+     * than one chunk. The start of every range is a multiple of 3, so the
+     * output offset of a range is known before it is encoded.
+     */
+    private abstract static class RangeTask extends RecursiveAction {
+        
+        // the serialization version
+        private static final long serialVersionUID = 1L;
+        
+        // the range
+        protected final long start;
+        protected final long end;
+        
+        // where the output of the whole input starts,
+        // after the prefix of the template, if any
+        protected final long base;
+        
+        // the output format
+        protected final Base64Format format;
+        
+        // the progress listener
+        protected final ProgressListener listener;
+        
+        // the mapped input window holding the range, if any
+        protected ByteBuffer window;
+        
+        // and where it starts in the input
+        protected long windowStart;
+        
+        /**
+         * Constructor method.
+         * @param start The start of the range.
+         * @param end The end of the range.
+         * @param base Where the output of the whole input starts.
+         * @param format The output format.
+         * @param listener The progress listener, or <code>null</code>.
+         */
+        RangeTask(long start, long end, long base, Base64Format format, ProgressListener listener) {
+            
+            // set the values
+            this.start = start;
+            this.end = end;
+            this.base = base;
+            this.format = format;
+            this.listener = listener;
+        }
+        
+        /**
+         * Creates a task for a part of this range.
+         * @param start The start of the part.
+         * @param end The end of the part.
+         * @return The new task.
+         */
+        protected abstract RangeTask subtask(long start, long end);
+        
+        /**
+         * Makes this task read its range from a mapped window of the input
+         * instead of the input itself. It must be called before the task
+         * runs.
+         * @param window The window, holding the whole range.
+         * @param windowStart Where the window starts in the input.
+         * @return This task.
+         */
+        RangeTask inWindow(ByteBuffer window, long windowStart) {
+            
+            // set the values
+            this.window = window;
+            this.windowStart = windowStart;
+            
+            // return it
+            return this;
+        }
+        
+        /**
+         * Encodes the whole range, which has at most one chunk.
+         * @throws IOException An IO error while encoding.
+         */
+        protected abstract void encode() throws IOException;
+        
+        /**
+         * Encodes the range.
+         */
+        @Override
+        protected void compute() {
+            
+            // check if the range is small enough
+            if (end - start <= CHUNK_SIZE) {
+                
+                // let's try
+                try {
+                    
+                    // it is, so encode it right here
+                    encode();
+                }
+                catch (IOException e) {
+                    
+                    // wrap the exception
+                    throw new TaskException(e);
+                }
+            }
+            else {
+                
+                // split the range in half and
+                // encode both halves in parallel
+                long middle = split(start, end);
+                invokeAll(subtask(start, middle).inWindow(window, windowStart), subtask(middle, end).inWindow(window, windowStart));
+            }
+        }
+    }
+    
+    /**
+     * Encodes a range of the input channel into its place of the output
+     * array.
+     */
+    private static class EncodeTask extends RangeTask {
+        
+        // the serialization version
+        private static final long serialVersionUID = 1L;
+        
+        // the input channel
+        private final FileChannel channel;
+        
+        // the output
+        private final byte[] output;
+        
+        // the file name, for error messages
+        private final String name;
+        
+        /**
+         * Constructor method.
+         * @param channel The input channel.
+         * @param start The start of the range.
+         * @param end The end of the range.
+         * @param output The output array.
+         * @param base Where the output of the whole input starts.
+         * @param name The file name.
+         * @param format The output format.
+         * @param listener The progress listener, or <code>null</code>.
+         */
+        EncodeTask(FileChannel channel, long start, long end, byte[] output, long base, String name, Base64Format format, ProgressListener listener) {
+            
+            // set the values
+            super(start, end, base, format, listener);
+            this.channel = channel;
+            this.output = output;
+            this.name = name;
+        }
+        
+        /**
+         * Creates a task for a part of this range.
+         * @param start The start of the part.
+         * @param end The end of the part.
+         * @return The new task.
+         */
+        @Override
+        protected RangeTask subtask(long start, long end) {
+            
+            // same channel and output
+            return new EncodeTask(channel, start, end, output, base, name, format, listener);
+        }
+        
+        /**
+         * Reads and encodes the range, one pooled buffer at a time, or
+         * straight from its window, if any.
+         * @throws IOException An IO error while reading.
+         */
+        @Override
+        protected void encode() throws IOException {
+            
+            // check if the range is mapped already
+            if (window != null) {
+                
+                // a view of the window, only this task moves it
+                ByteBuffer input = window.duplicate();
+                
+                // encode every block of it
+                for (long position = start; position < end; position = position + BufferPool.BUFFER_SIZE) {
+                    
+                    // select the block
+                    long next = Math.min(end, position + BufferPool.BUFFER_SIZE);
+                    input.limit((int) (next - windowStart)).position((int) (position - windowStart));
+                    
+                    // encode it at its precomputed offset
+                    format.encode(input, output, (int) (base + format.getEncodedLength(position)), position);
+                    
+                    // report the progress
+                    TranslateUtils.report(listener, next - position);
+                }
+                
+                // done
+                return;
+            }
+            
+            // get a buffer from the pool
+            BufferPool pool = BufferPool.getDefault();
+            ByteBuffer buffer = pool.acquire();
+            
+            // let's try
+            try {
+                
+                // current position
+                long position = start;
+                
+                // read every block
+                while (position < end) {
+                    
+                    // prepare the buffer for this block
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                    
+                    // fill it, reading from the exact position,
+                    // which is safe to do from many threads
+                    while (buffer.hasRemaining()) {
+                        
+                        // check for a premature end
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            
+                            // throw an exception
+                            throw new IOException("Could not completely read file " + name);
+                        }
+                    }
+                    
+                    // encode the block at its precomputed offset
+                    buffer.flip();
+                    format.encode(buffer, output, (int) (base + format.getEncodedLength(position)), position);
+                    
+                    // report the progress
+                    TranslateUtils.report(listener, buffer.limit());
+                    
+                    // move on
+                    position = position + buffer.capacity();
+                }
+            }
+            finally {
+                
+                // give the buffer back
+                pool.release(buffer);
+            }
+        }
+    }
+    
+    /**
+     * Encodes a range of the mapped input into its own region of the
+     * output. Regions of different tasks never overlap, and every piece is
+     * encoded into a pooled buffer and written at its exact position.
+     */
+    private static class MapTask extends RangeTask {
+        
+        // the serialization version
+        private static final long serialVersionUID = 1L;
+        
+        // the channels
+        private final FileChannel source;
+        private final FileChannel target;
+        
+        /**
+         * Constructor method.
+         * @param source The input channel.
+         * @param target The output channel.
+         * @param start The start of the range.
+         * @param end The end of the range.
+         * @param base Where the output of the whole input starts.
+         * @param format The output format.
+         * @param listener The progress listener, or <code>null</code>.
+         */
+        MapTask(FileChannel source, FileChannel target, long start, long end, long base, Base64Format format, ProgressListener listener) {
+            
+            // set the values
+            super(start, end, base, format, listener);
+            this.source = source;
+            this.target = target;
+        }
+        
+        /**
+         * Creates a task for a part of this range.
+         * @param start The start of the part.
+         * @param end The end of the part.
+         * @return The new task.
+         */
+        @Override
+        protected RangeTask subtask(long start, long end) {
+            
+            // same channels
+            return new MapTask(source, target, start, end, base, format, listener);
+        }
+        
+        /**
+         * Maps the range, unless its window is mapped already, and encodes
+         * it, one pooled buffer of output at a time.
+         * @throws IOException An IO error while mapping or writing.
+         */
+        @Override
+        protected void encode() throws IOException {
+            
+            // map the input range, it is only read,
+            // unless its window is mapped already
+            long mapped = (window != null) ? windowStart : start;
+            ByteBuffer input = (window != null) ? window.duplicate() : source.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            
+            // get a buffer from the pool
+            BufferPool pool = BufferPool.getDefault();
+            ByteBuffer buffer = pool.acquire();
+            
+            // let's try
+            try {
+                
+                // the longest piece whose output fits in the buffer
+                int step = getStep(format, buffer.capacity());
+                
+                // encode every piece
+                for (long position = start; position < end; position = position + step) {
+                    
+                    // select the piece
+                    long next = Math.min(end, position + step);
+                    input.limit((int) (next - mapped)).position((int) (position - mapped));
+                    
+                    // encode it
+                    buffer.clear();
+                    format.encode(input, buffer, position);
+                    buffer.flip();
+                    
+                    // write it at its precomputed offset,
+                    // which is safe to do from many threads
+                    long offset = base + format.getEncodedLength(position);
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer, offset + buffer.position());
+                    }
+                    
+                    // report the progress
+                    TranslateUtils.report(listener, next - position);
+                }
+            }
+            finally {
+                
+                // give the buffer back
+                pool.release(buffer);
+            }
+        }
+        
+        /**
+         * Gets the longest piece, a multiple of 3, whose output always
+         * fits in a buffer.
+         * @param format The output format.
+         * @param capacity The buffer capacity.
+         * @return The piece length, in bytes.
+         */
+        private static int getStep(Base64Format format, int capacity) {
+            
+            // start without any separators
+            int step = (capacity / 4) * 3;
+            
+            // and shorten it until the separators fit too,
+            // every 3 bytes less are at least 4 characters less
+            int excess;
+            while ((excess = format.getMaxEncodedLength(step) - capacity) > 0) {
+                step = step - 3 * ((excess + 3) / 4);
+            }
+            
+            // return it
+            return step;
+        }
+    }
+}
@@ -57,15 +57,23 @@ import com.ezware.dialog.task.TaskDialogs;
 import java.awt.Toolkit;
 import java.awt.Window;
 import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.ClipboardOwner;
 import java.awt.datatransfer.StringSelection;
+import java.awt.datatransfer.Transferable;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Random;
 import javax.swing.UIManager;
-import org.apache.commons.codec.binary.Base64;
 
 /**
  * Provides static helper methods to Translate 64. This class does not need
@@ -76,6 +84,14 @@ import org.apache.commons.codec.binary.Base64;
  */
 public class TranslateUtils {
 
+    /**
+     * Size, in bytes, of each block read from the input when streaming a
+     * conversion. It is a multiple of 3, so every block but the last one
+     * is encoded without padding and the encoded blocks can simply be
+     * concatenated.
+     */
+    public static final int BLOCK_SIZE = 3 * 16 * 1024;
+
     /**
      * Set the native look and feel.
      */
@@ -157,13 +173,14 @@ public class TranslateUtils {
     }
     
     /**
-     *  Returns the contents of the file in a byte array.
+     * Returns the contents of the file in a byte array.
+     * @param file The file.
+     * @return The contents of the file.
+     * @throws IOException An IO error with the file, or the file is too
+     * large to fit in an array.
      */
     public static byte[] getBytesFromFile(File file) throws IOException {
         
-        // create an input stream
-        InputStream istream = new FileInputStream(file);
-
         // get the size
         long length = file.length();
 
@@ -171,35 +188,44 @@ public class TranslateUtils {
         if (length > Integer.MAX_VALUE) {
             
             // file is too large
+            throw new IOException("File " + file.getName() + " is too large to be read into memory.");
         }
 
-        // create the byte array
-        byte[] bytes = new byte[(int)length];
-
-        // read in the bytes
-        int offset = 0;
-        
-        // counter
-        int numRead = 0;
+        // create an input stream
+        InputStream istream = new FileInputStream(file);
         
-        // do the trick
-        while (offset < bytes.length
-               && (numRead=istream.read(bytes, offset, bytes.length-offset)) >= 0) {
-            offset += numRead;
+        // let's try
+        try {
+            
+            // create the byte array
+            byte[] bytes = new byte[(int)length];
+            
+            // ensure all the bytes have been read in
+            if (readBlock(istream, bytes) < bytes.length) {
+                
+                // throw an exception
+                throw new IOException("Could not completely read file "+file.getName());
+            }
+            
+            // return bytes
+            return bytes;
         }
-
-        // ensure all the bytes have been read in
-        if (offset < bytes.length) {
+        finally {
             
-            // throw an exception
-            throw new IOException("Could not completely read file "+file.getName());
+            // close the input stream
+            istream.close();
         }
-
-        // close the input stream
-        istream.close();
+    }
+    
+    /**
+     * Gets the length of the Base64 string for a certain input length.
+     * @param length The input length, in bytes.
+     * @return The encoded length, in characters.
+     */
+    public static long getEncodedLength(long length) {
         
-        // return bytes
-        return bytes;
+        // every 3 bytes, or part of it, become 4 characters
+        return ((length + 2) / 3) * 4;
     }
     
     /**
@@ -210,11 +236,687 @@ public class TranslateUtils {
      */
     public static String convertFile(File file) throws IOException {
         
-        // call the method from Apache Commons Codec
-        String output = Base64.encodeBase64String(getBytesFromFile(file));
+        // call the proper method
+        return convertFile(file, false, null);
+    }
+    
+    /**
+     * Converts the file to a Base64 string, optionally encoding it in
+     * parallel. Files smaller than {@link ParallelConverter#THRESHOLD} are
+     * always converted sequentially.
+     * @param file The file.
+     * @param parallel Whether large files should be encoded in parallel.
+     * @return The string.
+     * @throws IOException An IO error with the file.
+     */
+    public static String convertFile(File file, boolean parallel) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, parallel, null);
+    }
+    
+    /**
+     * Converts the file to a Base64 string, optionally encoding it in
+     * parallel and reporting the progress. Files smaller than
+     * {@link ParallelConverter#THRESHOLD} are always converted
+     * sequentially.
+     * @param file The file.
+     * @param parallel Whether large files should be encoded in parallel.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The string.
+     * @throws IOException An IO error with the file, or the conversion was
+     * cancelled.
+     */
+    public static String convertFile(File file, boolean parallel, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, parallel, null, listener);
+    }
+    
+    /**
+     * Converts the file to a Base64 string, optionally encoding it in
+     * parallel, computing its checksums in the same pass and reporting the
+     * progress. Files smaller than {@link ParallelConverter#THRESHOLD} are
+     * always converted sequentially.
+     * @param file The file.
+     * @param parallel Whether large files should be encoded in parallel.
+     * @param checksums The checksums, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The string.
+     * @throws IOException An IO error with the file, or the conversion was
+     * cancelled.
+     */
+    public static String convertFile(File file, boolean parallel, Checksums checksums, ProgressListener listener) throws IOException {
+        
+        // choose the compression of this file
+        Compression compression = Compression.getDefault().choose(file);
+        
+        // compressed inputs have no known length,
+        // and are deflated in parallel anyway
+        if (compression.isEnabled()) {
+            
+            // encode them into a growing array,
+            // with the template around them
+            EmbedTemplate template = EmbedTemplate.getDefault();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(template.getPrefix(file, compression));
+            convertCompressed(file, output, checksums, compression, listener);
+            output.write(template.getSuffix(compression));
+            
+            // Base64 is plain ASCII
+            return new String(output.toByteArray(), StandardCharsets.US_ASCII);
+        }
+        
+        // check if it is worth going parallel
+        if (parallel && (file.length() >= ParallelConverter.THRESHOLD)) {
+            
+            // it is, so split the work
+            return ParallelConverter.convertFile(file, checksums, listener);
+        }
+        
+        // the format, the same for the whole input
+        Base64Format format = Base64Format.getDefault();
+        
+        // the text around the output, if any
+        EmbedTemplate template = EmbedTemplate.getDefault();
+        byte[] prefix = template.getPrefix(file, compression);
+        byte[] suffix = template.getSuffix(compression);
+        
+        // get the final length
+        long length = format.getEncodedLength(file.length());
+        
+        // check if it fits in a string
+        if (prefix.length + length + suffix.length > Integer.MAX_VALUE) {
+            
+            // it does not, so throw an exception
+            throw new IOException("File " + file.getName() + " is too large to be converted to a string.");
+        }
+        
+        // the output, with its final size, so the only
+        // allocations are this array and the string
+        byte[] output = new byte[(int) (prefix.length + length + suffix.length)];
+        
+        // the template goes straight around the payload
+        System.arraycopy(prefix, 0, output, 0, prefix.length);
+        System.arraycopy(suffix, 0, output, output.length - suffix.length, suffix.length);
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // read through the checksums, if any
+        ReadableByteChannel channel = (checksums == null) ? istream.getChannel() : checksums.wrap(istream.getChannel());
+        
+        // get a buffer from the pool
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquire();
+        
+        // let's try
+        try {
+            
+            // where to read and write
+            long position = 0;
+            int offset = prefix.length;
+            
+            // counter
+            int count;
+            
+            // read every block
+            while ((count = readBlock(channel, buffer)) > 0) {
+                
+                // check if the file grew in the meantime
+                if (format.getEncodedLength(position + count) > length) {
+                    throw new IOException("File " + file.getName() + " changed while being converted.");
+                }
+                
+                // encode it straight into the output
+                offset = offset + format.encode(buffer, output, offset, position);
+                position = position + count;
+                
+                // report the progress
+                report(listener, count);
+            }
+            
+            // check if the file shrank in the meantime
+            if (offset < prefix.length + length) {
+                throw new IOException("Could not completely read file " + file.getName());
+            }
+        }
+        finally {
+            
+            // give the buffer back
+            pool.release(buffer);
+            
+            // close the input stream
+            istream.close();
+        }
+        
+        // Base64 is plain ASCII
+        return new String(output, StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Converts the file to Base64, writing the result to an output stream.
+     * @param file The file.
+     * @param output The output stream. It is not closed.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with the file or the stream.
+     */
+    public static long convertFile(File file, OutputStream output) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, output, null);
+    }
+    
+    /**
+     * Converts the file to Base64, writing the result to an output stream and
+     * reporting the progress.
+     * @param file The file.
+     * @param output The output stream. It is not closed.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with the file or the stream, or the
+     * conversion was cancelled.
+     */
+    public static long convertFile(File file, OutputStream output, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, output, null, listener);
+    }
+    
+    /**
+     * Converts the file to Base64, writing the result to an output stream,
+     * computing its checksums in the same pass and reporting the progress.
+     * @param file The file.
+     * @param output The output stream. It is not closed.
+     * @param checksums The checksums, or <code>null</code> for none.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with the file or the stream, or the
+     * conversion was cancelled.
+     */
+    public static long convertFile(File file, OutputStream output, Checksums checksums, ProgressListener listener) throws IOException {
+        
+        // choose the compression of this file
+        Compression compression = Compression.getDefault().choose(file);
+        
+        // the text around the output, if any
+        EmbedTemplate template = EmbedTemplate.getDefault();
+        output.write(template.getPrefix(file, compression));
+        
+        // the number of bytes read
+        long length;
+        
+        // check for compression
+        if (compression.isEnabled()) {
+            length = convertCompressed(file, output, checksums, compression, listener);
+        }
+        else {
+            
+            // create an input stream
+            FileInputStream istream = new FileInputStream(file);
+            
+            // let's try
+            try {
+                
+                // stream the conversion from the file channel,
+                // read through the checksums, if any
+                length = convertChannel((checksums == null) ? istream.getChannel() : checksums.wrap(istream.getChannel()), output, listener);
+            }
+            finally {
+                
+                // close the input stream
+                istream.close();
+            }
+        }
+        
+        // close the template
+        output.write(template.getSuffix(compression));
+        
+        // return the length
+        return length;
+    }
+    
+    /**
+     * Converts the file to Base64, writing the result to a writer.
+     * @param file The file.
+     * @param output The writer. It is not closed.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with the file or the writer.
+     */
+    public static long convertFile(File file, Writer output) throws IOException {
+        
+        // call the proper method
+        return convertFile(file, output, null);
+    }
+    
+    /**
+     * Converts the file to Base64, writing the result to a writer and
+     * reporting the progress.
+     * @param file The file.
+     * @param output The writer. It is not closed.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with the file or the writer, or the
+     * conversion was cancelled.
+     */
+    public static long convertFile(File file, Writer output, ProgressListener listener) throws IOException {
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // let's try
+        try {
+            
+            // choose the compression of this file
+            Compression compression = Compression.getDefault().choose(file);
+            
+            // the text around the output, if any
+            EmbedTemplate template = EmbedTemplate.getDefault();
+            output.write(new String(template.getPrefix(file, compression), StandardCharsets.US_ASCII));
+            
+            // the number of bytes read
+            long length;
+            
+            // check for compression
+            if (compression.isEnabled()) {
+                
+                // stream the conversion from the deflated channel
+                DeflateChannel channel = new DeflateChannel(istream.getChannel(), compression, listener);
+                convertChannel(channel, output, null);
+                length = channel.getInputLength();
+            }
+            else {
+                
+                // stream the conversion from the file channel
+                length = convertChannel(istream.getChannel(), output, listener);
+            }
+            
+            // close the template
+            output.write(new String(template.getSuffix(compression), StandardCharsets.US_ASCII));
+            
+            // return the length
+            return length;
+        }
+        finally {
+            
+            // close the input stream
+            istream.close();
+        }
+    }
+    
+    /**
+     * Converts the file to Base64 after compressing it, writing the result
+     * to an output stream.
+     * @param file The file.
+     * @param output The output stream. It is not closed.
+     * @param checksums The checksums of the uncompressed file, or
+     * <code>null</code> for none.
+     * @param compression The compression of the file.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the file.
+     * @throws IOException An IO error with the file or the stream, or the
+     * conversion was cancelled.
+     */
+    static long convertCompressed(File file, OutputStream output, Checksums checksums, Compression compression, ProgressListener listener) throws IOException {
+        
+        // create an input stream
+        FileInputStream istream = new FileInputStream(file);
+        
+        // let's try
+        try {
+            
+            // read through the checksums, if any, then deflate
+            ReadableByteChannel input = (checksums == null) ? istream.getChannel() : checksums.wrap(istream.getChannel());
+            DeflateChannel channel = new DeflateChannel(input, compression, listener);
+            
+            // stream the conversion, the deflater reports the progress
+            convertChannel(channel, output, null);
+            
+            // return the length
+            return channel.getInputLength();
+        }
+        finally {
+            
+            // close the input stream
+            istream.close();
+        }
+    }
+    
+    /**
+     * Converts an input stream to Base64, writing the result to an output
+     * stream. The input is read in blocks of {@link #BLOCK_SIZE} bytes, so
+     * the memory used does not depend on the input size.
+     * @param input The input stream. It is not closed.
+     * @param output The output stream. It is not closed.
+     * @return The number of bytes read from the input stream.
+     * @throws IOException An IO error with one of the streams.
+     */
+    public static long convertStream(InputStream input, OutputStream output) throws IOException {
+        
+        // the block
+        byte[] block = new byte[BLOCK_SIZE];
+        
+        // the format, the same for the whole input
+        Base64Format format = Base64Format.getDefault();
+        
+        // the encoded block, reused every time
+        byte[] encoded = new byte[format.getMaxEncodedLength(BLOCK_SIZE)];
+        
+        // total of bytes read
+        long total = 0;
+        
+        // counter
+        int count;
+        
+        // read every block
+        while ((count = readBlock(input, block)) > 0) {
+            
+            // encode and write it
+            output.write(encoded, 0, format.encode(block, 0, count, encoded, 0, total));
+            
+            // update the total
+            total = total + count;
+        }
+        
+        // return the total
+        return total;
+    }
+    
+    /**
+     * Converts an input stream to Base64, writing the result to a writer.
+     * The input is read in blocks of {@link #BLOCK_SIZE} bytes, so the
+     * memory used does not depend on the input size.
+     * @param input The input stream. It is not closed.
+     * @param output The writer. It is not closed.
+     * @return The number of bytes read from the input stream.
+     * @throws IOException An IO error with the stream or the writer.
+     */
+    public static long convertStream(InputStream input, Writer output) throws IOException {
+        
+        // the block
+        byte[] block = new byte[BLOCK_SIZE];
+        
+        // the format, the same for the whole input
+        Base64Format format = Base64Format.getDefault();
+        
+        // the encoded block and its characters, reused every time
+        byte[] encoded = new byte[format.getMaxEncodedLength(BLOCK_SIZE)];
+        char[] chars = new char[encoded.length];
+        
+        // total of bytes read
+        long total = 0;
+        
+        // counter
+        int count;
+        
+        // read every block
+        while ((count = readBlock(input, block)) > 0) {
+            
+            // encode it
+            int length = format.encode(block, 0, count, encoded, 0, total);
+            
+            // Base64 is plain ASCII, so
+            // every byte is a character
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) encoded[i];
+            }
+            
+            // write the characters
+            output.write(chars, 0, length);
+            
+            // update the total
+            total = total + count;
+        }
+        
+        // return the total
+        return total;
+    }
+    
+    /**
+     * Converts a channel to Base64, writing the result to an output stream.
+     * The channel is read into direct buffers taken from the shared
+     * {@link BufferPool}, which are encoded without being copied to the
+     * heap first.
+     * @param channel The channel. It is not closed.
+     * @param output The output stream. It is not closed.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the stream.
+     */
+    public static long convertChannel(ReadableByteChannel channel, OutputStream output) throws IOException {
+        
+        // call the proper method
+        return convertChannel(channel, output, null);
+    }
+    
+    /**
+     * Converts a channel to Base64, writing the result to an output stream.
+     * The channel is read into direct buffers taken from the shared
+     * {@link BufferPool}, which are encoded without being copied to the
+     * heap first. The progress is reported after every buffer.
+     * @param channel The channel. It is not closed.
+     * @param output The output stream. It is not closed.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the stream, or the
+     * conversion was cancelled.
+     */
+    public static long convertChannel(ReadableByteChannel channel, OutputStream output, ProgressListener listener) throws IOException {
+        
+        // call the proper method
+        return convertChannel(channel, output, Base64Format.getDefault(), listener);
+    }
+    
+    /**
+     * Converts a channel to Base64 in a certain format, writing the result
+     * to an output stream. The channel is read into direct buffers taken
+     * from the shared {@link BufferPool}, which are encoded without being
+     * copied to the heap first. The progress is reported after every
+     * buffer.
+     * @param channel The channel. It is not closed.
+     * @param output The output stream. It is not closed.
+     * @param format The format.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the stream, or the
+     * conversion was cancelled.
+     */
+    public static long convertChannel(ReadableByteChannel channel, OutputStream output, Base64Format format, ProgressListener listener) throws IOException {
+        
+        // get a buffer from the pool
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquire();
+        
+        // let's try
+        try {
+            
+            // the encoded bytes of a buffer
+            byte[] encoded = new byte[format.getMaxEncodedLength(buffer.capacity())];
+            
+            // total of bytes read
+            long total = 0;
+            
+            // counter
+            int count;
+            
+            // read every block
+            while ((count = readBlock(channel, buffer)) > 0) {
+                
+                // encode and write it
+                output.write(encoded, 0, format.encode(buffer, encoded, 0, total));
+                
+                // update the total
+                total = total + count;
+                
+                // report the progress
+                report(listener, count);
+            }
+            
+            // return the total
+            return total;
+        }
+        finally {
+            
+            // give the buffer back
+            pool.release(buffer);
+        }
+    }
+    
+    /**
+     * Converts a channel to Base64, writing the result to a writer. The
+     * channel is read into direct buffers taken from the shared
+     * {@link BufferPool}, which are encoded without being copied to the
+     * heap first.
+     * @param channel The channel. It is not closed.
+     * @param output The writer. It is not closed.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the writer.
+     */
+    public static long convertChannel(ReadableByteChannel channel, Writer output) throws IOException {
+        
+        // call the proper method
+        return convertChannel(channel, output, null);
+    }
+    
+    /**
+     * Converts a channel to Base64, writing the result to a writer. The
+     * channel is read into direct buffers taken from the shared
+     * {@link BufferPool}, which are encoded without being copied to the
+     * heap first. The progress is reported after every buffer.
+     * @param channel The channel. It is not closed.
+     * @param output The writer. It is not closed.
+     * @param listener The progress listener, or <code>null</code>.
+     * @return The number of bytes read from the channel.
+     * @throws IOException An IO error with the channel or the writer, or the
+     * conversion was cancelled.
+     */
+    public static long convertChannel(ReadableByteChannel channel, Writer output, ProgressListener listener) throws IOException {
+        
+        // the format, the same for the whole input
+        Base64Format format = Base64Format.getDefault();
+        
+        // get a buffer from the pool
+        BufferPool pool = BufferPool.getDefault();
+        ByteBuffer buffer = pool.acquire();
+        
+        // let's try
+        try {
+            
+            // the encoded bytes of a buffer
+            byte[] encoded = new byte[format.getMaxEncodedLength(buffer.capacity())];
+            
+            // and their characters
+            char[] chars = new char[encoded.length];
+            
+            // total of bytes read
+            long total = 0;
+            
+            // counter
+            int count;
+            
+            // read every block
+            while ((count = readBlock(channel, buffer)) > 0) {
+                
+                // encode it
+                int length = format.encode(buffer, encoded, 0, total);
+                
+                // Base64 is plain ASCII, so
+                // every byte is a character
+                for (int i = 0; i < length; i++) {
+                    chars[i] = (char) encoded[i];
+                }
+                
+                // write the characters
+                output.write(chars, 0, length);
+                
+                // update the total
+                total = total + count;
+                
+                // report the progress
+                report(listener, count);
+            }
+            
+            // return the total
+            return total;
+        }
+        finally {
+            
+            // give the buffer back
+            pool.release(buffer);
+        }
+    }
+    
+    /**
+     * Reports a processed block to the listener, first checking if the
+     * conversion was cancelled.
+     * @param listener The progress listener, or <code>null</code>.
+     * @param bytes The number of bytes in the block.
+     * @throws InterruptedIOException The conversion was cancelled.
+     */
+    static void report(ProgressListener listener, long bytes) throws InterruptedIOException {
+        
+        // check if there is a listener
+        if (listener != null) {
+            
+            // check if we should stop
+            if (listener.isCancelled()) {
+                throw new InterruptedIOException("The conversion was cancelled.");
+            }
+            
+            // report the block
+            listener.bytesProcessed(bytes);
+        }
+    }
+    
+    /**
+     * Fills a buffer with bytes from the channel and flips it. Only the
+     * last block of the channel may be partially filled.
+     * @param channel The channel.
+     * @param buffer The buffer.
+     * @return The number of bytes read, or 0 at the end of the channel.
+     * @throws IOException An IO error with the channel.
+     */
+    static int readBlock(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        
+        // start from scratch
+        buffer.clear();
+        
+        // do the trick
+        while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+            
+            // keep reading
+        }
+        
+        // prepare for encoding
+        buffer.flip();
         
-        // return the string
-        return output;
+        // return what we have
+        return buffer.remaining();
+    }
+    
+    /**
+     * Fills a block with bytes from the input stream. Only the last block
+     * of the stream may be partially filled.
+     * @param input The input stream.
+     * @param block The block.
+     * @return The number of bytes read, or 0 at the end of the stream.
+     * @throws IOException An IO error with the stream.
+     */
+    private static int readBlock(InputStream input, byte[] block) throws IOException {
+        
+        // read in the bytes
+        int offset = 0;
+        
+        // counter
+        int numRead = 0;
+        
+        // do the trick
+        while (offset < block.length
+               && (numRead = input.read(block, offset, block.length - offset)) >= 0) {
+            offset += numRead;
+        }
+        
+        // return what we have
+        return offset;
     }
     
     /*
@@ -229,6 +931,20 @@ public class TranslateUtils {
         clipboard.setContents(new StringSelection(text), null);
     }
     
+    /**
+     * Set the content of the clipboard. If the content wants to know when
+     * it is replaced, it is registered as the clipboard owner.
+     * @param contents The content.
+     */
+    public static void setClipboardContents(Transferable contents) {
+        
+        // create a new clipboard instance
+        Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+        
+        // set the contents
+        clipboard.setContents(contents, contents instanceof ClipboardOwner ? (ClipboardOwner) contents : null);
+    }
+    
     /**
      * Gets a random funny message.
      * @return The random message.
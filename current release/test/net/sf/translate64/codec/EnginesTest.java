@@ -0,0 +1,451 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>EnginesTest.java</b>: cross-checks every available engine against
+ * the JDK encoder.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import net.sf.translate64.util.Base64Encoder;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cross-checks every available engine against the encoders of the JDK,
+ * in both alphabets, through arrays, heap buffers and direct buffers, at
+ * odd offsets and in pieces. The vector engine is only checked when the JVM adds its module.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class EnginesTest {
+
+    // input lengths around the steps of the engines
+    private static final int[] LENGTHS = { 0, 1, 2, 3, 4, 5, 11, 12, 13, 47, 48, 49, 63, 64, 65, 95, 96, 97, 1000, 65537 };
+    
+    // offsets of the inputs and the outputs
+    private static final int[] OFFSETS = { 0, 1, 3, 7 };
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Checks that the engines every JDK has are there, once each.
+     */
+    @Test
+    public void testEngines() {
+        
+        // the engines
+        List<String> names = Engines.getNames();
+        
+        // check the usual ones
+        assertTrue(names.contains(InHouseEngine.NAME));
+        assertTrue(names.contains(SwarEngine.NAME));
+        assertNotNull(Engines.getDefault());
+        
+        // check the names are unique
+        assertEquals(names.size(), new HashSet<String>(names).size());
+    }
+    
+    /**
+     * Checks that the 48 bit engine is the default one, unless the system
+     * property names another.
+     */
+    @Test
+    public void testDefault() {
+        
+        // the default one
+        Engines.setDefault(null);
+        assertEquals(SwarEngine.NAME, Engines.getDefault().getName());
+        
+        // named by the system property
+        System.setProperty(Engines.PROPERTY, InHouseEngine.NAME);
+        Engines.setDefault(null);
+        assertEquals(InHouseEngine.NAME, Engines.getDefault().getName());
+        
+        // an unknown name falls back to the default one
+        System.setProperty(Engines.PROPERTY, "unknown");
+        Engines.setDefault(null);
+        assertEquals(SwarEngine.NAME, Engines.getDefault().getName());
+        
+        // and so does the vector engine without its module
+        if (!Engines.getNames().contains("vector")) {
+            System.setProperty(Engines.PROPERTY, "vector");
+            Engines.setDefault(null);
+            assertEquals(SwarEngine.NAME, Engines.getDefault().getName());
+        }
+    }
+    
+    /**
+     * Encodes arrays at every offset.
+     */
+    @Test
+    public void testArrays() {
+        
+        // for every engine, length and offset
+        for (Base64Engine engine : Engines.getEngines()) {
+            for (int length : LENGTHS) {
+                for (int offset : OFFSETS) {
+                    
+                    // the input, in the middle of an array
+                    byte[] input = bytes(length);
+                    byte[] source = new byte[offset + length + 5];
+                    System.arraycopy(input, 0, source, offset, length);
+                    
+                    // the output, with guards around it
+                    byte[] target = new byte[offset + Base64Encoder.getEncodedLength(length) + 5];
+                    Arrays.fill(target, (byte) '!');
+                    int count = engine.encode(source, offset, length, target, offset);
+                    
+                    // check it
+                    String message = engine + ", " + length + " bytes at " + offset;
+                    assertEquals(message, expected(input), new String(target, offset, count, StandardCharsets.US_ASCII));
+                    assertGuards(message, target, offset, offset + count);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Encodes heap and direct buffers into arrays and buffers.
+     */
+    @Test
+    public void testBuffers() {
+        
+        // for every engine, length and offset
+        for (Base64Engine engine : Engines.getEngines()) {
+            for (int length : LENGTHS) {
+                for (int offset : OFFSETS) {
+                    
+                    // the input and its output
+                    byte[] input = bytes(length);
+                    String expected = expected(input);
+                    int encoded = Base64Encoder.getEncodedLength(length);
+                    
+                    // from every kind of source
+                    for (boolean directSource : new boolean[] { false, true }) {
+                        
+                        // into an array
+                        String message = engine + ", " + length + " bytes at " + offset + (directSource ? ", direct" : ", heap");
+                        ByteBuffer source = source(input, offset, directSource);
+                        byte[] array = new byte[offset + encoded + 5];
+                        Arrays.fill(array, (byte) '!');
+                        int count = engine.encode(source, array, offset);
+                        assertEquals(message, expected, new String(array, offset, count, StandardCharsets.US_ASCII));
+                        assertEquals(message, source.limit(), source.position());
+                        assertGuards(message, array, offset, offset + count);
+                        
+                        // and into every kind of target
+                        for (boolean directTarget : new boolean[] { false, true }) {
+                            
+                            // encode it
+                            source = source(input, offset, directSource);
+                            ByteBuffer target = directTarget ? ByteBuffer.allocateDirect(offset + encoded + 5) : ByteBuffer.allocate(offset + encoded + 5);
+                            target.position(offset);
+                            count = engine.encode(source, target);
+                            
+                            // check it
+                            assertEquals(message, encoded, count);
+                            assertEquals(message, offset + count, target.position());
+                            assertEquals(message, source.limit(), source.position());
+                            assertEquals(message, expected, string(target, offset, count));
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Encodes direct buffers in little endian order, which must not change
+     * the output.
+     */
+    @Test
+    public void testByteOrder() {
+        
+        // for every engine and length
+        for (Base64Engine engine : Engines.getEngines()) {
+            for (int length : LENGTHS) {
+                
+                // the input and its output
+                byte[] input = bytes(length);
+                String expected = expected(input);
+                String message = engine + ", " + length + " bytes";
+                
+                // into an array
+                byte[] array = new byte[Base64Encoder.getEncodedLength(length)];
+                int count = engine.encode(source(input, 3, true).order(ByteOrder.LITTLE_ENDIAN), array, 0);
+                assertEquals(message, expected, new String(array, 0, count, StandardCharsets.US_ASCII));
+                
+                // and into a buffer
+                ByteBuffer target = ByteBuffer.allocateDirect(array.length).order(ByteOrder.LITTLE_ENDIAN);
+                count = engine.encode(source(input, 3, true).order(ByteOrder.LITTLE_ENDIAN), target);
+                assertEquals(message, expected, string(target, 0, count));
+            }
+        }
+    }
+    
+    /**
+     * Encodes arrays and buffers in the URL and file name safe alphabet,
+     * also with an engine that only has the required method.
+     */
+    @Test
+    public void testUrlSafe() {
+        
+        // the engines, and one relying on the defaults
+        List<Base64Engine> engines = new ArrayList<Base64Engine>(Engines.getEngines());
+        engines.add(new Base64Engine() {
+            
+            @Override
+            public String getName() {
+                return "minimal";
+            }
+            
+            @Override
+            public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+                return Base64Encoder.encode(source, offset, length, target, targetOffset);
+            }
+        });
+        
+        // for every engine, length and offset
+        for (Base64Engine engine : engines) {
+            for (int length : LENGTHS) {
+                for (int offset : OFFSETS) {
+                    
+                    // the input and its output
+                    byte[] input = bytes(length);
+                    String expected = Base64.getUrlEncoder().encodeToString(input);
+                    int encoded = Base64Encoder.getEncodedLength(length);
+                    String message = engine + ", " + length + " bytes at " + offset;
+                    
+                    // from an array
+                    byte[] source = new byte[offset + length];
+                    System.arraycopy(input, 0, source, offset, length);
+                    byte[] array = new byte[offset + encoded + 5];
+                    Arrays.fill(array, (byte) '!');
+                    int count = engine.encode(source, offset, length, array, offset, true);
+                    assertEquals(message, expected, new String(array, offset, count, StandardCharsets.US_ASCII));
+                    assertGuards(message, array, offset, offset + count);
+                    
+                    // from every kind of buffer
+                    for (boolean directSource : new boolean[] { false, true }) {
+                        
+                        // into an array
+                        Arrays.fill(array, (byte) '!');
+                        count = engine.encode(source(input, offset, directSource), array, offset, true);
+                        assertEquals(message, expected, new String(array, offset, count, StandardCharsets.US_ASCII));
+                        assertGuards(message, array, offset, offset + count);
+                        
+                        // and into every kind of buffer
+                        for (boolean directTarget : new boolean[] { false, true }) {
+                            ByteBuffer target = directTarget ? ByteBuffer.allocateDirect(offset + encoded) : ByteBuffer.allocate(offset + encoded);
+                            target.position(offset);
+                            count = engine.encode(source(input, offset, directSource), target, true);
+                            assertEquals(message, expected, string(target, offset, count));
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Encodes an input in pieces of random lengths, a multiple of 3 but
+     * the last one, which must give the output of the whole input.
+     */
+    @Test
+    public void testPieces() {
+        
+        // the input and its output
+        byte[] input = bytes(200003);
+        String expected = expected(input);
+        
+        // for every engine
+        for (Base64Engine engine : Engines.getEngines()) {
+            
+            // a direct copy, read at an odd offset
+            ByteBuffer direct = source(input, 5, true);
+            
+            // the outputs of the three ways
+            byte[] array = new byte[Base64Encoder.getEncodedLength(input.length)];
+            byte[] fromBuffer = new byte[array.length];
+            ByteBuffer target = ByteBuffer.allocateDirect(array.length);
+            
+            // encode every piece
+            int position = 0;
+            int index = 0;
+            while (position < input.length) {
+                
+                // the length of the piece
+                int length = Math.min(input.length - position, 3 * random.nextInt(2000));
+                if (position + length == input.length - 2) {
+                    length = input.length - position;
+                }
+                
+                // the three ways
+                int count = engine.encode(input, position, length, array, index);
+                direct.limit(5 + position + length).position(5 + position);
+                assertEquals(engine.toString(), count, engine.encode(direct, fromBuffer, index));
+                direct.limit(5 + position + length).position(5 + position);
+                assertEquals(engine.toString(), count, engine.encode(direct, target));
+                
+                // move on
+                position = position + length;
+                index = index + count;
+            }
+            
+            // check them
+            assertEquals(engine.toString(), expected, new String(array, StandardCharsets.US_ASCII));
+            assertEquals(engine.toString(), expected, new String(fromBuffer, StandardCharsets.US_ASCII));
+            assertEquals(engine.toString(), expected, string(target, 0, target.position()));
+        }
+    }
+    
+    /**
+     * Chooses the default engine again after every test.
+     */
+    @After
+    public void tearDown() {
+        
+        // forget the choice
+        System.clearProperty(Engines.PROPERTY);
+        Engines.setDefault(null);
+    }
+    
+    /**
+     * Creates random bytes.
+     * @param length The length.
+     * @return The bytes.
+     */
+    private byte[] bytes(int length) {
+        
+        // fill them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Copies an input to a buffer, after some other bytes.
+     * @param input The input.
+     * @param offset The position of the input in the buffer.
+     * @param direct Whether the buffer is direct.
+     * @return The buffer, positioned at the input.
+     */
+    private static ByteBuffer source(byte[] input, int offset, boolean direct) {
+        
+        // the buffer, with room before and after
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(offset + input.length + 5) : ByteBuffer.allocate(offset + input.length + 5);
+        
+        // copy it
+        buffer.position(offset);
+        buffer.put(input);
+        
+        // only the input remains
+        buffer.limit(offset + input.length).position(offset);
+        return buffer;
+    }
+    
+    /**
+     * Gets the output of the JDK encoder.
+     * @param input The input.
+     * @return The output.
+     */
+    private static String expected(byte[] input) {
+        
+        // encode it
+        return Base64.getEncoder().encodeToString(input);
+    }
+    
+    /**
+     * Reads a piece of a buffer as text.
+     * @param buffer The buffer.
+     * @param offset The offset.
+     * @param length The length.
+     * @return The text.
+     */
+    private static String string(ByteBuffer buffer, int offset, int length) {
+        
+        // copy it
+        byte[] bytes = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length).position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Checks that nothing was written outside the output.
+     * @param message The message.
+     * @param target The target array, filled with '!' at first.
+     * @param start The start of the output.
+     * @param end The end of the output.
+     */
+    private static void assertGuards(String message, byte[] target, int start, int end) {
+        
+        // before and after the output
+        for (int i = 0; i < target.length; i++) {
+            if ((i < start) || (i >= end)) {
+                assertEquals(message + ", byte " + i, '!', target[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Base64EncoderTest.java</b>: checks the scalar encoder against the
+ * JDK encoder.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the scalar encoder against the encoder of the JDK, from arrays
+ * and buffers into arrays and buffers, at odd offsets.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class Base64EncoderTest {
+
+    // input lengths around the groups of 3 bytes
+    private static final int[] LENGTHS = { 0, 1, 2, 3, 4, 5, 6, 7, 57, 58, 59, 1000, 65537 };
+    
+    // offsets of the inputs and the outputs
+    private static final int[] OFFSETS = { 0, 1, 3, 7 };
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Checks the output length.
+     */
+    @Test
+    public void testEncodedLength() {
+        
+        // for every length
+        for (int length : LENGTHS) {
+            assertEquals(Base64.getEncoder().encode(new byte[length]).length, Base64Encoder.getEncodedLength(length));
+        }
+    }
+    
+    /**
+     * Encodes arrays at every offset.
+     */
+    @Test
+    public void testArrays() {
+        
+        // for every length and offset
+        for (int length : LENGTHS) {
+            for (int offset : OFFSETS) {
+                
+                // the input, in the middle of an array
+                byte[] input = bytes(length);
+                byte[] source = new byte[offset + length + 5];
+                System.arraycopy(input, 0, source, offset, length);
+                
+                // the output, with guards around it
+                byte[] target = new byte[offset + Base64Encoder.getEncodedLength(length) + 5];
+                Arrays.fill(target, (byte) '!');
+                int count = Base64Encoder.encode(source, offset, length, target, offset);
+                
+                // check it
+                String message = length + " bytes at " + offset;
+                assertEquals(message, expected(input), new String(target, offset, count, StandardCharsets.US_ASCII));
+                assertGuards(message, target, offset, offset + count);
+            }
+        }
+    }
+    
+    /**
+     * Encodes heap and direct buffers into arrays and buffers.
+     */
+    @Test
+    public void testBuffers() {
+        
+        // for every length and offset
+        for (int length : LENGTHS) {
+            for (int offset : OFFSETS) {
+                
+                // the input and its output
+                byte[] input = bytes(length);
+                String expected = expected(input);
+                int encoded = Base64Encoder.getEncodedLength(length);
+                
+                // from every kind of source
+                for (boolean directSource : new boolean[] { false, true }) {
+                    
+                    // into an array
+                    String message = length + " bytes at " + offset + (directSource ? ", direct" : ", heap");
+                    ByteBuffer source = source(input, offset, directSource);
+                    byte[] array = new byte[offset + encoded + 5];
+                    Arrays.fill(array, (byte) '!');
+                    int count = Base64Encoder.encode(source, array, offset);
+                    assertEquals(message, expected, new String(array, offset, count, StandardCharsets.US_ASCII));
+                    assertEquals(message, source.limit(), source.position());
+                    assertGuards(message, array, offset, offset + count);
+                    
+                    // and into every kind of target
+                    for (boolean directTarget : new boolean[] { false, true }) {
+                        
+                        // encode it
+                        source = source(input, offset, directSource);
+                        ByteBuffer target = directTarget ? ByteBuffer.allocateDirect(offset + encoded) : ByteBuffer.allocate(offset + encoded);
+                        target.position(offset);
+                        count = Base64Encoder.encode(source, target);
+                        
+                        // check it
+                        assertEquals(message, encoded, count);
+                        assertEquals(message, offset + count, target.position());
+                        assertEquals(message, source.limit(), source.position());
+                        target.position(offset);
+                        assertEquals(message, expected, StandardCharsets.US_ASCII.decode(target).toString());
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Creates random bytes.
+     * @param length The length.
+     * @return The bytes.
+     */
+    private byte[] bytes(int length) {
+        
+        // fill them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Copies an input to a buffer, after some other bytes.
+     * @param input The input.
+     * @param offset The position of the input in the buffer.
+     * @param direct Whether the buffer is direct.
+     * @return The buffer, positioned at the input.
+     */
+    private static ByteBuffer source(byte[] input, int offset, boolean direct) {
+        
+        // the buffer, with room before and after
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(offset + input.length + 5) : ByteBuffer.allocate(offset + input.length + 5);
+        
+        // copy it
+        buffer.position(offset);
+        buffer.put(input);
+        
+        // only the input remains
+        buffer.limit(offset + input.length).position(offset);
+        return buffer;
+    }
+    
+    /**
+     * Gets the output of the JDK encoder.
+     * @param input The input.
+     * @return The output.
+     */
+    private static String expected(byte[] input) {
+        
+        // encode it
+        return Base64.getEncoder().encodeToString(input);
+    }
+    
+    /**
+     * Checks that nothing was written outside the output.
+     * @param message The message.
+     * @param target The target array, filled with '!' at first.
+     * @param start The start of the output.
+     * @param end The end of the output.
+     */
+    private static void assertGuards(String message, byte[] target, int start, int end) {
+        
+        // before and after the output
+        for (int i = 0; i < target.length; i++) {
+            if ((i < start) || (i >= end)) {
+                assertEquals(message + ", byte " + i, '!', target[i]);
+            }
+        }
+    }
+}
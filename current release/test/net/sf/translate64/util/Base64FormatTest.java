@@ -0,0 +1,266 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>Base64FormatTest.java</b>: cross-checks the output formats against
+ * the JDK encoders.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import net.sf.translate64.codec.Base64Engine;
+import net.sf.translate64.codec.Engines;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Cross-checks every format, with every engine, against the encoders of
+ * the JDK. Inputs are encoded whole and in pieces, through arrays and
+ * direct buffers read at odd offsets, as the parallel and streaming
+ * conversions do.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class Base64FormatTest {
+
+    // the formats, presets and custom ones
+    private static final Base64Format[] FORMATS = {
+        Base64Format.STANDARD,
+        Base64Format.URL_SAFE,
+        Base64Format.MIME,
+        Base64Format.PEM,
+        Base64Format.STANDARD.withPadding(false),
+        Base64Format.URL_SAFE.withPadding(true),
+        Base64Format.STANDARD.withLines(4, "\n"),
+        Base64Format.STANDARD.withLines(40, "\r\n").withPadding(false),
+        Base64Format.URL_SAFE.withLines(76, "\n")
+    };
+    
+    // input lengths around the groups and the lines
+    private static final int[] LENGTHS = { 0, 1, 2, 3, 4, 5, 29, 30, 31, 47, 48, 49, 56, 57, 58, 1000, 65537 };
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Chooses the default engine again.
+     */
+    @After
+    public void tearDown() {
+        
+        // from the system property
+        Engines.setDefault(null);
+    }
+    
+    /**
+     * Encodes whole inputs.
+     */
+    @Test
+    public void testWhole() {
+        
+        // for every engine, format and length
+        for (Base64Engine engine : Engines.getEngines()) {
+            Engines.setDefault(engine);
+            for (Base64Format format : FORMATS) {
+                for (int length : LENGTHS) {
+                    
+                    // encode it after a few bytes
+                    byte[] input = bytes(length);
+                    byte[] target = new byte[3 + format.getMaxEncodedLength(length)];
+                    int count = format.encode(input, 0, length, target, 3, 0);
+                    
+                    // check it
+                    String message = engine + ", " + describe(format) + ", " + length + " bytes";
+                    assertEquals(message, expected(format, input), new String(target, 3, count, StandardCharsets.US_ASCII));
+                    assertEquals(message, format.getEncodedLength(length), count);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Encodes inputs in pieces of random lengths, a multiple of 3 but the
+     * last one, each told where it starts.
+     */
+    @Test
+    public void testPieces() {
+        
+        // the input
+        byte[] input = bytes(100003);
+        
+        // for every engine and format
+        for (Base64Engine engine : Engines.getEngines()) {
+            Engines.setDefault(engine);
+            for (Base64Format format : FORMATS) {
+                
+                // a direct copy, read at an odd offset
+                ByteBuffer direct = ByteBuffer.allocateDirect(input.length + 7);
+                direct.position(7);
+                direct.put(input);
+                
+                // the outputs of the three ways
+                int size = (int) format.getEncodedLength(input.length);
+                byte[] array = new byte[size + format.getMaxEncodedLength(6000)];
+                byte[] fromBuffer = new byte[array.length];
+                ByteBuffer target = ByteBuffer.allocateDirect(array.length);
+                
+                // encode every piece
+                int position = 0;
+                int index = 0;
+                while (position < input.length) {
+                    
+                    // the length of the piece
+                    int length = Math.min(input.length - position, 3 * random.nextInt(2000));
+                    if (position + length == input.length - 1) {
+                        length = input.length - position;
+                    }
+                    
+                    // the three ways
+                    String message = engine + ", " + describe(format) + ", piece at " + position;
+                    int count = format.encode(input, position, length, array, index, position);
+                    direct.limit(7 + position + length).position(7 + position);
+                    assertEquals(message, count, format.encode(direct, fromBuffer, index, position));
+                    direct.limit(7 + position + length).position(7 + position);
+                    assertEquals(message, count, format.encode(direct, target, position));
+                    assertTrue(message, count <= format.getMaxEncodedLength(length));
+                    
+                    // move on
+                    position = position + length;
+                    index = index + count;
+                }
+                
+                // check them
+                String message = engine + ", " + describe(format);
+                String expected = expected(format, input);
+                assertEquals(message, size, index);
+                assertEquals(message, expected, new String(array, 0, index, StandardCharsets.US_ASCII));
+                assertEquals(message, expected, new String(fromBuffer, 0, index, StandardCharsets.US_ASCII));
+                byte[] bytes = new byte[target.flip().remaining()];
+                target.get(bytes);
+                assertEquals(message, expected, new String(bytes, StandardCharsets.US_ASCII));
+            }
+        }
+    }
+    
+    /**
+     * Checks the presets found by name.
+     */
+    @Test
+    public void testNames() {
+        
+        // check them
+        assertEquals(Base64Format.STANDARD, Base64Format.forName("standard"));
+        assertEquals(Base64Format.URL_SAFE, Base64Format.forName("url"));
+        assertEquals(Base64Format.MIME, Base64Format.forName("mime"));
+        assertEquals(Base64Format.PEM, Base64Format.forName("pem"));
+        assertEquals(null, Base64Format.forName("nothing"));
+    }
+    
+    /**
+     * Creates random bytes.
+     * @param length The length.
+     * @return The bytes.
+     */
+    private byte[] bytes(int length) {
+        
+        // fill them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Gets the output of the JDK encoders, with the line separators put in
+     * by hand, since the JDK breaks lines of the standard alphabet only.
+     * @param format The format.
+     * @param input The input.
+     * @return The output.
+     */
+    private static String expected(Base64Format format, byte[] input) {
+        
+        // the alphabet and the padding
+        Base64.Encoder encoder = format.isUrlSafe() ? Base64.getUrlEncoder() : Base64.getEncoder();
+        if (!format.isPadded()) {
+            encoder = encoder.withoutPadding();
+        }
+        String text = encoder.encodeToString(input);
+        
+        // check the lines
+        if (format.getLineLength() == 0) {
+            return text;
+        }
+        
+        // a separator before every line but the first
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < text.length(); i = i + format.getLineLength()) {
+            if (i > 0) {
+                builder.append(format.getLineSeparator());
+            }
+            builder.append(text, i, Math.min(text.length(), i + format.getLineLength()));
+        }
+        return builder.toString();
+    }
+    
+    /**
+     * Describes a format for the messages.
+     * @param format The format.
+     * @return The description.
+     */
+    private static String describe(Base64Format format) {
+        
+        // the options
+        return (format.isUrlSafe() ? "url" : "standard") + (format.isPadded() ? "" : ", no padding")
+                + ", lines of " + format.getLineLength();
+    }
+}
@@ -0,0 +1,346 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>BatchConverterTest.java</b>: checks the ordering and cancellation
+ * of batch conversions.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a batch conversion delivers every file, in submission order
+ * and never concurrently, and that a cancelled batch delivers nothing once
+ * {@link BatchConverter#cancel()} returns.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class BatchConverterTest {
+
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Converts files whose sizes make the later ones finish first, plus a
+     * missing one, and checks that every result comes in submission order,
+     * one at a time, with the output of the JDK encoder.
+     * @throws Exception Never.
+     */
+    @Test
+    public void testOrder() throws Exception {
+        
+        // the largest files first, and a missing one in the middle
+        final File[] files = new File[40];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = folder.newFile("order" + i + ".bin");
+            byte[] bytes = new byte[(files.length - i) * 20000 + random.nextInt(100)];
+            random.nextBytes(bytes);
+            Files.write(files[i].toPath(), bytes);
+        }
+        files[7] = new File(folder.getRoot(), "missing.bin");
+        
+        // the next expected index, and whether a call is running
+        final AtomicInteger expected = new AtomicInteger(0);
+        final AtomicBoolean busy = new AtomicBoolean(false);
+        final List<String> problems = Collections.synchronizedList(new ArrayList<String>());
+        
+        // convert them
+        BatchConverter.convertFiles(files, new BatchConverter.Listener() {
+            
+            @Override
+            public void fileConverted(int index, File file, String output) {
+                
+                // check the call and the output
+                enter(index, file);
+                try {
+                    if (!Base64.getEncoder().encodeToString(Files.readAllBytes(file.toPath())).equals(output)) {
+                        problems.add("wrong output for " + index);
+                    }
+                }
+                catch (IOException e) {
+                    problems.add(e.toString());
+                }
+                busy.set(false);
+            }
+            
+            @Override
+            public void fileFailed(int index, File file, IOException error) {
+                
+                // only the missing one fails
+                enter(index, file);
+                if (index != 7) {
+                    problems.add("failed " + index + ": " + error);
+                }
+                busy.set(false);
+            }
+            
+            /**
+             * Checks a call.
+             * @param index The index.
+             * @param file The file.
+             */
+            private void enter(int index, File file) {
+                
+                // one at a time, in order
+                if (!busy.compareAndSet(false, true)) {
+                    problems.add("concurrent call for " + index);
+                }
+                if ((index != expected.getAndIncrement()) || !file.equals(files[index])) {
+                    problems.add("out of order: " + index);
+                }
+            }
+        });
+        
+        // check everything came, in order
+        assertEquals(problems.toString(), 0, problems.size());
+        assertEquals(files.length, expected.get());
+    }
+    
+    /**
+     * Walks a directory, whose files keep the order of the walk, and keeps
+     * delivering when the listener throws, rethrowing the first error.
+     * @throws Exception Never.
+     */
+    @Test
+    public void testTree() throws Exception {
+        
+        // a tree, and a file after it
+        File root = folder.newFolder("tree");
+        File inner = new File(root, "inner");
+        assertTrue(inner.mkdir());
+        for (int i = 0; i < 10; i++) {
+            byte[] bytes = new byte[random.nextInt(5000)];
+            random.nextBytes(bytes);
+            Files.write(new File(i % 2 == 0 ? root : inner, "file" + i).toPath(), bytes);
+        }
+        File last = folder.newFile("last.bin");
+        
+        // the order of the walk
+        final List<File> walked = new ArrayList<File>();
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                walked.add(file.toFile());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        walked.add(last);
+        
+        // convert them, with a listener that fails on the third one
+        final List<File> delivered = new ArrayList<File>();
+        BatchConverter batch = new BatchConverter(new BatchConverter.Listener() {
+            
+            @Override
+            public void fileConverted(int index, File file, String output) {
+                delivered.add(file);
+                if (index == 2) {
+                    throw new IllegalStateException("broken listener");
+                }
+            }
+            
+            @Override
+            public void fileFailed(int index, File file, IOException error) {
+                throw new IllegalStateException("unexpected failure");
+            }
+        });
+        batch.submitAll(new File[] { root, last });
+        
+        // the error comes out of await()
+        try {
+            batch.await();
+            fail("The listener error was lost.");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("broken listener", e.getMessage());
+        }
+        
+        // but every file was delivered, in order
+        assertEquals(walked, delivered);
+    }
+    
+    /**
+     * Cancels a batch whose thread was interrupted while waiting, which
+     * must drain every file before returning.
+     * @throws Exception Never.
+     */
+    @Test
+    public void testCancel() throws Exception {
+        
+        // many files, so some are still in flight
+        final File[] files = files(64);
+        
+        // the delivered indexes
+        final List<Integer> delivered = Collections.synchronizedList(new ArrayList<Integer>());
+        
+        // whether cancel() returned, and whether anything came after it
+        final AtomicBoolean returned = new AtomicBoolean(false);
+        final AtomicBoolean late = new AtomicBoolean(false);
+        
+        // a slow listener
+        final BatchConverter batch = new BatchConverter(new BatchConverter.Listener() {
+            
+            @Override
+            public void fileConverted(int index, File file, String output) {
+                deliver(index);
+            }
+            
+            @Override
+            public void fileFailed(int index, File file, IOException error) {
+                deliver(index);
+            }
+            
+            /**
+             * Records a delivery, slowly.
+             * @param index The index.
+             */
+            private void deliver(int index) {
+                
+                // check it came in time
+                if (returned.get()) {
+                    late.set(true);
+                }
+                delivered.add(index);
+                
+                // take a while
+                try {
+                    Thread.sleep(5);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, null, 8);
+        
+        // convert them in another thread
+        final AtomicInteger submitted = new AtomicInteger(-1);
+        Thread thread = new Thread(new Runnable() {
+            
+            @Override
+            public void run() {
+                
+                // let's try
+                try {
+                    
+                    // submit every file and wait for them
+                    batch.submitAll(files);
+                    batch.await();
+                }
+                catch (InterruptedException e) {
+                    
+                    // stop and drain it
+                    batch.cancel();
+                    submitted.set(delivered.size());
+                    returned.set(true);
+                }
+            }
+        });
+        thread.start();
+        
+        // interrupt it while it is busy
+        Thread.sleep(50);
+        thread.interrupt();
+        thread.join();
+        
+        // give any stray task the chance to deliver
+        Thread.sleep(200);
+        
+        // check it was cancelled, drained and then quiet
+        assertTrue(returned.get());
+        assertFalse(late.get());
+        assertEquals(submitted.get(), delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(Integer.valueOf(i), delivered.get(i));
+        }
+    }
+    
+    /**
+     * Creates files of random lengths.
+     * @param count The number of files.
+     * @return The files.
+     * @throws IOException An IO error writing them.
+     */
+    private File[] files(int count) throws IOException {
+        
+        // write every one
+        File[] files = new File[count];
+        for (int i = 0; i < count; i++) {
+            files[i] = folder.newFile("file" + i + ".bin");
+            byte[] bytes = new byte[random.nextInt(50000)];
+            random.nextBytes(bytes);
+            Files.write(files[i].toPath(), bytes);
+        }
+        return files;
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>CompressionAdvisorTest.java</b>: checks when files are compressed
+ * and at which level.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.Deflater;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the decisions of {@link CompressionAdvisor}: tiny files,
+ * compressed formats and nearly random bytes are not compressed, dense
+ * bytes get the fastest level and everything else the requested one.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class CompressionAdvisorTest {
+
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Checks the entropy of a few known distributions.
+     */
+    @Test
+    public void testEntropy() {
+        
+        // nothing, and a single value
+        assertEquals(0, CompressionAdvisor.getEntropy(new byte[0]), 1e-9);
+        assertEquals(0, CompressionAdvisor.getEntropy(new byte[100]), 1e-9);
+        
+        // 2, 64 and 256 values, evenly spread over two samples
+        assertEquals(1, CompressionAdvisor.getEntropy(cycle(2, 512), cycle(2, 512)), 1e-9);
+        assertEquals(6, CompressionAdvisor.getEntropy(cycle(64, 512), cycle(64, 512)), 1e-9);
+        assertEquals(8, CompressionAdvisor.getEntropy(cycle(256, 512), cycle(256, 512)), 1e-9);
+    }
+    
+    /**
+     * Files under the minimum size are never compressed.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testMinimumSize() throws IOException {
+        
+        // text just under and at the minimum
+        byte[] text = text((int) CompressionAdvisor.MINIMUM_SIZE);
+        assertSame(Compression.NONE, CompressionAdvisor.choose(file(copy(text, text.length - 1)), Compression.AUTO));
+        assertEquals("gzip", CompressionAdvisor.choose(file(text), Compression.AUTO).getName());
+    }
+    
+    /**
+     * Files in compressed formats are not compressed, whatever follows
+     * their signature.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testSignatures() throws IOException {
+        
+        // the signatures, followed by text
+        String[] heads = { "\u0089PNG\r\n", "\u00ff\u00d8\u00ff\u00e0", "PK\u0003\u0004", "\u001f\u008b\u0008", "RIFF\u0000\u0000\u0000\u0000WEBP", "\u0000\u0000\u0000\u0018ftypmp42" };
+        for (String head : heads) {
+            
+            // check the signature alone
+            byte[] bytes = head.getBytes(StandardCharsets.ISO_8859_1);
+            assertTrue(head, CompressionAdvisor.isCompressed(bytes));
+            
+            // and a file starting with it
+            byte[] text = text(10000);
+            System.arraycopy(bytes, 0, text, 0, bytes.length);
+            assertSame(head, Compression.NONE, CompressionAdvisor.choose(file(text), Compression.AUTO));
+        }
+        
+        // plain text has no signature
+        assertFalse(CompressionAdvisor.isCompressed(text(100)));
+    }
+    
+    /**
+     * Checks the level chosen on both sides of the entropy thresholds.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testThresholds() throws IOException {
+        
+        // a large file, so it is sampled, and a small one, read whole
+        for (int length : new int[] { 1024 * 1024, 8 * 1024 }) {
+            
+            // 6 bits per byte, under the dense threshold
+            Compression chosen = CompressionAdvisor.choose(file(cycle(64, length)), Compression.AUTO);
+            assertEquals("gzip", chosen.getName());
+            assertEquals(Deflater.DEFAULT_COMPRESSION, chosen.getLevel());
+            assertFalse(chosen.isAdaptive());
+            
+            // 7 bits per byte, between both thresholds
+            chosen = CompressionAdvisor.choose(file(cycle(128, length)), Compression.AUTO);
+            assertEquals("gzip", chosen.getName());
+            assertEquals(Deflater.BEST_SPEED, chosen.getLevel());
+            assertFalse(chosen.isAdaptive());
+            
+            // 8 bits per byte, over the incompressible threshold
+            assertSame(Compression.NONE, CompressionAdvisor.choose(file(cycle(256, length)), Compression.AUTO));
+        }
+        
+        // the thresholds are in order
+        assertTrue(6 < CompressionAdvisor.DENSE);
+        assertTrue(CompressionAdvisor.DENSE < 7);
+        assertTrue(7 < CompressionAdvisor.INCOMPRESSIBLE);
+        assertTrue(CompressionAdvisor.INCOMPRESSIBLE < 8);
+    }
+    
+    /**
+     * Checks that random bytes are not compressed, and that the requested
+     * level and stream format are kept for text.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testFiles() throws IOException {
+        
+        // random bytes
+        byte[] bytes = new byte[100000];
+        random.nextBytes(bytes);
+        assertSame(Compression.NONE, CompressionAdvisor.choose(file(bytes), Compression.AUTO));
+        
+        // text, with the requested level and format
+        Compression requested = Compression.ZLIB.withLevel(9).withAdaptive(true);
+        Compression chosen = CompressionAdvisor.choose(file(text(100000)), requested);
+        assertEquals("zlib", chosen.getName());
+        assertEquals(9, chosen.getLevel());
+        assertFalse(chosen.isAdaptive());
+        
+        // nothing requested, nothing chosen
+        assertSame(Compression.NONE, CompressionAdvisor.choose(file(text(100000)), Compression.NONE));
+    }
+    
+    /**
+     * Creates bytes cycling through some values, so every value appears
+     * equally often in any run whose length is a multiple of the count.
+     * @param values The number of values.
+     * @param length The length.
+     * @return The bytes.
+     */
+    private static byte[] cycle(int values, int length) {
+        
+        // fill them
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i % values);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Creates some English text.
+     * @param length The length.
+     * @return The text.
+     */
+    private static byte[] text(int length) {
+        
+        // repeat a sentence
+        StringBuilder builder = new StringBuilder(length + 64);
+        while (builder.length() < length) {
+            builder.append("The quick brown fox jumps over the lazy dog. ");
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Copies the first bytes of an array.
+     * @param bytes The bytes.
+     * @param length The number of bytes.
+     * @return The copy.
+     */
+    private static byte[] copy(byte[] bytes, int length) {
+        
+        // copy them
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, 0, copy, 0, length);
+        return copy;
+    }
+    
+    /**
+     * Writes bytes to a new file.
+     * @param bytes The bytes.
+     * @return The file.
+     * @throws IOException An IO error writing it.
+     */
+    private File file(byte[] bytes) throws IOException {
+        
+        // write them
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ConversionCacheTest.java</b>: checks the byte-bounded LRU cache of
+ * strings.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that {@link ConversionCache} evicts the least recently used
+ * strings once their total size goes beyond the capacity, counts
+ * replacements once, and finds files by identity or by contents.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class ConversionCacheTest {
+
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Evicts the least recently used string, not the oldest one.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        
+        // room for two strings of 16 characters
+        ConversionCache cache = new ConversionCache(40, false);
+        File a = file(12);
+        File b = file(12);
+        File c = file(12);
+        
+        // cache two, and use the first one again
+        cache.put(a, "aaaaaaaaaaaaaaaa");
+        cache.put(b, "bbbbbbbbbbbbbbbb");
+        assertNotNull(cache.get(a));
+        assertEquals(32, cache.getSize());
+        
+        // a third one evicts the second
+        cache.put(c, "cccccccccccccccc");
+        assertEquals(32, cache.getSize());
+        assertEquals("aaaaaaaaaaaaaaaa", cache.get(a));
+        assertNull(cache.get(b));
+        assertEquals("cccccccccccccccc", cache.get(c));
+    }
+    
+    /**
+     * Never caches a string larger than the capacity, and counts a
+     * replaced string only once.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testSize() throws IOException {
+        
+        // a small cache
+        ConversionCache cache = new ConversionCache(20, false);
+        File a = file(3);
+        File b = file(3);
+        
+        // too large
+        cache.put(a, "123456789012345678901");
+        assertNull(cache.get(a));
+        assertEquals(0, cache.getSize());
+        
+        // replaced
+        cache.put(a, "1234");
+        cache.put(a, "12345678");
+        cache.put(b, "1234");
+        assertEquals(12, cache.getSize());
+        assertEquals("12345678", cache.get(a));
+        
+        // cleared
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertNull(cache.get(b));
+    }
+    
+    /**
+     * Converts a file twice, which reads it only once, and again after it
+     * changed.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testConvert() throws IOException {
+        
+        // a cache and a file
+        ConversionCache cache = new ConversionCache(1024 * 1024, false);
+        File file = file(1000);
+        
+        // convert it twice
+        String expected = Base64.getEncoder().encodeToString(Files.readAllBytes(file.toPath()));
+        assertEquals(expected, cache.convert(file));
+        assertEquals(expected, cache.convert(file));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        
+        // change it
+        byte[] bytes = new byte[999];
+        random.nextBytes(bytes);
+        Files.write(file.toPath(), bytes);
+        assertEquals(Base64.getEncoder().encodeToString(bytes), cache.convert(file));
+        assertEquals(2, cache.getMisses());
+    }
+    
+    /**
+     * Finds a copy of a file by its contents in content hash mode, and
+     * only in that mode.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testContentHash() throws IOException {
+        
+        // a file and its copy
+        File file = file(1000);
+        File copy = folder.newFile();
+        Files.write(copy.toPath(), Files.readAllBytes(file.toPath()));
+        
+        // by identity, the copy is a miss
+        ConversionCache cache = new ConversionCache(1024 * 1024, false);
+        cache.convert(file);
+        assertNull(cache.get(copy));
+        
+        // by contents, it is a hit
+        cache = new ConversionCache(1024 * 1024, true);
+        String output = cache.convert(file);
+        assertEquals(output, cache.get(copy));
+    }
+    
+    /**
+     * Writes random bytes to a new file.
+     * @param length The length.
+     * @return The file.
+     * @throws IOException An IO error writing it.
+     */
+    private File file(int length) throws IOException {
+        
+        // write them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+}
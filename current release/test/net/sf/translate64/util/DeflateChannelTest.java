@@ -0,0 +1,256 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DeflateChannelTest.java</b>: round-trips the parallel deflate, gzip
+ * and zlib streams through the JDK inflaters.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Round-trips the streams written by {@link DeflateChannel} through the
+ * inflaters of the JDK, for every compression and a few levels, from an
+ * empty input to inputs spanning many blocks, each deflated by its own
+ * task with the dictionary of the block before it.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class DeflateChannelTest {
+
+    // the compressions
+    private static final Compression[] COMPRESSIONS = { Compression.DEFLATE, Compression.GZIP, Compression.ZLIB };
+    
+    // the levels, the default one first
+    private static final int[] LEVELS = { -1, 0, 1, 9 };
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Compresses an empty input.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testEmpty() throws IOException {
+        
+        // check every compression
+        check(new byte[0]);
+    }
+    
+    /**
+     * Compresses a short text.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testShort() throws IOException {
+        
+        // check every compression
+        check("hello world".getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Compresses text spanning a few blocks and a piece, which repeats
+     * itself across the blocks, so the dictionaries are used.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testBlocks() throws IOException {
+        
+        // the text
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 3 * DeflateChannel.BLOCK_SIZE + 17) {
+            builder.append("line ").append(random.nextInt(1000)).append(" of the text\n");
+        }
+        
+        // check every compression
+        check(builder.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+    
+    /**
+     * Compresses random bytes, which do not shrink, over a few blocks.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testRandom() throws IOException {
+        
+        // the bytes
+        byte[] input = new byte[2 * DeflateChannel.BLOCK_SIZE + 1];
+        random.nextBytes(input);
+        
+        // check every compression
+        check(input);
+    }
+    
+    /**
+     * Checks the headers told apart by the readers.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testHeaders() throws IOException {
+        
+        // gzip starts with its magic bytes
+        byte[] gzip = compress(new byte[10], Compression.GZIP);
+        assertEquals(0x1f, gzip[0] & 0xff);
+        assertEquals(0x8b, gzip[1] & 0xff);
+        
+        // zlib headers are a multiple of 31
+        for (int level : LEVELS) {
+            byte[] zlib = compress(new byte[10], Compression.ZLIB.withLevel(level));
+            assertEquals(0, (((zlib[0] & 0xff) << 8) | (zlib[1] & 0xff)) % 31);
+        }
+    }
+    
+    /**
+     * Compresses an input with every compression and level, and inflates
+     * it back.
+     * @param input The input.
+     * @throws IOException An IO error, which should never happen.
+     */
+    private static void check(byte[] input) throws IOException {
+        
+        // for every compression and level
+        for (Compression compression : COMPRESSIONS) {
+            for (int level : LEVELS) {
+                
+                // compress and inflate it
+                Compression chosen = compression.withLevel(level);
+                byte[] output = inflate(compress(input, chosen), chosen);
+                
+                // check it
+                assertArrayEquals(chosen.toString(), input, output);
+            }
+        }
+    }
+    
+    /**
+     * Compresses an input, reading the channel in small pieces.
+     * @param input The input.
+     * @param compression The compression.
+     * @return The compressed stream.
+     * @throws IOException An IO error, which should never happen.
+     */
+    private static byte[] compress(byte[] input, Compression compression) throws IOException {
+        
+        // the channel
+        DeflateChannel channel = new DeflateChannel(Channels.newChannel(new ByteArrayInputStream(input)), compression, null);
+        
+        // let's try
+        try {
+            
+            // read it all, a piece at a time
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(1000);
+            while (channel.read(buffer) != -1) {
+                output.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            
+            // check the bytes read
+            assertEquals(compression.toString(), input.length, channel.getInputLength());
+            
+            // return the stream
+            return output.toByteArray();
+        }
+        finally {
+            
+            // close the channel
+            channel.close();
+        }
+    }
+    
+    /**
+     * Inflates a stream with the reader of its compression.
+     * @param bytes The stream.
+     * @param compression The compression.
+     * @return The inflated bytes.
+     * @throws IOException The stream is malformed.
+     */
+    private static byte[] inflate(byte[] bytes, Compression compression) throws IOException {
+        
+        // the reader
+        InputStream input;
+        switch (compression.getName()) {
+            case "gzip":
+                input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+                break;
+            case "zlib":
+                input = new InflaterInputStream(new ByteArrayInputStream(bytes));
+                break;
+            default:
+                input = new InflaterInputStream(new ByteArrayInputStream(bytes), new Inflater(true));
+        }
+        
+        // read it all
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        input.close();
+        
+        // return the bytes
+        return output.toByteArray();
+    }
+}
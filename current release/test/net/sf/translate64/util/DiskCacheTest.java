@@ -0,0 +1,222 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>DiskCacheTest.java</b>: checks the persistent cache shared across
+ * runs.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link DiskCache} finds outputs of earlier runs by identity
+ * and by contents, and evicts the least recently used outputs once their
+ * total size goes beyond the capacity.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class DiskCacheTest {
+
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Finds an output stored by an earlier run, without reading the file.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testRuns() throws IOException {
+        
+        // the cache and a file
+        File directory = folder.newFolder();
+        File file = file(1000);
+        String expected = expected(file);
+        
+        // the first run stores it
+        DiskCache cache = new DiskCache(directory, 1024 * 1024);
+        assertEquals(expected, cache.convertFile(file, null));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        
+        // the second run finds it
+        cache = new DiskCache(directory, 1024 * 1024);
+        ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+        assertEquals(expected.length(), cache.convertFile(file, ostream, null));
+        assertEquals(expected, ostream.toString("US-ASCII"));
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+    
+    /**
+     * Finds the output of a copy by its contents, as after a fresh
+     * checkout, and stores it only once.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testContents() throws IOException {
+        
+        // a file and its copy
+        File directory = folder.newFolder();
+        File file = file(1000);
+        File copy = folder.newFile();
+        Files.write(copy.toPath(), Files.readAllBytes(file.toPath()));
+        
+        // convert both
+        DiskCache cache = new DiskCache(directory, 1024 * 1024);
+        File object = cache.fetch(file, null);
+        assertEquals(object, cache.fetch(copy, null));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        
+        // a single output
+        assertEquals(1, objects(directory));
+    }
+    
+    /**
+     * Evicts the least recently used outputs, but never the one just
+     * stored.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testEviction() throws IOException {
+        
+        // room for two outputs of 1336 bytes
+        File directory = folder.newFolder();
+        DiskCache cache = new DiskCache(directory, 3000);
+        File a = file(1000);
+        File b = file(1000);
+        File c = file(1000);
+        
+        // store two of them, the first one used long ago
+        long now = System.currentTimeMillis();
+        File first = cache.fetch(a, null);
+        File second = cache.fetch(b, null);
+        assertTrue(first.setLastModified(now - 20000));
+        assertTrue(second.setLastModified(now - 10000));
+        
+        // a third one evicts the first
+        File third = cache.fetch(c, null);
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+        assertTrue(third.exists());
+        assertEquals(2, objects(directory));
+        
+        // which is stored again when needed
+        assertEquals(expected(a), cache.convertFile(a, null));
+        assertEquals(4, cache.getMisses());
+        
+        // and a new run finds the survivors only
+        cache = new DiskCache(directory, 3000);
+        cache.fetch(a, null);
+        cache.fetch(c, null);
+        assertEquals(2, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+    
+    /**
+     * Counts the outputs in a cache directory.
+     * @param directory The directory.
+     * @return The number of outputs.
+     */
+    private static int objects(File directory) {
+        
+        // count them
+        int count = 0;
+        for (String name : new File(directory, "objects").list()) {
+            if (name.endsWith(".b64")) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the output of the JDK encoder for a file.
+     * @param file The file.
+     * @return The output.
+     * @throws IOException An IO error reading it.
+     */
+    private static String expected(File file) throws IOException {
+        
+        // encode it
+        return Base64.getEncoder().encodeToString(Files.readAllBytes(file.toPath()));
+    }
+    
+    /**
+     * Writes random bytes to a new file.
+     * @param length The length.
+     * @return The file.
+     * @throws IOException An IO error writing it.
+     */
+    private File file(int length) throws IOException {
+        
+        // write them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        File file = folder.newFile();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+}
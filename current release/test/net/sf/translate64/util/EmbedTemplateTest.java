@@ -0,0 +1,339 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>EmbedTemplateTest.java</b>: checks the text written around the
+ * output by every conversion path.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the prefixes and suffixes of every {@link EmbedTemplate}, the
+ * MIME types of data URIs, and that every conversion path, to strings
+ * and to files, sequential and parallel, writes them straight around the
+ * plain output.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class EmbedTemplateTest {
+
+    // the start of a PNG file
+    private static final byte[] PNG = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+    
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Checks the names and what each template allows.
+     */
+    @Test
+    public void testNames() {
+        
+        // every template by its name
+        for (EmbedTemplate template : new EmbedTemplate[] { EmbedTemplate.NONE, EmbedTemplate.PHP, EmbedTemplate.DATA_URI, EmbedTemplate.JSON, EmbedTemplate.CSS }) {
+            assertSame(template, EmbedTemplate.forName(template.getName().toUpperCase()));
+        }
+        assertNull(EmbedTemplate.forName("html"));
+        
+        // what they allow
+        assertFalse(EmbedTemplate.NONE.isEnabled());
+        assertTrue(EmbedTemplate.PHP.allowsLineBreaks());
+        assertTrue(EmbedTemplate.PHP.allowsCompression());
+        assertFalse(EmbedTemplate.JSON.allowsLineBreaks());
+        assertFalse(EmbedTemplate.CSS.allowsCompression());
+        assertTrue(EmbedTemplate.DATA_URI.needsMimeType());
+    }
+    
+    /**
+     * Checks the text of every template.
+     */
+    @Test
+    public void testText() {
+        
+        // without compression
+        assertEquals("", text(EmbedTemplate.NONE.getPrefix("text/plain", Compression.NONE)));
+        assertEquals("base64_decode('", text(EmbedTemplate.PHP.getPrefix((String) null, Compression.NONE)));
+        assertEquals("')", text(EmbedTemplate.PHP.getSuffix(Compression.NONE)));
+        assertEquals("data:image/png;base64,", text(EmbedTemplate.DATA_URI.getPrefix("image/png", Compression.NONE)));
+        assertEquals("", text(EmbedTemplate.DATA_URI.getSuffix(Compression.NONE)));
+        assertEquals("\"", text(EmbedTemplate.JSON.getPrefix((String) null, Compression.NONE)));
+        assertEquals("\"", text(EmbedTemplate.JSON.getSuffix(Compression.NONE)));
+        assertEquals("url(\"data:font/woff2;base64,", text(EmbedTemplate.CSS.getPrefix("font/woff2", Compression.NONE)));
+        assertEquals("\")", text(EmbedTemplate.CSS.getSuffix(Compression.NONE)));
+        
+        // PHP decompresses what was compressed
+        assertEquals("gzinflate(base64_decode('", text(EmbedTemplate.PHP.getPrefix((String) null, Compression.DEFLATE)));
+        assertEquals("gzdecode(base64_decode('", text(EmbedTemplate.PHP.getPrefix((String) null, Compression.GZIP)));
+        assertEquals("gzuncompress(base64_decode('", text(EmbedTemplate.PHP.getPrefix((String) null, Compression.ZLIB)));
+        assertEquals("'))", text(EmbedTemplate.PHP.getSuffix(Compression.GZIP)));
+    }
+    
+    /**
+     * Checks the MIME types of data URIs, from the contents and then from
+     * the name.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testMimeTypes() throws IOException {
+        
+        // from the signature, whatever the name
+        assertEquals("image/png", MimeTypes.detect(file("image.txt", PNG)));
+        
+        // a bitmap needs its info header, not just "BM"
+        byte[] bitmap = new byte[64];
+        bitmap[0] = 'B';
+        bitmap[1] = 'M';
+        bitmap[14] = 40;
+        assertEquals("image/bmp", MimeTypes.detect(bitmap, bitmap.length, null));
+        assertEquals(MimeTypes.TEXT, MimeTypes.detect(ascii("BMW cars are fast."), 18, null));
+        
+        // text, and anything else
+        assertEquals(MimeTypes.TEXT, MimeTypes.detect(file("notes", ascii("hello world"))));
+        assertEquals(MimeTypes.BINARY, MimeTypes.detect(new byte[] { 0x00, 0x02, (byte) 0xfe, 0x7f }, 4, null));
+    }
+    
+    /**
+     * Converts files inside every template through every path, and checks
+     * the text around the plain output.
+     * @throws IOException Never.
+     * @throws InterruptedException Never.
+     */
+    @Test
+    public void testPaths() throws IOException, InterruptedException {
+        
+        // a small PNG and a large one, so both the sequential
+        // and the parallel conversions are checked
+        for (int length : new int[] { 1000, (int) ParallelConverter.THRESHOLD + 10 }) {
+            
+            // the input
+            byte[] input = bytes(length);
+            System.arraycopy(PNG, 0, input, 0, PNG.length);
+            File file = file("image" + length + ".png", input);
+            String payload = Base64.getEncoder().encodeToString(input);
+            
+            // for every template
+            for (EmbedTemplate template : new EmbedTemplate[] { EmbedTemplate.NONE, EmbedTemplate.PHP, EmbedTemplate.DATA_URI, EmbedTemplate.JSON, EmbedTemplate.CSS }) {
+                
+                // the expected output
+                EmbedTemplate.setDefault(template);
+                String expected = text(template.getPrefix("image/png", Compression.NONE)) + payload + text(template.getSuffix(Compression.NONE));
+                String message = template + ", " + length + " bytes";
+                
+                // as strings
+                assertEquals(message, expected, TranslateUtils.convertFile(file, false));
+                assertEquals(message, expected, TranslateUtils.convertFile(file, true));
+                assertEquals(message, expected, batch(file));
+                
+                // to streams and files
+                ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+                TranslateUtils.convertFile(file, ostream);
+                assertEquals(message, expected, text(ostream.toByteArray()));
+                File target = new File(folder.getRoot(), "target.b64");
+                FileSink.convertFile(file, target, null);
+                assertEquals(message, expected, text(Files.readAllBytes(target.toPath())));
+            }
+        }
+    }
+    
+    /**
+     * Converts a compressed file inside the PHP template, whose payload
+     * must inflate back to the file.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testCompressed() throws IOException {
+        
+        // some text
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < 100000) {
+            builder.append("The quick brown fox jumps over the lazy dog. ");
+        }
+        byte[] input = ascii(builder.toString());
+        File file = file("text.txt", input);
+        
+        // convert it
+        EmbedTemplate.setDefault(EmbedTemplate.PHP);
+        Compression.setDefault(Compression.GZIP);
+        String output = TranslateUtils.convertFile(file, false);
+        
+        // check the text around it
+        assertTrue(output, output.startsWith("gzdecode(base64_decode('"));
+        assertTrue(output, output.endsWith("'))"));
+        
+        // and the payload
+        String payload = output.substring("gzdecode(base64_decode('".length(), output.length() - 3);
+        GZIPInputStream istream = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(payload)));
+        ByteArrayOutputStream ostream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int count;
+        while ((count = istream.read(buffer)) > 0) {
+            ostream.write(buffer, 0, count);
+        }
+        assertArrayEquals(input, ostream.toByteArray());
+    }
+    
+    /**
+     * Goes back to the default template and compression after every test.
+     */
+    @After
+    public void tearDown() {
+        
+        // forget the choices
+        EmbedTemplate.setDefault(null);
+        Compression.setDefault(null);
+    }
+    
+    /**
+     * Converts a single file in a batch.
+     * @param file The file.
+     * @return The output.
+     * @throws IOException The conversion failed.
+     * @throws InterruptedException Never.
+     */
+    private static String batch(File file) throws IOException, InterruptedException {
+        
+        // the output or the error
+        final String[] output = new String[1];
+        final IOException[] error = new IOException[1];
+        
+        // convert it
+        BatchConverter.convertFiles(new File[] { file }, new BatchConverter.Listener() {
+            
+            @Override
+            public void fileConverted(int index, File file, String text) {
+                output[0] = text;
+            }
+            
+            @Override
+            public void fileFailed(int index, File file, IOException e) {
+                error[0] = e;
+            }
+        });
+        
+        // check it
+        if (error[0] != null) {
+            throw error[0];
+        }
+        return output[0];
+    }
+    
+    /**
+     * Writes bytes to a new file.
+     * @param name The file name.
+     * @param bytes The bytes.
+     * @return The file.
+     * @throws IOException An IO error writing it.
+     */
+    private File file(String name, byte[] bytes) throws IOException {
+        
+        // write them
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+    
+    /**
+     * Creates random bytes.
+     * @param length The length.
+     * @return The bytes.
+     */
+    private byte[] bytes(int length) {
+        
+        // fill them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+    
+    /**
+     * Gets the bytes of an ASCII string.
+     * @param text The string.
+     * @return The bytes.
+     */
+    private static byte[] ascii(String text) {
+        
+        // convert it
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+    
+    /**
+     * Gets the ASCII string of some bytes.
+     * @param bytes The bytes.
+     * @return The string.
+     */
+    private static String text(byte[] bytes) {
+        
+        // convert them
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
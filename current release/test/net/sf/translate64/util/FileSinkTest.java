@@ -0,0 +1,289 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>FileSinkTest.java</b>: checks the conversions written straight to
+ * files.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Converts files through {@link FileSink}, sequentially and, above the
+ * threshold, in parallel, and checks that the target has the output of the
+ * JDK encoder and that no partial output is left behind, whether the
+ * conversion succeeded or not.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class FileSinkTest {
+
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Converts small files, one block at a time.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testSmall() throws IOException {
+        
+        // for some lengths around the blocks
+        for (int length : new int[] { 0, 1, 2, 3, 1000, BufferPool.BUFFER_SIZE + 1 }) {
+            
+            // convert it
+            byte[] input = bytes(length);
+            File target = convert(input, Base64Format.STANDARD);
+            
+            // check it
+            assertArrayEquals(Base64.getEncoder().encode(input), Files.readAllBytes(target.toPath()));
+            assertNoPartial();
+        }
+    }
+    
+    /**
+     * Converts a file large enough to be encoded in parallel, in regions
+     * written by many tasks, in every format.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testLarge() throws IOException {
+        
+        // an input just over the threshold,
+        // whose last chunk is a partial one
+        byte[] input = bytes((int) ParallelConverter.THRESHOLD + 1001);
+        
+        // the plain output
+        File target = convert(input, Base64Format.STANDARD);
+        assertArrayEquals(Base64.getEncoder().encode(input), Files.readAllBytes(target.toPath()));
+        assertNoPartial();
+        
+        // the URL safe output, without padding
+        target = convert(input, Base64Format.URL_SAFE);
+        assertArrayEquals(Base64.getUrlEncoder().withoutPadding().encode(input), Files.readAllBytes(target.toPath()));
+        assertNoPartial();
+        
+        // the wrapped output, whose line breaks
+        // fall in the middle of the regions
+        target = convert(input, Base64Format.MIME);
+        assertArrayEquals(Base64.getMimeEncoder().encode(input), Files.readAllBytes(target.toPath()));
+        assertNoPartial();
+    }
+    
+    /**
+     * Replaces an existing target.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testReplace() throws IOException {
+        
+        // a target longer than the output
+        File file = folder.newFile("input.bin");
+        Files.write(file.toPath(), bytes(30));
+        File target = FileSink.getTarget(file);
+        Files.write(target.toPath(), bytes(1000));
+        
+        // convert it
+        assertEquals(target, FileSink.convertFile(file));
+        
+        // check it
+        assertArrayEquals(Base64.getEncoder().encode(Files.readAllBytes(file.toPath())), Files.readAllBytes(target.toPath()));
+        assertNoPartial();
+    }
+    
+    /**
+     * Cancels conversions, sequential and parallel ones, which must leave
+     * neither a target nor a partial output.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testCancelled() throws IOException {
+        
+        // a listener that stops at once
+        ProgressListener listener = new ProgressListener() {
+            
+            @Override
+            public void bytesProcessed(long bytes) {
+            }
+            
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+        
+        // for both paths
+        for (int length : new int[] { 1000, (int) ParallelConverter.THRESHOLD }) {
+            
+            // the input
+            File file = folder.newFile("cancelled-" + length + ".bin");
+            Files.write(file.toPath(), bytes(length));
+            File target = FileSink.getTarget(file);
+            
+            // let's try
+            try {
+                
+                // convert it
+                FileSink.convertFile(file, target, listener);
+                fail("The conversion was not cancelled.");
+            }
+            catch (InterruptedIOException e) {
+                
+                // expected
+            }
+            
+            // check nothing was left
+            assertFalse(target.exists());
+            assertNoPartial();
+        }
+    }
+    
+    /**
+     * Converts a missing file, which must leave nothing behind.
+     */
+    @Test
+    public void testMissing() {
+        
+        // the input and its target
+        File file = new File(folder.getRoot(), "missing.bin");
+        File target = FileSink.getTarget(file);
+        
+        // let's try
+        try {
+            
+            // convert it
+            FileSink.convertFile(file, target, null);
+            fail("A missing file was converted.");
+        }
+        catch (IOException e) {
+            
+            // expected
+        }
+        
+        // check nothing was left
+        assertFalse(target.exists());
+        assertNoPartial();
+    }
+    
+    /**
+     * Goes back to the default format after every test.
+     */
+    @After
+    public void tearDown() {
+        
+        // forget the choice
+        Base64Format.setDefault(null);
+    }
+    
+    /**
+     * Writes an input to a file and converts it to its default target.
+     * @param input The input.
+     * @param format The format.
+     * @return The target.
+     * @throws IOException An IO error with the files.
+     */
+    private File convert(byte[] input, Base64Format format) throws IOException {
+        
+        // write it
+        File file = folder.newFile();
+        Files.write(file.toPath(), input);
+        
+        // convert it
+        Base64Format.setDefault(format);
+        File target = FileSink.getTarget(file);
+        assertEquals(input.length, FileSink.convertFile(file, target, null));
+        
+        // check it is there
+        assertTrue(target.isFile());
+        return target;
+    }
+    
+    /**
+     * Checks that no partial output is left in the directory.
+     */
+    private void assertNoPartial() {
+        
+        // look at every file
+        for (String name : folder.getRoot().list()) {
+            assertFalse(name, name.endsWith(".part"));
+        }
+    }
+    
+    /**
+     * Creates random bytes.
+     * @param length The length.
+     * @return The bytes.
+     */
+    private byte[] bytes(int length) {
+        
+        // fill them
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>ParallelConverterTest.java</b>: checks the parallel conversion of
+ * large files.
+ */
+
+// package definition
+package net.sf.translate64.util;
+
+// needed imports
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Round-trips files split into many chunks through
+ * {@link ParallelConverter}, to strings and to files, in every format, and
+ * checks the checksums it computes, the progress it reports and its
+ * cancellation.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class ParallelConverterTest {
+
+    // a temporary directory for every test
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    // the random generator, the same bytes for every run
+    private final Random random = new Random(64);
+    
+    /**
+     * Converts files of a few chunks, the last one partial or not, to
+     * strings and to files, in every format.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        
+        // lengths around the chunks
+        for (int length : new int[] { 4 * ParallelConverter.CHUNK_SIZE, 4 * ParallelConverter.CHUNK_SIZE + 1, 5 * ParallelConverter.CHUNK_SIZE - 2 }) {
+            
+            // the input
+            byte[] input = new byte[length];
+            random.nextBytes(input);
+            File file = folder.newFile();
+            Files.write(file.toPath(), input);
+            File target = new File(folder.getRoot(), "target.b64");
+            
+            // the plain output
+            String expected = Base64.getEncoder().encodeToString(input);
+            assertEquals(expected, ParallelConverter.convertFile(file));
+            assertEquals(length, ParallelConverter.convertFile(file, target));
+            assertEquals(expected, new String(Files.readAllBytes(target.toPath()), "US-ASCII"));
+            
+            // the wrapped output
+            Base64Format.setDefault(Base64Format.PEM);
+            expected = Base64.getMimeEncoder(64, new byte[] { '\n' }).encodeToString(input);
+            assertEquals(expected, ParallelConverter.convertFile(file));
+            ParallelConverter.convertFile(file, target);
+            assertEquals(expected, new String(Files.readAllBytes(target.toPath()), "US-ASCII"));
+            
+            // the URL safe output
+            Base64Format.setDefault(Base64Format.URL_SAFE.withPadding(true));
+            expected = Base64.getUrlEncoder().encodeToString(input);
+            assertEquals(expected, ParallelConverter.convertFile(file));
+            ParallelConverter.convertFile(file, target);
+            assertEquals(expected, new String(Files.readAllBytes(target.toPath()), "US-ASCII"));
+            Base64Format.setDefault(null);
+        }
+    }
+    
+    /**
+     * Computes the checksums of a file spanning more than one window while
+     * converting it, to a string and to a file.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testChecksums() throws IOException {
+        
+        // the input, over 16 chunks
+        byte[] input = new byte[16 * ParallelConverter.CHUNK_SIZE + 5];
+        random.nextBytes(input);
+        File file = folder.newFile();
+        Files.write(file.toPath(), input);
+        
+        // the expected values
+        Checksums expected = new Checksums();
+        expected.update(input, 0, input.length);
+        String encoded = Base64.getEncoder().encodeToString(input);
+        
+        // to a string
+        Checksums checksums = new Checksums();
+        assertEquals(encoded, ParallelConverter.convertFile(file, checksums, null));
+        assertEquals(expected.getSha256(), checksums.getSha256());
+        assertEquals(expected.getCrc(), checksums.getCrc());
+        
+        // and to a file
+        File target = new File(folder.getRoot(), "target.b64");
+        checksums = new Checksums();
+        ParallelConverter.convertFile(file, target, checksums, null);
+        assertEquals(encoded, new String(Files.readAllBytes(target.toPath()), "US-ASCII"));
+        assertEquals(expected.getSha256(), checksums.getSha256());
+        assertEquals(expected.getCrc(), checksums.getCrc());
+    }
+    
+    /**
+     * Reports every byte once, and stops when cancelled.
+     * @throws IOException Never.
+     */
+    @Test
+    public void testProgress() throws IOException {
+        
+        // the input
+        byte[] input = new byte[(int) ParallelConverter.THRESHOLD + 7];
+        random.nextBytes(input);
+        File file = folder.newFile();
+        Files.write(file.toPath(), input);
+        
+        // a listener counting the bytes
+        final AtomicLong processed = new AtomicLong(0);
+        ProgressListener counter = new ProgressListener() {
+            
+            @Override
+            public void bytesProcessed(long bytes) {
+                processed.addAndGet(bytes);
+            }
+            
+            @Override
+            public boolean isCancelled() {
+                return false;
+            }
+        };
+        
+        // to a string and to a file
+        ParallelConverter.convertFile(file, counter);
+        assertEquals(input.length, processed.getAndSet(0));
+        ParallelConverter.convertFile(file, new File(folder.getRoot(), "target.b64"), counter);
+        assertEquals(input.length, processed.get());
+        
+        // a listener that stops at once
+        ProgressListener cancelled = new ProgressListener() {
+            
+            @Override
+            public void bytesProcessed(long bytes) {
+            }
+            
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+        };
+        
+        // let's try
+        try {
+            
+            // convert it
+            ParallelConverter.convertFile(file, cancelled);
+            fail("The conversion was not cancelled.");
+        }
+        catch (InterruptedIOException e) {
+            
+            // expected
+        }
+    }
+    
+    /**
+     * Goes back to the default format after every test.
+     */
+    @After
+    public void tearDown() {
+        
+        // forget the choice
+        Base64Format.setDefault(null);
+    }
+}
@@ -0,0 +1,395 @@
+/**
+ * \cond LICENSE
+ * ********************************************************************
+ * This is a conditional block for preventing the DoxyGen documentation
+ * tool to include this license header within the description of each
+ * source code file. If you want to include this block, please define
+ * the LICENSE parameter into the provided DoxyFile.
+ * ********************************************************************
+ *
+ * Translate64 - Easily convert files to Base64
+ * Copyright (c) 2011, Paulo Roberto Massa Cereda
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or
+ * without modification, are permitted provided that the following
+ * conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *
+ * 3. Neither the name of the project's author nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS
+ * OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR
+ * TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE
+ * USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * ********************************************************************
+ * End of the LICENSE conditional block
+ * ********************************************************************
+ * \endcond
+ *
+ * <b>VectorEngine.java</b>: provides a Base64 engine built on the Vector
+ * API.
+ */
+
+// package definition
+package net.sf.translate64.codec;
+
+// needed imports
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+import net.sf.translate64.util.Base64Encoder;
+
+/**
+ * Provides a Base64 engine built on the incubating Vector API. Each step
+ * loads a whole vector, rearranges its first three quarters so that every
+ * 4 output lanes hold the bytes of one 3 byte group, extracts the four 6
+ * bit indices with shifts over 32 bit lanes and turns them into the
+ * alphabet with lane comparisons, so no table lookup is needed, and the
+ * URL and file name safe alphabet only changes two distances. Whatever
+ * does not fill a whole vector is left to the scalar encoder. Direct
+ * buffers are loaded and stored in place, without a copy to the heap.
+ * <p>
+ * This class is compiled apart from the rest of the application, only by
+ * JDKs that have the <code>jdk.incubator.vector</code> module, and the
+ * engine is only available when the JVM is started with
+ * <code>--add-modules jdk.incubator.vector</code>. Otherwise the default
+ * engine is used as usual, the same one every conversion goes through,
+ * as explained in {@link Engines}.
+ * @author Paulo Roberto Massa Cereda
+ * @version 1.1
+ * @since 1.1
+ */
+public class VectorEngine extends Base64Engine {
+
+    /**
+     * Name of this engine.
+     */
+    public static final String NAME = "vector";
+    
+    /**
+     * Gets the name of this engine.
+     * @return The name.
+     */
+    @Override
+    public String getName() {
+        
+        // return it
+        return NAME;
+    }
+    
+    /**
+     * Checks if the Vector API can be used. It needs the incubator module,
+     * vectors of at least 16 bytes and a little endian platform, which the
+     * lane shifts rely on.
+     * @return <code>true</code> if the engine can run.
+     */
+    @Override
+    public boolean isAvailable() {
+        
+        // let's try
+        try {
+            
+            // check the platform
+            return (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN) && (Kernel.SPECIES.length() >= 16);
+        }
+        catch (LinkageError e) {
+            
+            // the module is not there
+            return false;
+        }
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset) {
+        
+        // in the standard alphabet
+        return encode(source, offset, length, target, targetOffset, false);
+    }
+    
+    /**
+     * Encodes a piece of the source array into the target array, in the
+     * chosen alphabet.
+     * @param source The source array.
+     * @param offset The offset in the source array.
+     * @param length The number of bytes to encode.
+     * @param target The target array.
+     * @param targetOffset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+        
+        // encode the whole vectors
+        int consumed = Kernel.encode(source, offset, length, target, targetOffset, urlSafe);
+        
+        // and the rest with the scalar encoder
+        return (consumed / 3 * 4) + Base64Encoder.encode(source, offset + consumed, length - consumed, target, targetOffset + (consumed / 3 * 4), urlSafe);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * array, reading direct buffers in place.
+     * @param source The source buffer.
+     * @param target The target array.
+     * @param offset The offset in the target array.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target array.
+     */
+    @Override
+    public int encode(ByteBuffer source, byte[] target, int offset, boolean urlSafe) {
+        
+        // arrays are encoded directly
+        if (source.hasArray() || !Kernel.BUFFERS) {
+            return super.encode(source, target, offset, urlSafe);
+        }
+        
+        // encode the whole vectors
+        int count = Kernel.encode(source, source.position(), source.remaining(), ByteBuffer.wrap(target), offset, urlSafe);
+        source.position(source.position() + count / 4 * 3);
+        
+        // and the rest with the scalar encoder
+        return count + Base64Encoder.encode(source, target, offset + count, urlSafe);
+    }
+    
+    /**
+     * Encodes the remaining bytes of the source buffer into the target
+     * buffer, reading and writing direct buffers in place.
+     * @param source The source buffer.
+     * @param target The target buffer.
+     * @param urlSafe Whether the URL and file name safe alphabet is used.
+     * @return The number of bytes written to the target buffer.
+     */
+    @Override
+    public int encode(ByteBuffer source, ByteBuffer target, boolean urlSafe) {
+        
+        // arrays are encoded directly
+        if ((source.hasArray() && target.hasArray()) || !Kernel.BUFFERS) {
+            return super.encode(source, target, urlSafe);
+        }
+        
+        // encode the whole vectors
+        int count = Kernel.encode(source, source.position(), source.remaining(), target, target.position(), urlSafe);
+        source.position(source.position() + count / 4 * 3);
+        target.position(target.position() + count);
+        
+        // and the rest with the scalar encoder
+        return count + Base64Encoder.encode(source, target, urlSafe);
+    }
+    
+    /**
+     * Holds everything touching the Vector API, so the engine itself can be
+     * loaded, and found unavailable, without the module.
+     */
+    private static class Kernel {
+        
+        // the preferred species of the platform
+        static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+        
+        // the number of lanes
+        static final int LANES = SPECIES.length();
+        
+        // the input bytes used by every vector
+        static final int STEP = LANES / 4 * 3;
+        
+        // takes every 3 byte group to 4 lanes, as b a c b
+        static final VectorShuffle<Byte> SHUFFLE = createShuffle();
+        
+        // whether vectors can be loaded from buffers, later
+        // incubators replaced these methods by memory segments
+        static final boolean BUFFERS = hasBufferMethods();
+        
+        /**
+         * Encodes the longest prefix of the input made of whole vectors.
+         * @param source The source array.
+         * @param offset The offset in the source array.
+         * @param length The number of bytes to encode.
+         * @param target The target array.
+         * @param targetOffset The offset in the target array.
+         * @param urlSafe Whether the URL and file name safe alphabet is
+         * used.
+         * @return The number of bytes consumed, always a multiple of 3.
+         */
+        static int encode(byte[] source, int offset, int length, byte[] target, int targetOffset, boolean urlSafe) {
+            
+            // positions
+            int position = offset;
+            int index = targetOffset;
+            
+            // every load reads a whole vector but only
+            // uses three quarters of it, so keep it in bounds
+            int end = offset + length - LANES;
+            
+            // encode every vector
+            while (position <= end) {
+                
+                // load, encode and store the bytes
+                step(ByteVector.fromArray(SPECIES, source, position), urlSafe).intoArray(target, index);
+                
+                // move on
+                position = position + STEP;
+                index = index + LANES;
+            }
+            
+            // return what was consumed
+            return position - offset;
+        }
+        
+        /**
+         * Encodes the longest prefix of the input made of whole vectors,
+         * using absolute positions only.
+         * @param source The source buffer.
+         * @param position The position in the source buffer.
+         * @param length The number of bytes to encode.
+         * @param target The target buffer.
+         * @param index The position in the target buffer.
+         * @param urlSafe Whether the URL and file name safe alphabet is
+         * used.
+         * @return The number of bytes written, always a multiple of 4.
+         */
+        static int encode(ByteBuffer source, int position, int length, ByteBuffer target, int index, boolean urlSafe) {
+            
+            // where it starts
+            int start = index;
+            
+            // keep every load in bounds
+            int end = position + length - LANES;
+            
+            // encode every vector
+            while (position <= end) {
+                
+                // load, encode and store the bytes
+                step(ByteVector.fromByteBuffer(SPECIES, source, position, ByteOrder.nativeOrder()), urlSafe).intoByteBuffer(target, index, ByteOrder.nativeOrder());
+                
+                // move on
+                position = position + STEP;
+                index = index + LANES;
+            }
+            
+            // return the number of bytes written
+            return index - start;
+        }
+        
+        /**
+         * Encodes the groups in the first three quarters of a vector.
+         * @param bytes The loaded bytes.
+         * @param urlSafe Whether the URL and file name safe alphabet is
+         * used.
+         * @return The characters.
+         */
+        static ByteVector step(ByteVector bytes, boolean urlSafe) {
+            
+            // put every group in its lanes
+            IntVector groups = bytes.rearrange(SHUFFLE).reinterpretAsInts();
+            
+            // extract the four indices of each group
+            // to their lanes, from the first to the last
+            IntVector indices = groups.lanewise(VectorOperators.LSHR, 10).and(0x3f)
+                    .or(groups.lanewise(VectorOperators.LSHR, 4).and(0x3f).lanewise(VectorOperators.LSHL, 8))
+                    .or(groups.lanewise(VectorOperators.LSHR, 22).and(0x3f).lanewise(VectorOperators.LSHL, 16))
+                    .or(groups.lanewise(VectorOperators.LSHR, 16).and(0x3f).lanewise(VectorOperators.LSHL, 24));
+            
+            // turn them into characters
+            return translate(indices.reinterpretAsBytes(), urlSafe);
+        }
+        
+        /**
+         * Checks if the running incubator still loads vectors from buffers.
+         * @return <code>true</code> if it does.
+         */
+        static boolean hasBufferMethods() {
+            
+            // let's try
+            try {
+                
+                // look for both ends
+                ByteVector.class.getMethod("fromByteBuffer", VectorSpecies.class, ByteBuffer.class, int.class, ByteOrder.class);
+                ByteVector.class.getMethod("intoByteBuffer", ByteBuffer.class, int.class, ByteOrder.class);
+                return true;
+            }
+            catch (NoSuchMethodException e) {
+                
+                // the heap copy then
+                return false;
+            }
+        }
+        
+        /**
+         * Turns indices into the alphabet. Each range of the alphabet is a
+         * fixed distance from its indices, so the distance is chosen by
+         * comparing the indices.
+         * @param indices The indices, from 0 to 63.
+         * @param urlSafe Whether the URL and file name safe alphabet is
+         * used.
+         * @return The characters.
+         */
+        static ByteVector translate(ByteVector indices, boolean urlSafe) {
+            
+            // uppercase letters by default
+            ByteVector shift = ByteVector.broadcast(SPECIES, (byte) 'A');
+            
+            // then lowercase letters, digits and the two symbols
+            shift = shift.blend((byte) ('a' - 26), indices.compare(VectorOperators.GE, (byte) 26));
+            shift = shift.blend((byte) ('0' - 52), indices.compare(VectorOperators.GE, (byte) 52));
+            shift = shift.blend((byte) ((urlSafe ? '-' : '+') - 62), indices.compare(VectorOperators.EQ, (byte) 62));
+            shift = shift.blend((byte) ((urlSafe ? '_' : '/') - 63), indices.compare(VectorOperators.EQ, (byte) 63));
+            
+            // apply it
+            return indices.add(shift);
+        }
+        
+        /**
+         * Creates the shuffle taking every 3 byte group a b c to the 4
+         * lanes b a c b. Read as a little endian int, the group then has a
+         * and b next to each other in the middle, and b and c at the top.
+         * @return The shuffle.
+         */
+        static VectorShuffle<Byte> createShuffle() {
+            
+            // the source lanes
+            int[] lanes = new int[LANES];
+            
+            // for every group
+            for (int i = 0; i < LANES / 4; i++) {
+                lanes[4 * i] = 3 * i + 1;
+                lanes[4 * i + 1] = 3 * i;
+                lanes[4 * i + 2] = 3 * i + 2;
+                lanes[4 * i + 3] = 3 * i + 1;
+            }
+            
+            // create it
+            return VectorShuffle.fromArray(SPECIES, lanes, 0);
+        }
+    }
+}